@@ -0,0 +1,74 @@
+package com.inventory.benchmark;
+
+import com.inventory.InventoryManagementApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.Map;
+
+/**
+ * Application context for benchmarks, backed by a throwaway PostgreSQL.
+ * <p>
+ * Every benchmark fork starts its own Testcontainers PostgreSQL, unless {@code -Dbenchmark.datasource.url}
+ * (with {@code benchmark.datasource.username} and {@code benchmark.datasource.password}) points to a scratch
+ * database to use instead. That database is emptied before each benchmark.
+ */
+final class BenchmarkContext implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkContext(PostgreSQLContainer<?> postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    static BenchmarkContext start() {
+        PostgreSQLContainer<?> postgres = null;
+        String url = System.getProperty("benchmark.datasource.url");
+        String username = System.getProperty("benchmark.datasource.username", "postgres");
+        String password = System.getProperty("benchmark.datasource.password", "");
+        if (url == null) {
+            postgres = new PostgreSQLContainer<>("postgres:16")
+                    .withDatabaseName("inventory_benchmark")
+                    .withUsername("benchmark")
+                    .withPassword("benchmark");
+            postgres.start();
+            url = postgres.getJdbcUrl();
+            username = postgres.getUsername();
+            password = postgres.getPassword();
+        }
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(InventoryManagementApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .logStartupInfo(false)
+                .properties(Map.of(
+                        "spring.datasource.url", url,
+                        "spring.datasource.username", username,
+                        "spring.datasource.password", password,
+                        // Per-call info logging would dominate the measured times
+                        "logging.level.root", "WARN",
+                        "spring.docker.compose.enabled", "false"))
+                .run();
+        context.getBean(JdbcClient.class)
+                .sql("TRUNCATE TABLE stocks, transactions RESTART IDENTITY CASCADE")
+                .update();
+        return new BenchmarkContext(postgres, context);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+}
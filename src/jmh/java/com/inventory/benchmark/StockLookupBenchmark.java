@@ -0,0 +1,83 @@
+package com.inventory.benchmark;
+
+import com.inventory.dto.TransactionPostRequest;
+import com.inventory.model.StockEntry;
+import com.inventory.model.Unit;
+import com.inventory.repository.StockRepository;
+import com.inventory.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Latency of {@code StockRepository.getByCompositeKey}, cache included.
+ * <p>
+ * {@code hot} draws from a few hundred keys which stay cached, {@code cold} draws uniformly from many more keys
+ * than the stock cache holds, so most lookups reach the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StockLookupBenchmark {
+
+    private static final int STOCK_ENTRIES = 100_000;
+    private static final int HOT_KEYS = 500;
+    private static final long PRICE_PER_UNIT = 150;
+
+    @Param({"hot", "cold"})
+    public String distribution;
+
+    private BenchmarkContext context;
+    private StockRepository stockRepository;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        stockRepository = context.getBean(StockRepository.class);
+
+        TransactionService transactionService = context.getBean(TransactionService.class);
+        for (int from = 0; from < STOCK_ENTRIES; from += 10_000) {
+            transactionService.addTransactions(IntStream.range(from, from + 10_000)
+                    .mapToObj(i -> new TransactionPostRequest(itemName(i), 1000, Unit.KG, PRICE_PER_UNIT, warehouseName(i)))
+                    .toList());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<StockEntry> getByCompositeKey() {
+        int i = random.nextInt("hot".equals(distribution) ? HOT_KEYS : STOCK_ENTRIES);
+        return stockRepository.getByCompositeKey(itemName(i), warehouseName(i), PRICE_PER_UNIT);
+    }
+
+    private static String itemName(int i) {
+        return "Item " + i / 10;
+    }
+
+    private static String warehouseName(int i) {
+        return "Warehouse " + i % 10;
+    }
+}
@@ -0,0 +1,92 @@
+package com.inventory.benchmark;
+
+import com.inventory.dto.TransactionPatchRequest;
+import com.inventory.dto.TransactionPostRequest;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.Unit;
+import com.inventory.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput of corrections, one per call and as correction files.
+ * <p>
+ * Every correction restates its original transaction unchanged, so the stock levels, and with them the work
+ * per correction, stay the same however long the benchmark runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransactionCorrectionBenchmark {
+
+    @Param({"10000"})
+    public int transactions;
+
+    private BenchmarkContext context;
+    private TransactionService transactionService;
+    private final List<TransactionPatchRequest> corrections = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        transactionService = context.getBean(TransactionService.class);
+
+        List<TransactionPostRequest> requests = IntStream.range(0, transactions)
+                .mapToObj(i -> new TransactionPostRequest("Item " + i % 1000, (1 + i % 100) * FixedPoint.ONE, Unit.KG,
+                        (1 + i % 10) * FixedPoint.ONE, "Warehouse " + i % 7))
+                .toList();
+        transactionService.addTransactions(requests);
+        for (int i = 0; i < transactions; i++) {
+            TransactionPostRequest original = requests.get(i);
+            corrections.add(new TransactionPatchRequest((long) i + 1, original.itemName(), original.quantity(),
+                    original.unit(), original.pricePerUnit(), original.warehouseName()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void correctTransaction() {
+        transactionService.correctTransaction(corrections.get(random.nextInt(transactions)));
+    }
+
+    /**
+     * Scored in correction files; multiply by the batch size for corrections.
+     */
+    @Benchmark
+    public void correctTransactions(Batch batch) {
+        int from = random.nextInt(transactions - batch.size);
+        transactionService.correctTransactions(corrections.subList(from, from + batch.size));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+
+        @Param({"100", "1000"})
+        public int size;
+    }
+}
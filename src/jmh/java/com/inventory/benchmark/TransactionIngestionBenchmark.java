@@ -0,0 +1,80 @@
+package com.inventory.benchmark;
+
+import com.inventory.dto.TransactionPostRequest;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.Unit;
+import com.inventory.service.TransactionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Throughput of POSTed transactions, one per call and as bulk requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransactionIngestionBenchmark {
+
+    // Distinct composite keys the generated transactions fall into
+    @Param({"1000"})
+    public int keys;
+
+    private BenchmarkContext context;
+    private TransactionService transactionService;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkContext.start();
+        transactionService = context.getBean(TransactionService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void addTransaction() {
+        transactionService.addTransaction(nextRequest());
+    }
+
+    /**
+     * Scored in requests; multiply by the batch size for transactions.
+     */
+    @Benchmark
+    public void addTransactions(Batch batch) {
+        transactionService.addTransactions(IntStream.range(0, batch.size).mapToObj(i -> nextRequest()).toList());
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+
+        @Param({"100", "1000"})
+        public int size;
+    }
+
+    private TransactionPostRequest nextRequest() {
+        int key = random.nextInt(keys);
+        return new TransactionPostRequest("Item " + key, (1 + random.nextInt(100)) * FixedPoint.ONE, Unit.KG,
+                (1 + key % 10) * FixedPoint.ONE, "Warehouse " + key % 7);
+    }
+}
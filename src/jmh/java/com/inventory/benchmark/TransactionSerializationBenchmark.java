@@ -0,0 +1,69 @@
+package com.inventory.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.inventory.dto.TransactionPostRequest;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.Unit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Jackson (de)serialization of POST request bodies, with the object mapper configured like the application's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionSerializationBenchmark {
+
+    @Param({"10", "1000"})
+    public int size;
+
+    private ObjectReader reader;
+    private ObjectWriter writer;
+    private List<TransactionPostRequest> requests;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        reader = objectMapper.readerFor(new TypeReference<List<TransactionPostRequest>>() {
+        });
+        writer = objectMapper.writerFor(new TypeReference<List<TransactionPostRequest>>() {
+        });
+        requests = IntStream.range(0, size)
+                .mapToObj(i -> new TransactionPostRequest("Item " + i, (1 + i) * FixedPoint.ONE, Unit.values()[i % 2], 250, "Warehouse " + i % 7))
+                .toList();
+        json = writer.writeValueAsBytes(requests);
+    }
+
+    @Benchmark
+    public List<TransactionPostRequest> deserialize() throws Exception {
+        return reader.readValue(json);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(requests);
+    }
+}
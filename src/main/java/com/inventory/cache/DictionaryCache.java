@@ -0,0 +1,81 @@
+package com.inventory.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns item and warehouse names to the integer ids of their dictionary rows.
+ * <p>
+ * Dictionary rows are never changed or deleted, so a cached id stays valid for good. Only committed ids are
+ * cached: ids inserted by a transaction are added once it commits, a rolled back insert is never seen.
+ */
+@Component
+public class DictionaryCache implements MeterBinder {
+
+    public enum Dictionary {
+        ITEMS("items"),
+        WAREHOUSES("warehouses");
+
+        private final String table;
+
+        Dictionary(String table) {
+            this.table = table;
+        }
+
+        public String table() {
+            return table;
+        }
+    }
+
+    private final Map<Dictionary, Cache<String, Integer>> caches = new HashMap<>();
+
+    public DictionaryCache(@Value("${inventory.dictionary-cache.maximum-size:100000}") long maximumSize) {
+        for (Dictionary dictionary : Dictionary.values()) {
+            caches.put(dictionary, Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .recordStats()
+                    .build());
+        }
+    }
+
+    /**
+     * Returns the cached ids of those names that are cached.
+     */
+    public Map<String, Integer> getAllPresent(Dictionary dictionary, Collection<String> names) {
+        return caches.get(dictionary).getAllPresent(names);
+    }
+
+    public void putAll(Dictionary dictionary, Map<String, Integer> ids) {
+        Cache<String, Integer> cache = caches.get(dictionary);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.putAll(ids);
+                }
+            });
+        } else {
+            cache.putAll(ids);
+        }
+    }
+
+    public void clear() {
+        caches.values().forEach(Cache::invalidateAll);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        caches.forEach((dictionary, cache) -> CaffeineCacheMetrics.monitor(meterRegistry, cache, dictionary.table()));
+    }
+}
@@ -0,0 +1,83 @@
+package com.inventory.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bloom filter over the stored idempotency keys. A key it has never seen is answered without a database
+ * lookup; a positive answer may be wrong (with the configured probability) and is checked against the table.
+ * Keys cannot be removed, so the filter is rebuilt from the table after expired keys are purged.
+ */
+@Component
+public class IdempotencyKeyFilter {
+
+    private final int bitCount;
+    private final int hashCount;
+    private volatile AtomicLongArray bits;
+
+    public IdempotencyKeyFilter(@Value("${inventory.idempotency.expected-keys:1000000}") long expectedKeys,
+                                @Value("${inventory.idempotency.false-positive-rate:0.01}") double falsePositiveRate) {
+        double optimalBits = -expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, Math.ceil(optimalBits)));
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedKeys * Math.log(2)));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    public boolean mightContain(String key) {
+        AtomicLongArray current = bits;
+        long hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bitIndex(hash, i);
+            if ((current.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String key) {
+        add(bits, key);
+    }
+
+    /**
+     * Replaces the filter by one holding exactly the keys passed to the loader.
+     */
+    public void rebuild(Consumer<Consumer<String>> loader) {
+        AtomicLongArray rebuilt = new AtomicLongArray(bits.length());
+        loader.accept(key -> add(rebuilt, key));
+        bits = rebuilt;
+    }
+
+    private void add(AtomicLongArray target, String key) {
+        long hash = hash(key);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bitIndex(hash, i);
+            long mask = 1L << bit;
+            target.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m);
+        }
+    }
+
+    /**
+     * Derives the i-th bit from the two halves of one 64-bit hash (Kirsch-Mitzenmacher double hashing).
+     */
+    private int bitIndex(long hash, int i) {
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes of the key.
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,121 @@
+package com.inventory.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of committed stock entries by composite key.
+ * <p>
+ * Writers evict the keys they touch right away and once more when their transaction completes, so a reader
+ * that loaded the previous row version in between does not keep it. Loads inside a read-write transaction
+ * bypass the cache, they could otherwise publish rows that are not committed yet.
+ */
+@Component
+public class StockCache implements MeterBinder {
+
+    private final Cache<StockKey, StockEntry> cache;
+    private final Map<Long, StockKey> keysById = new ConcurrentHashMap<>();
+
+    public StockCache(@Value("${inventory.stock-cache.maximum-size:10000}") long maximumSize,
+                      @Value("${inventory.stock-cache.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .executor(Runnable::run)
+                .removalListener((StockKey key, StockEntry stockEntry, RemovalCause cause) -> {
+                    if (stockEntry != null) {
+                        keysById.remove(stockEntry.id(), key);
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    public Optional<StockEntry> get(StockKey key, Function<StockKey, Optional<StockEntry>> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return loader.apply(key);
+        }
+        return Optional.ofNullable(cache.get(key, missingKey -> {
+            StockEntry stockEntry = loader.apply(missingKey).orElse(null);
+            if (stockEntry != null) {
+                keysById.put(stockEntry.id(), missingKey);
+            }
+            return stockEntry;
+        }));
+    }
+
+    public void evict(StockKey key) {
+        cache.invalidate(key);
+        afterCompletion(() -> cache.invalidate(key));
+    }
+
+    public void evictAll(Collection<StockKey> keys) {
+        cache.invalidateAll(keys);
+        afterCompletion(() -> cache.invalidateAll(keys));
+    }
+
+    public void evictById(Long id) {
+        evictCachedId(id);
+        afterCompletion(() -> evictCachedId(id));
+    }
+
+    public void evictByIds(Collection<Long> ids) {
+        ids.forEach(this::evictCachedId);
+        afterCompletion(() -> ids.forEach(this::evictCachedId));
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+        afterCompletion(cache::invalidateAll);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stocks");
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private void evictCachedId(Long id) {
+        StockKey key = keysById.get(id);
+        if (key != null) {
+            cache.invalidate(key);
+        }
+    }
+
+    private static void afterCompletion(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.inventory.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Puts a {@link ConcurrencyLimitingDataSource} in front of the connection pool when
+ * {@code inventory.datasource.max-concurrency} is set.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("inventory.datasource.max-concurrency")
+public class DataSourceConcurrencyConfiguration {
+
+    @Bean
+    static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(Environment environment) {
+        int maxConcurrency = environment.getRequiredProperty("inventory.datasource.max-concurrency", Integer.class);
+        Duration acquireTimeout = environment.getProperty("inventory.datasource.acquire-timeout", Duration.class,
+                Duration.ofSeconds(30));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitingDataSource) {
+                    return bean;
+                }
+                return new ConcurrencyLimitingDataSource(dataSource, maxConcurrency, acquireTimeout);
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder concurrencyLimitingDataSourceMetrics(ObjectProvider<DataSource> dataSources) {
+        return registry -> dataSources.orderedStream()
+                .filter(ConcurrencyLimitingDataSource.class::isInstance)
+                .map(ConcurrencyLimitingDataSource.class::cast)
+                .forEach(dataSource -> {
+                    Gauge.builder("inventory.datasource.permits.available", dataSource, ConcurrencyLimitingDataSource::getAvailablePermits)
+                            .description("Connection permits not in use")
+                            .register(registry);
+                    Gauge.builder("inventory.datasource.permits.waiting", dataSource, ConcurrencyLimitingDataSource::getQueueLength)
+                            .description("Threads waiting for a connection permit")
+                            .register(registry);
+                });
+    }
+}
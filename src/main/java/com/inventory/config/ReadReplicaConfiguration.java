@@ -0,0 +1,93 @@
+package com.inventory.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the streaming replicas in {@code inventory.datasource.replicas.urls} when
+ * {@code inventory.datasource.replicas.enabled} is set.
+ * <p>
+ * The primary data source is wrapped in a {@link LazyConnectionDataSourceProxy}, which fetches the physical
+ * connection only at the first statement, once the transaction is known to be read-only. Everything else,
+ * including reads that join a writing transaction, stays on the primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "inventory.datasource.replicas.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+    @Bean
+    static BeanPostProcessor readReplicaRoutingPostProcessor(ObjectProvider<ReadReplicas> readReplicas) {
+        return new ReadReplicaRoutingPostProcessor(readReplicas);
+    }
+
+    @Bean
+    ReadReplicas readReplicas(@Value("${inventory.datasource.replicas.urls:}") List<String> urls,
+                              @Value("${inventory.datasource.replicas.username:${spring.datasource.username:}}") String username,
+                              @Value("${inventory.datasource.replicas.password:${spring.datasource.password:}}") String password,
+                              @Value("${inventory.datasource.replicas.maximum-pool-size:10}") int maximumPoolSize,
+                              @Value("${inventory.datasource.replicas.connection-timeout:1s}") Duration connectionTimeout,
+                              @Value("${inventory.datasource.replicas.max-lag:5s}") Duration maxLag) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : urls) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url)
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setMaximumPoolSize(maximumPoolSize);
+            // A replica that is down must not hold up reads that can go to the primary
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setInitializationFailTimeout(-1);
+            replica.setReadOnly(true);
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReadReplicas(replicas, maxLag);
+    }
+
+    /**
+     * Runs ahead of the other data source post-processors, so the concurrency limit is still applied outermost.
+     */
+    static class ReadReplicaRoutingPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final ObjectProvider<ReadReplicas> readReplicas;
+
+        ReadReplicaRoutingPostProcessor(ObjectProvider<ReadReplicas> readReplicas) {
+            this.readReplicas = readReplicas;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource) || bean instanceof LazyConnectionDataSourceProxy) {
+                return bean;
+            }
+            LazyConnectionDataSourceProxy routingDataSource = new LazyConnectionDataSourceProxy(dataSource);
+            routingDataSource.setReadOnlyDataSource(readReplicas.getObject().fallingBackTo(dataSource));
+            // Known up front, so no connection is opened just to detect them
+            routingDataSource.setDefaultAutoCommit(true);
+            routingDataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            return routingDataSource;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.inventory.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming replicas that read-only transactions are sent to.
+ * <p>
+ * The replay lag of every replica is checked on a schedule, and a replica only serves reads while its last
+ * check succeeded and found it at most {@code max-lag} behind. Until the first check, while no replica
+ * qualifies, and when a replica refuses a connection, the read goes to the primary instead. Replicas that
+ * qualify are used round robin.
+ */
+public class ReadReplicas implements MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadReplicas.class);
+    // Zero once everything received has been replayed, otherwise the age of the last replayed commit;
+    // null while the replica is not streaming from the primary, since then its lag cannot be told
+    static final String LAG_MILLIS_SQL = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS bigint)
+            END
+            """;
+
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReadReplicas(Map<String, DataSource> replicas, Duration maxLag) {
+        this.replicas = replicas.entrySet().stream()
+                .map(replica -> new Replica(replica.getKey(), replica.getValue()))
+                .toList();
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * A data source that hands out connections to a replica in sync, or to the given primary if there is none.
+     * Connections for other credentials are asked from the data source picked the same way.
+     */
+    public DataSource fallingBackTo(DataSource primary) {
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return ReadReplicas.this.getConnection(primary, DataSource::getConnection);
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return ReadReplicas.this.getConnection(primary, dataSource -> dataSource.getConnection(username, password));
+            }
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.datasource.replicas.lag-check-interval:1s}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            Long lagMillis;
+            try {
+                lagMillis = replica.jdbcTemplate.queryForObject(LAG_MILLIS_SQL, Long.class);
+            } catch (RuntimeException e) {
+                log.debug("Could not check the lag of replica [{}]: {}", replica.name, e.getMessage());
+                lagMillis = null;
+            }
+            boolean inSync = lagMillis != null && lagMillis <= maxLag.toMillis();
+            if (inSync != replica.inSync) {
+                if (inSync) {
+                    log.info("Replica [{}] is {} ms behind, routing reads to it", replica.name, lagMillis);
+                } else {
+                    log.warn("Replica [{}] is unreachable or more than {} ms behind, reading from the primary instead",
+                            replica.name, maxLag.toMillis());
+                }
+            }
+            replica.lagMillis = lagMillis == null ? Double.NaN : lagMillis;
+            replica.inSync = inSync;
+        }
+    }
+
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            TimeGauge.builder("inventory.datasource.replica.lag", replica, TimeUnit.MILLISECONDS, r -> r.lagMillis)
+                    .description("Replay lag found by the last check, NaN if it failed")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            Gauge.builder("inventory.datasource.replica.in.sync", replica, r -> r.inSync ? 1 : 0)
+                    .description("Whether the replica currently serves reads")
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+        FunctionCounter.builder("inventory.datasource.replica.fallbacks", fallbacks, LongAdder::sum)
+                .description("Read-only connections taken from the primary because no replica was in sync")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Connection getConnection(DataSource primary, ConnectionOpener opener) throws SQLException {
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (!replica.inSync) {
+                continue;
+            }
+            try {
+                return opener.open(replica.dataSource);
+            } catch (SQLException e) {
+                replica.inSync = false;
+                log.warn("Replica [{}] refused a connection, reading from the primary until it is checked again: {}",
+                        replica.name, e.getMessage());
+            }
+        }
+        fallbacks.increment();
+        return opener.open(primary);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionOpener {
+        Connection open(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile boolean inSync;
+        private volatile double lagMillis = Double.NaN;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.inventory.controller;
+
+import com.inventory.dto.DeadLetterReplayResult;
+import com.inventory.model.JournalDeadLetter;
+import com.inventory.service.TransactionService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RequestMapping("api/v1/journal")
+@RestController
+public class JournalController {
+
+    private final TransactionService transactionService;
+
+    public JournalController(TransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    @GetMapping("/dead-letters")
+    List<JournalDeadLetter> getDeadLetters() {
+        return transactionService.getDeadLetters();
+    }
+
+    @PostMapping("/dead-letters/replay")
+    DeadLetterReplayResult replayDeadLetters() {
+        return transactionService.replayDeadLetters();
+    }
+}
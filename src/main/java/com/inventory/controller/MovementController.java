@@ -0,0 +1,27 @@
+package com.inventory.controller;
+
+import com.inventory.dto.MovementSeries;
+import com.inventory.service.MovementRollupService;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+
+@RequestMapping("api/v1/movements")
+@RestController
+public class MovementController {
+
+    private final MovementRollupService movementRollupService;
+
+    public MovementController(MovementRollupService movementRollupService) {
+        this.movementRollupService = movementRollupService;
+    }
+
+    @GetMapping("")
+    MovementSeries getMovements(@RequestParam String warehouseName,
+                                @RequestParam(required = false) String itemName,
+                                @RequestParam(defaultValue = "day") String granularity,
+                                @RequestParam Instant from,
+                                @RequestParam Instant to) {
+        return movementRollupService.getMovements(warehouseName, itemName, granularity, from, to);
+    }
+}
@@ -0,0 +1,67 @@
+package com.inventory.controller;
+
+import com.inventory.dto.ExportFormat;
+import com.inventory.dto.StockPage;
+import com.inventory.exception.InvalidPriceException;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.StockEntry;
+import com.inventory.service.StockService;
+import com.inventory.service.StockSnapshotService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@RequestMapping("api/v1/stocks")
+@RestController
+public class StockController {
+
+    private final StockService stockService;
+    private final StockSnapshotService stockSnapshotService;
+
+    public StockController(StockService stockService, StockSnapshotService stockSnapshotService) {
+        this.stockService = stockService;
+        this.stockSnapshotService = stockSnapshotService;
+    }
+
+    @GetMapping("")
+    StockPage getStocks(@RequestParam(required = false) String warehouseName,
+                        @RequestParam(required = false) String itemPrefix,
+                        @RequestParam(required = false) String cursor,
+                        @RequestParam(defaultValue = "" + StockService.DEFAULT_PAGE_SIZE) int size) {
+        return stockService.getStocks(warehouseName, itemPrefix, cursor, size);
+    }
+
+    @GetMapping("/entry")
+    StockEntry getStock(@RequestParam String itemName,
+                        @RequestParam String warehouseName,
+                        @RequestParam BigDecimal pricePerUnit) {
+        long price;
+        try {
+            price = FixedPoint.of(pricePerUnit);
+        } catch (ArithmeticException e) {
+            throw new InvalidPriceException(pricePerUnit);
+        }
+        return stockService.getStock(itemName, warehouseName, price);
+    }
+
+    @GetMapping("/as-of")
+    List<StockEntry> getStockAsOf(@RequestParam long transactionId,
+                                  @RequestParam String itemName,
+                                  @RequestParam String warehouseName) {
+        return stockSnapshotService.getStockAsOf(transactionId, itemName, warehouseName);
+    }
+
+    @GetMapping("/export")
+    ResponseEntity<StreamingResponseBody> exportStocks(@RequestParam(defaultValue = "ndjson") String format) {
+        ExportFormat exportFormat = ExportFormat.fromValue(format);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=stocks." + exportFormat.fileExtension())
+                .body(outputStream -> stockService.exportStocks(exportFormat, outputStream));
+    }
+
+}
@@ -1,14 +1,27 @@
 package com.inventory.controller;
 
+import com.inventory.dto.ImportResult;
+import com.inventory.dto.IngestionChunkResult;
+import com.inventory.dto.TransactionLineResult;
 import com.inventory.dto.TransactionPatchRequest;
 import com.inventory.dto.TransactionPostRequest;
+import com.inventory.exception.IdempotencyKeyNotSupportedException;
+import com.inventory.service.IdempotencyService;
+import com.inventory.service.TransactionImportService;
+import com.inventory.service.TransactionIngestionService;
 import com.inventory.service.TransactionService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RequestMapping("api/v1/transactions")
@@ -17,29 +30,82 @@ public class TransactionController {
 
     private static final Logger log = LoggerFactory.getLogger(TransactionController.class);
     private final TransactionService transactionService;
+    private final TransactionIngestionService transactionIngestionService;
+    private final TransactionImportService transactionImportService;
+    private final IdempotencyService idempotencyService;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService,
+                                 TransactionIngestionService transactionIngestionService,
+                                 TransactionImportService transactionImportService,
+                                 IdempotencyService idempotencyService) {
         this.transactionService = transactionService;
+        this.transactionIngestionService = transactionIngestionService;
+        this.transactionImportService = transactionImportService;
+        this.idempotencyService = idempotencyService;
     }
 
-    @ResponseStatus(HttpStatus.CREATED)
     @PostMapping("")
-    void createTransactions(@Valid @RequestBody List<TransactionPostRequest> transactions) {
-        transactions.forEach(transaction -> {
-            log.info("Creating transaction ({},{},{},{},{})",
-                    transaction.itemName(), transaction.quantity(),
-                    transaction.unit(), transaction.pricePerUnit(), transaction.warehouseName());
-            transactionService.addTransaction(transaction);
-        });
+    ResponseEntity<?> createTransactions(@RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                         @Valid @RequestBody List<TransactionPostRequest> transactions) {
+        log.info("Creating {} transactions", transactions.size());
+        if (idempotencyKey == null) {
+            return applyTransactions(transactions);
+        }
+        if (transactionService.isJournaled() || transactionIngestionService.isPartitionedByWarehouse()) {
+            return idempotencyService.executeClaimed(idempotencyKey, "createTransactions", transactions,
+                    () -> applyTransactions(transactions));
+        }
+        return idempotencyService.executeAtomic(idempotencyKey, "createTransactions", transactions, HttpStatus.CREATED,
+                () -> transactionService.addTransactions(transactions));
+    }
+
+    private ResponseEntity<List<TransactionLineResult>> applyTransactions(List<TransactionPostRequest> transactions) {
+        if (transactionService.isJournaled()) {
+            transactionService.journalTransactions(transactions);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        }
+        if (!transactionIngestionService.isPartitionedByWarehouse()) {
+            transactionService.addTransactions(transactions);
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        }
+        List<TransactionLineResult> results = transactionIngestionService.ingestByWarehouse(transactions);
+        boolean allCommitted = results.stream()
+                .allMatch(result -> result.status() == TransactionLineResult.Status.COMMITTED);
+        return ResponseEntity.status(allCommitted ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
+    }
+
+    @PostMapping(value = "", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<List<IngestionChunkResult>> ingestTransactions(
+            @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            InputStream body) throws IOException {
+        // A replay would have to tell which chunks of a half-committed stream are already in the ledger
+        if (idempotencyKey != null) {
+            throw new IdempotencyKeyNotSupportedException("NDJSON");
+        }
+        log.info("Ingesting NDJSON transaction stream");
+        List<IngestionChunkResult> results = transactionIngestionService.ingest(body);
+        boolean allCommitted = results.stream()
+                .allMatch(result -> result.status() == IngestionChunkResult.Status.COMMITTED);
+        return ResponseEntity.status(allCommitted ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "/import", consumes = "text/csv")
+    ImportResult importTransactions(InputStream body) throws IOException {
+        log.info("Importing CSV transaction file");
+        return transactionImportService.importCsv(new InputStreamReader(body, StandardCharsets.UTF_8));
     }
 
-    @ResponseStatus(HttpStatus.ACCEPTED)
     @PatchMapping("")
-    void correctTransactions(@Valid @RequestBody List<TransactionPatchRequest> transactions) {
-        transactions.forEach(transaction -> {
-            log.info("Correction transaction with id: {}", transaction.originalTransactionId());
-            transactionService.correctTransaction(transaction);
-        });
+    ResponseEntity<?> correctTransactions(@RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                          @Valid @RequestBody List<TransactionPatchRequest> transactions) {
+        log.info("Correcting {} transactions", transactions.size());
+        if (idempotencyKey == null) {
+            transactionService.correctTransactions(transactions);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        }
+        return idempotencyService.executeAtomic(idempotencyKey, "correctTransactions", transactions, HttpStatus.ACCEPTED,
+                () -> transactionService.correctTransactions(transactions));
     }
 
 }
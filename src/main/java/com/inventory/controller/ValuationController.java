@@ -0,0 +1,33 @@
+package com.inventory.controller;
+
+import com.inventory.model.Valuation;
+import com.inventory.service.ValuationService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RequestMapping("api/v1/valuations")
+@RestController
+public class ValuationController {
+
+    private final ValuationService valuationService;
+
+    public ValuationController(ValuationService valuationService) {
+        this.valuationService = valuationService;
+    }
+
+    @GetMapping("/warehouses")
+    List<Valuation> getWarehouseValuations() {
+        return valuationService.getWarehouseValuations();
+    }
+
+    @GetMapping("/warehouse")
+    Valuation getWarehouseValuation(@RequestParam String warehouseName) {
+        return valuationService.getWarehouseValuation(warehouseName);
+    }
+
+    @GetMapping("/item")
+    Valuation getItemValuation(@RequestParam String itemName) {
+        return valuationService.getItemValuation(itemName);
+    }
+}
@@ -0,0 +1,6 @@
+package com.inventory.dto;
+
+public record DeadLetterReplayResult(
+        int replayed,
+        int failed
+) {}
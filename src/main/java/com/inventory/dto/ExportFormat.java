@@ -0,0 +1,34 @@
+package com.inventory.dto;
+
+import com.inventory.exception.UnsupportedExportFormatException;
+import org.springframework.http.MediaType;
+
+public enum ExportFormat {
+    NDJSON("ndjson", MediaType.APPLICATION_NDJSON),
+    CSV("csv", new MediaType("text", "csv"));
+
+    private final String value;
+    private final MediaType mediaType;
+
+    ExportFormat(String value, MediaType mediaType) {
+        this.value = value;
+        this.mediaType = mediaType;
+    }
+
+    public String fileExtension() {
+        return value;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public static ExportFormat fromValue(String value) {
+        for (ExportFormat format : ExportFormat.values()) {
+            if (format.value.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new UnsupportedExportFormatException(value);
+    }
+}
@@ -0,0 +1,6 @@
+package com.inventory.dto;
+
+public record ImportResult(
+        long transactions,
+        long stocks
+) {}
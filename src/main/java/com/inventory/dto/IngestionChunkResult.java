@@ -0,0 +1,17 @@
+package com.inventory.dto;
+
+import java.util.List;
+
+public record IngestionChunkResult(
+        int chunk,
+        long firstLine,
+        long lastLine,
+        Status status,
+        List<String> errors
+) {
+    public enum Status {
+        COMMITTED,
+        REJECTED,
+        FAILED
+    }
+}
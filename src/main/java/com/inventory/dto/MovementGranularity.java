@@ -0,0 +1,23 @@
+package com.inventory.dto;
+
+import com.inventory.exception.UnsupportedGranularityException;
+
+public enum MovementGranularity {
+    HOUR("hour"),
+    DAY("day");
+
+    private final String value;
+
+    MovementGranularity(String value) {
+        this.value = value;
+    }
+
+    public static MovementGranularity fromValue(String value) {
+        for (MovementGranularity granularity : MovementGranularity.values()) {
+            if (granularity.value.equalsIgnoreCase(value)) {
+                return granularity;
+            }
+        }
+        throw new UnsupportedGranularityException(value);
+    }
+}
@@ -0,0 +1,14 @@
+package com.inventory.dto;
+
+import com.inventory.model.MovementBucket;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Non-empty buckets in time order. Ledger entries created at or after {@code rolledUpTo} are not counted yet.
+ */
+public record MovementSeries(
+        List<MovementBucket> buckets,
+        Instant rolledUpTo
+) {}
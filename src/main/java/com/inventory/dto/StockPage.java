@@ -0,0 +1,10 @@
+package com.inventory.dto;
+
+import com.inventory.model.StockEntry;
+
+import java.util.List;
+
+public record StockPage(
+        List<StockEntry> items,
+        String nextCursor
+) {}
@@ -0,0 +1,39 @@
+package com.inventory.dto;
+
+import com.inventory.exception.InvalidCursorException;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over the (warehouse_name, item_name, price_per_unit) order of stock pages.
+ */
+public final class StockPageCursor {
+
+    private static final String SEPARATOR = "\u0000";
+
+    private StockPageCursor() {
+    }
+
+    public static String encode(StockEntry lastEntry) {
+        String raw = String.join(SEPARATOR,
+                lastEntry.warehouseName(), lastEntry.itemName(), FixedPoint.toString(lastEntry.pricePerUnit()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static StockKey decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, -1);
+            if (parts.length != 3) {
+                throw new InvalidCursorException(cursor);
+            }
+            return new StockKey(parts[1], parts[0], FixedPoint.parse(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
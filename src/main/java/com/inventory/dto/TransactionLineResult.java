@@ -0,0 +1,13 @@
+package com.inventory.dto;
+
+public record TransactionLineResult(
+        int line,
+        String warehouseName,
+        Status status,
+        String error
+) {
+    public enum Status {
+        COMMITTED,
+        FAILED
+    }
+}
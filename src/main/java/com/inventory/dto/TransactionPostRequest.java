@@ -1,5 +1,6 @@
 package com.inventory.dto;
 
+import com.inventory.model.JsonFixedPoint;
 import com.inventory.model.Unit;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
@@ -7,8 +8,8 @@ import jakarta.validation.constraints.Positive;
 
 public record TransactionPostRequest(
         @NotEmpty String itemName,
-        @Positive Double quantity,
+        @JsonFixedPoint @Positive long quantity,
         @NotNull Unit unit,
-        @Positive Double pricePerUnit,
+        @JsonFixedPoint @Positive long pricePerUnit,
         @NotEmpty String warehouseName
 ) {}
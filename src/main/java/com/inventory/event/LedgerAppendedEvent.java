@@ -0,0 +1,7 @@
+package com.inventory.event;
+
+/**
+ * Published whenever transactions were appended to the ledger.
+ */
+public record LedgerAppendedEvent(int transactions) {
+}
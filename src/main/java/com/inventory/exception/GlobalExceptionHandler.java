@@ -1,9 +1,13 @@
 package com.inventory.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -22,6 +26,28 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<ErrorResponse> handleConcurrencyFailure(ConcurrencyFailureException ex) {
+        log.warn("Concurrent update conflict: {}", ex.getMostSpecificCause().getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse("Concurrent Update Conflict!",
+                        "The request collided with concurrent updates, please retry", LocalDateTime.now()));
+    }
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<ErrorResponse> handleMessageNotReadable(HttpMessageNotReadableException ex) {
+        Throwable cause = ex.getMostSpecificCause();
+        String message = cause instanceof JsonProcessingException json ? json.getOriginalMessage() : cause.getMessage();
+        log.warn("Malformed request: {}", message);
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Malformed Request!", message, LocalDateTime.now()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
     @ExceptionHandler(StockNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleStockNotFound(StockNotFoundException ex) {
         log.warn("Stock not found: {}", ex.getMessage());
@@ -31,6 +57,15 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(ValuationNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleValuationNotFound(ValuationNotFoundException ex) {
+        log.warn("Valuation not found: {}", ex.getMessage());
+        return new ResponseEntity<>(
+                new ErrorResponse("Valuation Not Found!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.NOT_FOUND
+        );
+    }
+
     @ExceptionHandler(TransactionNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleTransactionNotFound(TransactionNotFoundException ex) {
         log.warn("Transaction not found: {}", ex.getMessage());
@@ -41,5 +76,103 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidCursor(InvalidCursorException ex) {
+        log.warn("Invalid cursor: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Invalid Cursor!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
+    @ExceptionHandler(InvalidPriceException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidPrice(InvalidPriceException ex) {
+        log.warn("Invalid price: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Invalid Price!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
+    @ExceptionHandler(UnsupportedExportFormatException.class)
+    public ResponseEntity<ErrorResponse> handleUnsupportedExportFormat(UnsupportedExportFormatException ex) {
+        log.warn("Unsupported export format: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Unsupported Export Format!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
+    @ExceptionHandler(UnsupportedGranularityException.class)
+    public ResponseEntity<ErrorResponse> handleUnsupportedGranularity(UnsupportedGranularityException ex) {
+        log.warn("Unsupported granularity: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Unsupported Granularity!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
+    @ExceptionHandler(InvalidImportException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidImport(InvalidImportException ex) {
+        log.warn("Invalid import: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Invalid Import!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
+    @ExceptionHandler(IdempotencyKeyNotSupportedException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyNotSupported(IdempotencyKeyNotSupportedException ex) {
+        log.warn("Idempotency key not supported: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Idempotency Key Not Supported!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.BAD_REQUEST
+        );
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyReused(IdempotencyKeyReusedException ex) {
+        log.warn("Idempotency key reused: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Idempotency Key Reused!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.UNPROCESSABLE_ENTITY
+        );
+    }
+
+    @ExceptionHandler(IdempotencyKeyInProgressException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyInProgress(IdempotencyKeyInProgressException ex) {
+        log.warn("Idempotency key in progress: {}", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse("Request In Progress!", ex.getMessage(), LocalDateTime.now()));
+    }
+
+    @ExceptionHandler(StockWriteTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleStockWriteTimeout(StockWriteTimeoutException ex) {
+        log.warn("Stock write timed out: {}", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResponse("Write Timed Out!", ex.getMessage(), LocalDateTime.now()));
+    }
+
+    @ExceptionHandler(WriteOutcomeUnknownException.class)
+    public ResponseEntity<ErrorResponse> handleWriteOutcomeUnknown(WriteOutcomeUnknownException ex) {
+        log.warn("Write outcome unknown: {}", ex.getMessage());
+
+        return new ResponseEntity<>(
+                new ErrorResponse("Outcome Unknown!", ex.getMessage(), LocalDateTime.now()),
+                HttpStatus.GATEWAY_TIMEOUT
+        );
+    }
+
     record ErrorResponse(String error, String message, LocalDateTime timestamp) {}
 }
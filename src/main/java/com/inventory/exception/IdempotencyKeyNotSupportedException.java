@@ -0,0 +1,7 @@
+package com.inventory.exception;
+
+public class IdempotencyKeyNotSupportedException extends RuntimeException {
+    public IdempotencyKeyNotSupportedException(String upload) {
+        super("Idempotency-Key is not supported for " + upload + " uploads, they commit chunk by chunk!");
+    }
+}
@@ -0,0 +1,7 @@
+package com.inventory.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String key) {
+        super("Idempotency-Key " + key + " was already used for a different request!");
+    }
+}
@@ -0,0 +1,7 @@
+package com.inventory.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String cursor) {
+        super("Cursor " + cursor + " is not valid!");
+    }
+}
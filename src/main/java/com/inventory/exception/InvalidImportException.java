@@ -0,0 +1,9 @@
+package com.inventory.exception;
+
+import java.util.List;
+
+public class InvalidImportException extends RuntimeException {
+    public InvalidImportException(List<String> errors) {
+        super("Import rejected: " + String.join("; ", errors));
+    }
+}
@@ -0,0 +1,9 @@
+package com.inventory.exception;
+
+import java.math.BigDecimal;
+
+public class InvalidPriceException extends RuntimeException {
+    public InvalidPriceException(BigDecimal pricePerUnit) {
+        super("Price per unit " + pricePerUnit.toPlainString() + " is not valid, it must have at most 2 decimals!");
+    }
+}
@@ -1,7 +1,9 @@
 package com.inventory.exception;
 
+import com.inventory.model.FixedPoint;
+
 public class StockNotFoundException extends RuntimeException {
-  public StockNotFoundException(String itemName, String warehouseName, Double pricePerUnit) {
-    super(String.format("Stock [%s, %s, %s] was not found!", itemName, warehouseName, pricePerUnit));
+  public StockNotFoundException(String itemName, String warehouseName, long pricePerUnit) {
+    super(String.format("Stock [%s, %s, %s] was not found!", itemName, warehouseName, FixedPoint.toString(pricePerUnit)));
   }
 }
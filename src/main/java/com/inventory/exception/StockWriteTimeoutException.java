@@ -0,0 +1,9 @@
+package com.inventory.exception;
+
+import java.time.Duration;
+
+public class StockWriteTimeoutException extends RuntimeException {
+    public StockWriteTimeoutException(int lane, Duration timeout) {
+        super("Stock write lane " + lane + " did not take the request within " + timeout + ", nothing was written!");
+    }
+}
@@ -0,0 +1,7 @@
+package com.inventory.exception;
+
+public class UnsupportedExportFormatException extends RuntimeException {
+    public UnsupportedExportFormatException(String format) {
+        super("Export format " + format + " is not supported!");
+    }
+}
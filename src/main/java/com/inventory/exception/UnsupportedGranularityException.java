@@ -0,0 +1,7 @@
+package com.inventory.exception;
+
+public class UnsupportedGranularityException extends RuntimeException {
+    public UnsupportedGranularityException(String granularity) {
+        super("Granularity " + granularity + " is not supported!");
+    }
+}
@@ -0,0 +1,7 @@
+package com.inventory.exception;
+
+public class ValuationNotFoundException extends RuntimeException {
+    public ValuationNotFoundException(String kind, String name) {
+        super(String.format("%s [%s] was not found!", kind, name));
+    }
+}
@@ -0,0 +1,10 @@
+package com.inventory.exception;
+
+import java.time.Duration;
+
+public class WriteOutcomeUnknownException extends RuntimeException {
+    public WriteOutcomeUnknownException(int lane, Duration timeout) {
+        super("Stock write lane " + lane + " did not commit the request within " + timeout
+                + ", it may still be written, check the ledger before retrying!");
+    }
+}
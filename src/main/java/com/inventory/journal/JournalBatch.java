@@ -0,0 +1,18 @@
+package com.inventory.journal;
+
+import com.inventory.model.Transaction;
+
+import java.util.List;
+
+/**
+ * Consecutive journal records read from {@code startPosition}; {@code endPosition} is where the next record starts.
+ */
+public record JournalBatch(long startPosition,
+                           long endPosition,
+                           int records,
+                           List<Transaction> transactions) {
+
+    public boolean isEmpty() {
+        return records == 0;
+    }
+}
@@ -0,0 +1,197 @@
+package com.inventory.journal;
+
+import com.inventory.repository.JournalOffsetRepository;
+import com.inventory.service.TransactionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the transaction journal to the database in large batches on a background thread.
+ * <p>
+ * Every batch is written together with the journal's applied position, so after a crash draining resumes
+ * exactly behind the last committed batch. While the database is unavailable the batch is retried and the
+ * journal keeps growing. A batch refused for its content, by the database or because applying it fails the same way
+ * every time, is re-applied record by record. A record that is refused on its own is set aside as a dead letter in
+ * the database, in the same transaction as the applied position moves past it, so it cannot block the journal and is
+ * not lost; it is replayed once its cause is fixed. The drainer reports itself down as a health indicator while it is
+ * failing.
+ * <p>
+ * Applied positions are stored per journal name, so {@code inventory.journal.name} must be unique for every node
+ * draining into the same database; two nodes sharing a name would skip or re-apply each other's records.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.journal.enabled", havingValue = "true")
+public class JournalDrainer implements SmartLifecycle, HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalDrainer.class);
+    private static final Duration IDLE_WAIT = Duration.ofMillis(100);
+
+    private final TransactionJournal transactionJournal;
+    private final JournalOffsetRepository journalOffsetRepository;
+    private final TransactionService transactionService;
+    private final int batchSize;
+    private final Duration retryInterval;
+    private final Counter rejectedCounter;
+    private volatile long position;
+    private volatile boolean running;
+    private Thread drainer;
+    // Records before this position are applied one at a time, to single out the one that is refused
+    private long isolateUntil;
+    // Consecutive failed attempts, and the error of the last one
+    private volatile int failures;
+    private volatile String lastError;
+
+    public JournalDrainer(TransactionJournal transactionJournal,
+                          JournalOffsetRepository journalOffsetRepository,
+                          TransactionService transactionService,
+                          MeterRegistry meterRegistry,
+                          @Value("${inventory.journal.drain-batch-size:5000}") int batchSize,
+                          @Value("${inventory.journal.drain-retry-interval:1s}") Duration retryInterval) {
+        this.transactionJournal = transactionJournal;
+        this.journalOffsetRepository = journalOffsetRepository;
+        this.transactionService = transactionService;
+        this.batchSize = batchSize;
+        this.retryInterval = retryInterval;
+        this.rejectedCounter = Counter.builder("inventory.journal.rejected")
+                .description("Journal records set aside as dead letters because they could not be applied")
+                .register(meterRegistry);
+        Gauge.builder("inventory.journal.pending.bytes", this, drainer -> transactionJournal.getDurablePosition() - drainer.position)
+                .description("Journal bytes accepted but not yet applied to the database")
+                .register(meterRegistry);
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void start() {
+        position = journalOffsetRepository.getPosition(transactionJournal.getName());
+        isolateUntil = position;
+        failures = 0;
+        lastError = null;
+        running = true;
+        drainer = Thread.ofPlatform()
+                .name("journal-drainer")
+                .daemon()
+                .start(this::drain);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (drainer != null) {
+            try {
+                drainer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            drainer = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Down while the drainer is not running or its last attempt failed, e.g. because the database is unavailable or
+     * the next journal record cannot be read.
+     */
+    @Override
+    public Health health() {
+        Health.Builder health = running && failures == 0 ? Health.up() : Health.down();
+        health.withDetail("journal", transactionJournal.getName())
+                .withDetail("position", position)
+                .withDetail("pendingBytes", transactionJournal.getDurablePosition() - position)
+                .withDetail("failedAttempts", failures);
+        String error = lastError;
+        if (error != null) {
+            health.withDetail("lastError", error);
+        }
+        return health.build();
+    }
+
+    private void drain() {
+        try {
+            while (running) {
+                try {
+                    drainBatch();
+                    failures = 0;
+                    lastError = null;
+                } catch (RuntimeException e) {
+                    failures++;
+                    lastError = String.valueOf(e.getMessage());
+                    log.warn("Could not drain journal at position [{}], retrying in {} ms: {}",
+                            position, retryInterval.toMillis(), e.getMessage());
+                    Thread.sleep(retryInterval.toMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Throwable e) {
+            lastError = String.valueOf(e);
+            log.error("Journal drainer stopped at position [{}]", position, e);
+            throw e;
+        } finally {
+            running = false;
+        }
+    }
+
+    private void drainBatch() throws InterruptedException {
+        JournalBatch batch = transactionJournal.read(position, position < isolateUntil ? 1 : batchSize);
+        if (batch.isEmpty()) {
+            transactionJournal.awaitRecords(position, IDLE_WAIT);
+            return;
+        }
+        try {
+            transactionService.applyJournaled(transactionJournal.getName(), batch);
+        } catch (DataIntegrityViolationException e) {
+            reject(batch, e.getMostSpecificCause().getMessage());
+            return;
+        } catch (DataAccessException | TransactionException e) {
+            // The database or the connection to it failed, the batch is retried
+            throw e;
+        } catch (RuntimeException e) {
+            // Fails the same way on every attempt, e.g. a stock quantity overflowing, so it is refused like bad data
+            reject(batch, String.valueOf(e));
+            return;
+        }
+        position = batch.endPosition();
+        transactionJournal.deleteBefore(position);
+    }
+
+    /**
+     * Applies a refused batch record by record, or sets it aside as a dead letter if it is a single record. Fails,
+     * so the record is retried, if it cannot be set aside.
+     */
+    private void reject(JournalBatch batch, String reason) {
+        if (batch.records() > 1) {
+            log.warn("Journal batch at position [{}] was refused, applying its {} records one by one: {}",
+                    batch.startPosition(), batch.records(), reason);
+            isolateUntil = batch.endPosition();
+            return;
+        }
+        transactionService.deadLetterJournaled(transactionJournal.getName(), batch, reason);
+        log.error("Set journal record at position [{}] with {} aside as a dead letter: {}",
+                batch.startPosition(), batch.transactions(), reason);
+        rejectedCounter.increment();
+        position = batch.endPosition();
+    }
+}
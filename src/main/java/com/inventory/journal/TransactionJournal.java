@@ -0,0 +1,344 @@
+package com.inventory.journal;
+
+import com.inventory.model.Transaction;
+import com.inventory.model.Unit;
+import com.inventory.repository.JournalOffsetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of accepted transaction batches on local disk, made of memory-mapped segment files.
+ * <p>
+ * A record is a batch, stored as its payload length, a CRC32 of the payload and the payload itself, and is
+ * addressed by its byte position across all segments. Segment files are named after the position they start
+ * at. {@link #append} returns once the record is on disk. Appenders that arrive while a flush is running are
+ * flushed together by the next one, so one {@code msync} covers many requests (group commit).
+ * <p>
+ * On startup the last segment is scanned up to the first incomplete or corrupt record, which is where a
+ * crash interrupted the last append, and everything from there on is discarded.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.journal.enabled", havingValue = "true")
+public class TransactionJournal implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionJournal.class);
+    private static final int HEADER_BYTES = 8;
+    private static final int FORMAT_VERSION = 1;
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final String name;
+    private final int segmentSize;
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock signalLock = new ReentrantLock();
+    private final Condition durableAdvanced = signalLock.newCondition();
+    private Segment current;
+    private volatile long writePosition;
+    private volatile long durablePosition;
+
+    public TransactionJournal(JournalOffsetRepository journalOffsetRepository,
+                              @Value("${inventory.journal.directory:data/journal}") Path directory,
+                              @Value("${inventory.journal.name:local}") String name,
+                              @Value("${inventory.journal.segment-size:64MB}") DataSize segmentSize) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = Math.toIntExact(segmentSize.toBytes());
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String fileName = file.getFileName().toString();
+                long base = Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+                segments.put(base, Segment.open(file, base, 0));
+            }
+        }
+
+        long appliedPosition = journalOffsetRepository.getPosition(name);
+        if (segments.isEmpty()) {
+            current = createSegment(appliedPosition);
+            writePosition = appliedPosition;
+        } else {
+            if (segments.floorKey(appliedPosition) == null) {
+                throw new IllegalStateException("Journal [%s] in %s starts after its applied position [%d]"
+                        .formatted(name, directory, appliedPosition));
+            }
+            current = segments.lastEntry().getValue();
+            writePosition = current.base() + recover(current);
+            if (writePosition < appliedPosition) {
+                throw new IllegalStateException("Journal [%s] in %s ends at [%d], before its applied position [%d]"
+                        .formatted(name, directory, writePosition, appliedPosition));
+            }
+        }
+        durablePosition = writePosition;
+        deleteBefore(appliedPosition);
+        log.info("Opened journal [{}] in {} with {} unapplied bytes", name, directory, writePosition - appliedPosition);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDurablePosition() {
+        return durablePosition;
+    }
+
+    /**
+     * Appends the transactions as one record and returns its end position once it is on disk.
+     */
+    public long append(List<Transaction> transactions) {
+        byte[] payload = encode(transactions);
+        int recordSize = HEADER_BYTES + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("A batch of %d bytes does not fit into a journal segment of %d bytes"
+                    .formatted(recordSize, segmentSize));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        long end;
+        appendLock.lock();
+        try {
+            int offset = (int) (writePosition - current.base());
+            if (offset + recordSize > current.capacity()) {
+                current = createSegment(current.base() + current.capacity());
+                offset = 0;
+            }
+            // The length goes in last: a record whose length is visible is complete, at least in memory
+            current.buffer().put(offset + HEADER_BYTES, payload);
+            current.buffer().putInt(offset + 4, (int) crc.getValue());
+            current.buffer().putInt(offset, payload.length);
+            end = current.base() + offset + recordSize;
+            writePosition = end;
+        } finally {
+            appendLock.unlock();
+        }
+        awaitDurable(end);
+        return end;
+    }
+
+    /**
+     * Reads durable records from {@code position} on, at least one if there is any and otherwise until the
+     * batch holds {@code maxTransactions} transactions.
+     */
+    public JournalBatch read(long position, int maxTransactions) {
+        long limit = durablePosition;
+        List<Transaction> transactions = new ArrayList<>();
+        int records = 0;
+        long next = position;
+        while (next < limit && (records == 0 || transactions.size() < maxTransactions)) {
+            Segment segment = segments.floorEntry(next).getValue();
+            int offset = (int) (next - segment.base());
+            if (offset + HEADER_BYTES > segment.capacity() || segment.buffer().getInt(offset) == 0) {
+                // The rest of the segment was too short for the following record
+                next = segment.base() + segment.capacity();
+                continue;
+            }
+            byte[] payload = new byte[segment.buffer().getInt(offset)];
+            segment.buffer().get(offset + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != segment.buffer().getInt(offset + 4)) {
+                throw new IllegalStateException("Corrupt record at position [%d] of journal [%s]".formatted(next, name));
+            }
+            transactions.addAll(decode(payload));
+            records++;
+            next += HEADER_BYTES + payload.length;
+        }
+        return new JournalBatch(position, next, records, List.copyOf(transactions));
+    }
+
+    /**
+     * Waits until records beyond {@code position} are durable or the timeout passes.
+     */
+    public void awaitRecords(long position, Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        signalLock.lock();
+        try {
+            while (durablePosition <= position && nanos > 0) {
+                nanos = durableAdvanced.awaitNanos(nanos);
+            }
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segment files that only hold records before {@code position}.
+     */
+    public void deleteBefore(long position) {
+        for (Map.Entry<Long, Segment> entry : segments.headMap(segments.lastKey()).entrySet()) {
+            Segment segment = entry.getValue();
+            if (segment.base() + segment.capacity() > position) {
+                break;
+            }
+            segments.remove(entry.getKey());
+            try {
+                segment.channel().close();
+                Files.deleteIfExists(segment.file());
+                log.info("Deleted applied journal segment {}", segment.file().getFileName());
+            } catch (IOException e) {
+                log.warn("Could not delete journal segment {}: {}", segment.file(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.buffer().force();
+            segment.channel().close();
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (durablePosition >= position) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (durablePosition >= position) {
+                return;
+            }
+            // Everything appended so far, including records of appenders queued behind this one
+            long target = writePosition;
+            for (Segment segment : segments.subMap(segments.floorKey(durablePosition), true, target, false).values()) {
+                segment.buffer().force();
+            }
+            durablePosition = target;
+        } finally {
+            flushLock.unlock();
+        }
+        signalLock.lock();
+        try {
+            durableAdvanced.signalAll();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    private Segment createSegment(long base) {
+        try {
+            Segment segment = Segment.open(directory.resolve("%020d%s".formatted(base, SEGMENT_SUFFIX)), base, segmentSize);
+            segments.put(base, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create journal segment at position " + base, e);
+        }
+    }
+
+    /**
+     * Returns the offset after the last complete record of the segment and zeroes everything behind it.
+     */
+    private int recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer();
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segment.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > segment.capacity()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                log.warn("Discarding torn record at position [{}] of journal [{}]", segment.base() + offset, name);
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        byte[] zeros = new byte[64 * 1024];
+        for (int i = offset; i < segment.capacity(); i += zeros.length) {
+            buffer.put(i, zeros, 0, Math.min(zeros.length, segment.capacity() - i));
+        }
+        buffer.force();
+        return offset;
+    }
+
+    private static byte[] encode(List<Transaction> transactions) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * transactions.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(transactions.size());
+            for (Transaction transaction : transactions) {
+                out.writeUTF(transaction.itemName());
+                out.writeLong(transaction.quantity());
+                out.writeByte(transaction.unit().ordinal());
+                out.writeLong(transaction.pricePerUnit());
+                out.writeUTF(transaction.warehouseName());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Transaction> decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported journal record format " + version);
+            }
+            int count = in.readInt();
+            List<Transaction> transactions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String itemName = in.readUTF();
+                long quantity = in.readLong();
+                Unit unit = Unit.values()[in.readByte()];
+                long pricePerUnit = in.readLong();
+                String warehouseName = in.readUTF();
+                transactions.add(new Transaction(null, itemName, quantity, unit, pricePerUnit, warehouseName));
+            }
+            return transactions;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Segment(Path file, long base, int capacity, FileChannel channel, MappedByteBuffer buffer) {
+
+        /**
+         * Maps a segment file, creating it with {@code size} bytes if {@code size} is positive.
+         */
+        static Segment open(Path file, long base, int size) throws IOException {
+            FileChannel channel = size > 0
+                    ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int capacity = size > 0 ? size : Math.toIntExact(channel.size());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            if (size > 0) {
+                channel.force(true);
+            }
+            return new Segment(file, base, capacity, channel, buffer);
+        }
+    }
+}
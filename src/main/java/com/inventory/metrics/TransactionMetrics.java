@@ -0,0 +1,58 @@
+package com.inventory.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts ledger writes and records how many transactions each write carried.
+ */
+@Component
+public class TransactionMetrics {
+
+    private final Counter created;
+    private final Counter corrected;
+    private final DistributionSummary createdBatchSize;
+    private final DistributionSummary correctedBatchSize;
+    private final DistributionSummary importedBatchSize;
+
+    public TransactionMetrics(MeterRegistry meterRegistry) {
+        this.created = transactions(meterRegistry, "created");
+        this.corrected = transactions(meterRegistry, "corrected");
+        this.createdBatchSize = batchSize(meterRegistry, "create");
+        this.correctedBatchSize = batchSize(meterRegistry, "correct");
+        this.importedBatchSize = batchSize(meterRegistry, "import");
+    }
+
+    public void recordCreated(int transactions) {
+        created.increment(transactions);
+        createdBatchSize.record(transactions);
+    }
+
+    public void recordCorrected(int transactions) {
+        corrected.increment(transactions);
+        correctedBatchSize.record(transactions);
+    }
+
+    public void recordImported(int transactions) {
+        created.increment(transactions);
+        importedBatchSize.record(transactions);
+    }
+
+    // A "_created" suffix is reserved in the Prometheus exposition format, hence one counter with a type tag
+    private static Counter transactions(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("inventory.transactions")
+                .description("Transactions appended to the ledger")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary batchSize(MeterRegistry meterRegistry, String operation) {
+        return DistributionSummary.builder("inventory.transactions.batch.size")
+                .description("Transactions per ledger write")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,115 @@
+package com.inventory.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Quantities and prices as longs counting hundredths, the scale of the {@code numeric(10,2)} price column.
+ * Sums and differences are exact, so a stock that drops to zero compares equal to zero. Decimal input with more
+ * decimals than that is refused rather than rounded, so no quantity is silently changed on its way in.
+ */
+public final class FixedPoint {
+
+    public static final int SCALE = 2;
+    public static final long ONE = 100;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * @throws ArithmeticException if the value has more than {@link #SCALE} decimals or does not fit
+     */
+    public static long of(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Whether the value has at most {@link #SCALE} decimals, so {@link #of(BigDecimal)} needs no rounding.
+     */
+    public static boolean isExact(BigDecimal value) {
+        return value.stripTrailingZeros().scale() <= SCALE;
+    }
+
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    /**
+     * Parses a plain decimal such as PostgreSQL prints for a {@code numeric} column, without going through
+     * {@link BigDecimal}.
+     *
+     * @throws NumberFormatException if the text is not a plain decimal or does not fit
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long value = 0;
+        // -1 until the decimal point
+        int fractionDigits = -1;
+        boolean digits = false;
+        boolean roundUp = false;
+        try {
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                    continue;
+                }
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("Not a decimal: " + text);
+                }
+                digits = true;
+                if (fractionDigits < SCALE) {
+                    value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else if (fractionDigits == SCALE) {
+                    roundUp = c >= '5';
+                    fractionDigits++;
+                }
+            }
+            if (!digits) {
+                throw new NumberFormatException("Not a decimal: " + text);
+            }
+            for (int scale = Math.max(fractionDigits, 0); scale < SCALE; scale++) {
+                value = Math.multiplyExact(value, 10);
+            }
+            if (roundUp) {
+                value = Math.incrementExact(value);
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Out of range: " + text);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Formats the value with as few decimals as it needs but at least one, e.g. {@code 50.0}, {@code 1.2}
+     * or {@code 0.75}, which is how the API has always printed quantities and prices.
+     */
+    public static String toString(long value) {
+        StringBuilder text = new StringBuilder(24);
+        if (value < 0) {
+            text.append('-');
+        }
+        long magnitude = Math.absExact(value);
+        text.append(magnitude / ONE).append('.');
+        char[] fraction = new char[SCALE];
+        long remainder = magnitude % ONE;
+        for (int digit = SCALE - 1; digit >= 0; digit--) {
+            fraction[digit] = (char) ('0' + remainder % 10);
+            remainder /= 10;
+        }
+        int end = SCALE;
+        while (end > 1 && fraction[end - 1] == '0') {
+            end--;
+        }
+        return text.append(fraction, 0, end).toString();
+    }
+}
@@ -0,0 +1,16 @@
+package com.inventory.model;
+
+/**
+ * A stored Idempotency-Key; {@code statusCode} is null while the request that claimed it is still running.
+ * {@code abandoned} is set once such a claim outlived its lease, e.g. because the instance running it crashed.
+ */
+public record IdempotencyRecord(String key,
+                                byte[] requestHash,
+                                Integer statusCode,
+                                String responseBody,
+                                boolean abandoned) {
+
+    public boolean isCompleted() {
+        return statusCode != null;
+    }
+}
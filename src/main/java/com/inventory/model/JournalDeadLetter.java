@@ -0,0 +1,16 @@
+package com.inventory.model;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.Instant;
+
+/**
+ * A journal record the drainer could not apply, kept with the reason until it is replayed. {@code transactions} is
+ * the JSON array of its transactions.
+ */
+public record JournalDeadLetter(long id,
+                                String journalName,
+                                long position,
+                                @JsonRawValue String transactions,
+                                String reason,
+                                Instant rejectedAt) {}
@@ -0,0 +1,79 @@
+package com.inventory.model;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.math.BigDecimal;
+
+/**
+ * Maps a {@link FixedPoint} long to a plain JSON decimal, so {@code 1250} is written and read as {@code 12.5}.
+ * A missing or null value reads as zero, and a value with more decimals than {@link FixedPoint#SCALE} is refused.
+ */
+@Target({ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@JacksonAnnotationsInside
+@JsonSerialize(using = JsonFixedPoint.Serializer.class)
+@JsonDeserialize(using = JsonFixedPoint.Deserializer.class)
+public @interface JsonFixedPoint {
+
+    class Serializer extends StdSerializer<Long> {
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(FixedPoint.toString(value));
+        }
+    }
+
+    class Deserializer extends StdDeserializer<Long> {
+
+        public Deserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            BigDecimal value = switch (parser.currentToken()) {
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getDecimalValue();
+                case VALUE_STRING -> {
+                    try {
+                        yield new BigDecimal(parser.getText().trim());
+                    } catch (NumberFormatException e) {
+                        throw InvalidFormatException.from(parser, "Not a decimal number", parser.getText(), long.class);
+                    }
+                }
+                default -> (BigDecimal) context.handleUnexpectedToken(BigDecimal.class, parser);
+            };
+            if (!FixedPoint.isExact(value)) {
+                throw InvalidFormatException.from(parser, "%s must have at most %d decimals"
+                        .formatted(parser.currentName(), FixedPoint.SCALE), value, long.class);
+            }
+            try {
+                return FixedPoint.of(value);
+            } catch (ArithmeticException e) {
+                throw InvalidFormatException.from(parser, "Decimal number out of range", value, long.class);
+            }
+        }
+
+        @Override
+        public Long getNullValue(DeserializationContext context) {
+            return 0L;
+        }
+    }
+}
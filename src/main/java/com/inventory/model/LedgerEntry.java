@@ -0,0 +1,23 @@
+package com.inventory.model;
+
+
+/**
+ * A ledger row together with the values of the transaction it corrects, if any. Quantities and prices are
+ * {@link FixedPoint} hundredths; the original ones are zero when the row is not a correction.
+ */
+public record LedgerEntry(Long id,
+                          String itemName,
+                          long quantity,
+                          Unit unit,
+                          long pricePerUnit,
+                          String warehouseName,
+                          Long correctsTransactionId,
+                          String originalItemName,
+                          long originalQuantity,
+                          long originalPricePerUnit,
+                          String originalWarehouseName) {
+
+    public boolean isCorrection() {
+        return correctsTransactionId != null;
+    }
+}
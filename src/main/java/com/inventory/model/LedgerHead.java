@@ -0,0 +1,9 @@
+package com.inventory.model;
+
+import java.time.Instant;
+
+/**
+ * The highest ledger id and the database time it was read at.
+ */
+public record LedgerHead(long position,
+                         Instant readAt) {}
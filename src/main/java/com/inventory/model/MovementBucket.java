@@ -0,0 +1,14 @@
+package com.inventory.model;
+
+import java.time.Instant;
+
+/**
+ * Quantity and value (quantity × price per unit) moved in and out during one hour or day starting at {@code bucket},
+ * in {@link FixedPoint} hundredths. {@code transactions} counts the ledger entries, corrections included.
+ */
+public record MovementBucket(Instant bucket,
+                             @JsonFixedPoint long quantityIn,
+                             @JsonFixedPoint long quantityOut,
+                             @JsonFixedPoint long valueIn,
+                             @JsonFixedPoint long valueOut,
+                             long transactions) {}
@@ -1,9 +1,11 @@
 package com.inventory.model;
 
-
+/**
+ * A stock row; quantity and price are {@link FixedPoint} hundredths.
+ */
 public record StockEntry(Long id,
                          String itemName,
-                         Double quantity,
+                         @JsonFixedPoint long quantity,
                          Unit unit,
-                         Double pricePerUnit,
+                         @JsonFixedPoint long pricePerUnit,
                          String warehouseName){}
@@ -0,0 +1,32 @@
+package com.inventory.model;
+
+import java.util.Comparator;
+
+public record StockKey(String itemName,
+                       String warehouseName,
+                       long pricePerUnit) {
+
+    /**
+     * The order in which batch writers lock stock rows, so that concurrent batches never wait on each other in a
+     * cycle. Names are compared by code point, the order of {@code COLLATE "C"} on a UTF-8 database.
+     */
+    public static final Comparator<StockKey> CANONICAL_ORDER = Comparator
+            .comparing(StockKey::warehouseName, StockKey::compareCodePoints)
+            .thenComparing(StockKey::itemName, StockKey::compareCodePoints)
+            .thenComparingLong(StockKey::pricePerUnit);
+
+    private static int compareCodePoints(String left, String right) {
+        int i = 0;
+        int j = 0;
+        while (i < left.length() && j < right.length()) {
+            int leftCodePoint = left.codePointAt(i);
+            int rightCodePoint = right.codePointAt(j);
+            if (leftCodePoint != rightCodePoint) {
+                return Integer.compare(leftCodePoint, rightCodePoint);
+            }
+            i += Character.charCount(leftCodePoint);
+            j += Character.charCount(rightCodePoint);
+        }
+        return Integer.compare(left.length() - i, right.length() - j);
+    }
+}
@@ -0,0 +1,11 @@
+package com.inventory.model;
+
+import java.util.List;
+
+/**
+ * A serialized state of the in-memory stock projection and the ledger position it reflects.
+ */
+public record StockProjectionCheckpoint(long ledgerPosition,
+                                        List<Long> pendingTransactionIds,
+                                        byte[] state) {
+}
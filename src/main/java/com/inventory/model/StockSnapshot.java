@@ -0,0 +1,7 @@
+package com.inventory.model;
+
+/**
+ * Stock levels after every ledger entry up to and including {@code ledgerPosition}.
+ */
+public record StockSnapshot(long id,
+                            long ledgerPosition) {}
@@ -1,10 +1,12 @@
 package com.inventory.model;
 
-
+/**
+ * A ledger row; quantity and price are {@link FixedPoint} hundredths.
+ */
 public record Transaction(Long id,
                           String itemName,
-                          Double quantity,
+                          @JsonFixedPoint long quantity,
                           Unit unit,
-                          Double pricePerUnit,
+                          @JsonFixedPoint long pricePerUnit,
                           String warehouseName) {
 }
@@ -0,0 +1,7 @@
+package com.inventory.model;
+
+/**
+ * Stock value (quantity × price per unit) of a warehouse or an item, in {@link FixedPoint} hundredths.
+ */
+public record Valuation(String name,
+                        @JsonFixedPoint long value) {}
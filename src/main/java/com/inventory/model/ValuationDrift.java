@@ -0,0 +1,8 @@
+package com.inventory.model;
+
+/**
+ * A maintained valuation total that differs from the one recomputed from the stocks table.
+ */
+public record ValuationDrift(String name,
+                             long expected,
+                             long recorded) {}
@@ -0,0 +1,431 @@
+package com.inventory.projection;
+
+import com.inventory.event.LedgerAppendedEvent;
+import com.inventory.model.LedgerEntry;
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
+import com.inventory.model.StockProjectionCheckpoint;
+import com.inventory.model.Unit;
+import com.inventory.repository.StockProjectionCheckpointRepository;
+import com.inventory.repository.StockRepository;
+import com.inventory.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory stock levels folded from the transaction ledger.
+ * <p>
+ * Quantities and units live in primitive arrays indexed by a slot per composite key. The projection restores
+ * the latest checkpoint on startup and replays only the ledger entries after it; without any checkpoint it
+ * seeds itself from a consistent snapshot of the stocks table instead of scanning the whole ledger.
+ * <p>
+ * Ledger ids are taken from a sequence before the inserting transaction commits, so entries can become visible
+ * out of id order. Ids skipped while tailing are kept pending and re-read until they show up or
+ * {@code inventory.projection.gap-timeout} passes, after which they are taken as rolled back.
+ * <p>
+ * Committed writes only wake up a single background thread, so neither the writing request nor its connection
+ * waits for the ledger to be read; wake-ups arriving while it catches up are folded into one more pass.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.projection.enabled", havingValue = "true")
+public class StockProjection implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(StockProjection.class);
+    private static final int CHECKPOINT_FORMAT_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Recent ids without a ledger entry at bootstrap; anything older is assumed to have been rolled back
+    private static final int BOOTSTRAP_GAP_WINDOW = 1000;
+    private static final Unit[] UNITS = Unit.values();
+
+    private final TransactionRepository transactionRepository;
+    private final StockRepository stockRepository;
+    private final StockProjectionCheckpointRepository checkpointRepository;
+    private final TransactionTemplate snapshotTransactionTemplate;
+    private final int batchSize;
+    private final Duration gapTimeout;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<StockKey, Integer> slots = new HashMap<>();
+    private StockKey[] keys = new StockKey[INITIAL_CAPACITY];
+    private long[] quantities = new long[INITIAL_CAPACITY];
+    private byte[] units = new byte[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeSlotCount;
+    private int slotCount;
+
+    // Held while reading the ledger; a lock rather than a monitor, so virtual threads waiting on JDBC stay unpinned
+    private final ReentrantLock tailLock = new ReentrantLock();
+    // Guarded by tailLock
+    private long position;
+    private final Map<Long, Long> pendingSince = new LinkedHashMap<>();
+    private volatile boolean ready;
+
+    private final ExecutorService catchUpExecutor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("stock-projection").daemon().factory());
+    // Set while a catch-up is queued but has not started reading yet
+    private final AtomicBoolean catchUpRequested = new AtomicBoolean();
+
+    public StockProjection(TransactionRepository transactionRepository,
+                           StockRepository stockRepository,
+                           StockProjectionCheckpointRepository checkpointRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${inventory.projection.batch-size:1000}") int batchSize,
+                           @Value("${inventory.projection.gap-timeout:1m}") Duration gapTimeout) {
+        this.transactionRepository = transactionRepository;
+        this.stockRepository = stockRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.snapshotTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
+        this.gapTimeout = gapTimeout;
+    }
+
+    /**
+     * Whether the projection has caught up with the ledger once and can answer reads.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Optional<StockEntry> get(String itemName, String warehouseName, long pricePerUnit) {
+        StockKey key = new StockKey(itemName, warehouseName, pricePerUnit);
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new StockEntry(null, itemName, quantities[slot], UNITS[units[slot]], pricePerUnit, warehouseName));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getPosition() {
+        tailLock.lock();
+        try {
+            return position;
+        } finally {
+            tailLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        tailLock.lock();
+        try {
+            Optional<StockProjectionCheckpoint> checkpoint = checkpointRepository.getLatest();
+            if (checkpoint.isPresent()) {
+                restore(checkpoint.get());
+                log.info("Restored stock projection with {} entries at ledger position [{}]", size(), position);
+            } else {
+                bootstrapFromStocks();
+                log.info("Seeded stock projection with {} entries at ledger position [{}]", size(), position);
+            }
+            int replayed = catchUp();
+            ready = true;
+            log.info("Stock projection is ready after replaying {} ledger entries", replayed);
+            if (checkpoint.isEmpty() || replayed > 0) {
+                checkpoint();
+            }
+        } finally {
+            tailLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLedgerAppended(LedgerAppendedEvent event) {
+        if (ready && catchUpRequested.compareAndSet(false, true)) {
+            catchUpExecutor.execute(() -> {
+                // Cleared before reading, so a write committed during the pass queues the next one
+                catchUpRequested.set(false);
+                try {
+                    catchUp();
+                } catch (RuntimeException e) {
+                    log.error("Failed to catch up with the ledger, retrying at the next poll", e);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.projection.poll-interval:1s}")
+    public void poll() {
+        if (ready) {
+            catchUp();
+        }
+    }
+
+    /**
+     * Applies every ledger entry committed since the last call and returns how many there were.
+     */
+    public int catchUp() {
+        tailLock.lock();
+        try {
+            expirePendingIds();
+            int applied = 0;
+            List<LedgerEntry> entries;
+            do {
+                entries = transactionRepository.getLedgerTail(position, List.copyOf(pendingSince.keySet()), batchSize);
+                apply(entries);
+                applied += entries.size();
+            } while (entries.size() == batchSize);
+            return applied;
+        } finally {
+            tailLock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        catchUpExecutor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.projection.checkpoint-interval:5m}",
+            initialDelayString = "${inventory.projection.checkpoint-interval:5m}")
+    public void checkpoint() {
+        if (!ready) {
+            return;
+        }
+        tailLock.lock();
+        try {
+            checkpointRepository.save(new StockProjectionCheckpoint(position, List.copyOf(pendingSince.keySet()), encodeState()));
+        } finally {
+            tailLock.unlock();
+        }
+    }
+
+    private void apply(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            for (LedgerEntry entry : entries) {
+                if (entry.id() > position) {
+                    for (long missingId = position + 1; missingId < entry.id(); missingId++) {
+                        pendingSince.put(missingId, now);
+                    }
+                    position = entry.id();
+                } else {
+                    pendingSince.remove(entry.id());
+                }
+                if (entry.isCorrection()) {
+                    applyCorrection(entry);
+                } else {
+                    add(new StockKey(entry.itemName(), entry.warehouseName(), entry.pricePerUnit()), entry.quantity(), entry.unit());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Mirrors {@code StockRepository.applyCorrection}: the original quantity is taken back from its row, a row
+     * left empty is removed, and the corrected quantity is added to its own row.
+     */
+    private void applyCorrection(LedgerEntry entry) {
+        StockKey originalKey = new StockKey(entry.originalItemName(), entry.originalWarehouseName(), entry.originalPricePerUnit());
+        StockKey correctKey = new StockKey(entry.itemName(), entry.warehouseName(), entry.pricePerUnit());
+        Integer slot = slots.get(originalKey);
+        if (slot == null) {
+            log.warn("Ledger entry [{}] corrects transaction [{}] whose stock is not in the projection",
+                    entry.id(), entry.correctsTransactionId());
+            return;
+        }
+
+        long remaining = Math.subtractExact(quantities[slot], entry.originalQuantity());
+        if (originalKey.equals(correctKey)) {
+            if (remaining == 0) {
+                quantities[slot] = entry.quantity();
+                units[slot] = (byte) entry.unit().ordinal();
+            } else {
+                quantities[slot] = Math.addExact(remaining, entry.quantity());
+            }
+            return;
+        }
+        if (remaining == 0) {
+            release(slot);
+        } else {
+            quantities[slot] = remaining;
+        }
+        add(correctKey, entry.quantity(), entry.unit());
+    }
+
+    private void add(StockKey key, long quantity, Unit unit) {
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            quantities[slot] = Math.addExact(quantities[slot], quantity);
+            return;
+        }
+        int newSlot = allocate();
+        keys[newSlot] = key;
+        quantities[newSlot] = quantity;
+        units[newSlot] = (byte) unit.ordinal();
+        slots.put(key, newSlot);
+    }
+
+    private int allocate() {
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+        if (slotCount == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            units = Arrays.copyOf(units, capacity);
+        }
+        return slotCount++;
+    }
+
+    private void release(int slot) {
+        slots.remove(keys[slot]);
+        keys[slot] = null;
+        if (freeSlotCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    private void clear() {
+        slots.clear();
+        keys = new StockKey[INITIAL_CAPACITY];
+        quantities = new long[INITIAL_CAPACITY];
+        units = new byte[INITIAL_CAPACITY];
+        freeSlotCount = 0;
+        slotCount = 0;
+        pendingSince.clear();
+    }
+
+    private void expirePendingIds() {
+        long deadline = System.nanoTime() - gapTimeout.toNanos();
+        int before = pendingSince.size();
+        pendingSince.values().removeIf(since -> since - deadline < 0);
+        if (pendingSince.size() < before) {
+            log.info("Gave up on {} ledger ids that never committed", before - pendingSince.size());
+        }
+    }
+
+    /**
+     * Loads the stocks table and the ledger position it reflects from one repeatable read snapshot.
+     */
+    private void bootstrapFromStocks() {
+        snapshotTransactionTemplate.executeWithoutResult(status -> {
+            lock.writeLock().lock();
+            try {
+                clear();
+                stockRepository.streamAll(stockEntry -> add(
+                        new StockKey(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit()),
+                        stockEntry.quantity(),
+                        stockEntry.unit()));
+                position = transactionRepository.getLedgerPosition();
+                long now = System.nanoTime();
+                transactionRepository.getMissingIds(Math.max(position - BOOTSTRAP_GAP_WINDOW, 0), position)
+                        .forEach(missingId -> pendingSince.put(missingId, now));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void restore(StockProjectionCheckpoint checkpoint) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            decodeState(checkpoint.state());
+            position = checkpoint.ledgerPosition();
+            long now = System.nanoTime();
+            checkpoint.pendingTransactionIds().forEach(pendingId -> pendingSince.put(pendingId, now));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private byte[] encodeState() {
+        lock.readLock().lock();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + slots.size() * 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(CHECKPOINT_FORMAT_VERSION);
+            out.writeInt(slots.size());
+            for (int slot = 0; slot < slotCount; slot++) {
+                StockKey key = keys[slot];
+                if (key == null) {
+                    continue;
+                }
+                out.writeUTF(key.itemName());
+                out.writeUTF(key.warehouseName());
+                out.writeLong(key.pricePerUnit());
+                out.writeLong(quantities[slot]);
+                out.writeByte(units[slot]);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void decodeState(byte[] state) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            int version = in.readInt();
+            if (version != CHECKPOINT_FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported stock projection checkpoint version: " + version);
+            }
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                String itemName = in.readUTF();
+                String warehouseName = in.readUTF();
+                long pricePerUnit = in.readLong();
+                long quantity = in.readLong();
+                byte unit = in.readByte();
+                add(new StockKey(itemName, warehouseName, pricePerUnit), quantity, UNITS[unit]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
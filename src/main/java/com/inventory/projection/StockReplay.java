@@ -0,0 +1,96 @@
+package com.inventory.projection;
+
+import com.inventory.model.LedgerEntry;
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Stock levels rebuilt by applying ledger entries in id order on top of a starting state, with the rules of
+ * {@link StockProjection}. Entries carry no {@code id}.
+ * <p>
+ * The replay may be limited to a scope of stock keys, e.g. one item in one warehouse. A correction taking stock from
+ * a key outside the scope is then assumed to find it there; the full ledger would only disagree if that stock was
+ * already gone.
+ */
+public final class StockReplay {
+
+    private final Predicate<StockKey> scope;
+    private final Map<StockKey, StockEntry> entries = new HashMap<>();
+
+    public StockReplay() {
+        this(key -> true);
+    }
+
+    public StockReplay(Predicate<StockKey> scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Adds an entry of the starting state, e.g. from a snapshot.
+     */
+    public void put(StockEntry entry) {
+        StockKey key = keyOf(entry);
+        if (scope.test(key)) {
+            entries.put(key, entry);
+        }
+    }
+
+    public void apply(LedgerEntry entry) {
+        StockKey correctKey = new StockKey(entry.itemName(), entry.warehouseName(), entry.pricePerUnit());
+        if (!entry.isCorrection()) {
+            add(correctKey, entry);
+            return;
+        }
+        StockKey originalKey = new StockKey(entry.originalItemName(), entry.originalWarehouseName(), entry.originalPricePerUnit());
+        if (scope.test(originalKey)) {
+            StockEntry original = entries.get(originalKey);
+            if (original == null) {
+                // Nothing to correct, the stock row would not be touched either
+                return;
+            }
+            long remaining = Math.subtractExact(original.quantity(), entry.originalQuantity());
+            if (originalKey.equals(correctKey)) {
+                entries.put(correctKey, remaining == 0
+                        ? withQuantity(correctKey, entry.quantity(), entry)
+                        : new StockEntry(null, original.itemName(), Math.addExact(remaining, entry.quantity()),
+                                original.unit(), original.pricePerUnit(), original.warehouseName()));
+                return;
+            }
+            if (remaining == 0) {
+                entries.remove(originalKey);
+            } else {
+                entries.put(originalKey, new StockEntry(null, original.itemName(), remaining, original.unit(),
+                        original.pricePerUnit(), original.warehouseName()));
+            }
+        }
+        add(correctKey, entry);
+    }
+
+    public Collection<StockEntry> entries() {
+        return entries.values();
+    }
+
+    private void add(StockKey key, LedgerEntry entry) {
+        if (!scope.test(key)) {
+            return;
+        }
+        StockEntry current = entries.get(key);
+        entries.put(key, current == null
+                ? withQuantity(key, entry.quantity(), entry)
+                : new StockEntry(null, current.itemName(), Math.addExact(current.quantity(), entry.quantity()),
+                        current.unit(), current.pricePerUnit(), current.warehouseName()));
+    }
+
+    private static StockEntry withQuantity(StockKey key, long quantity, LedgerEntry entry) {
+        return new StockEntry(null, key.itemName(), quantity, entry.unit(), key.pricePerUnit(), key.warehouseName());
+    }
+
+    private static StockKey keyOf(StockEntry entry) {
+        return new StockKey(entry.itemName(), entry.warehouseName(), entry.pricePerUnit());
+    }
+}
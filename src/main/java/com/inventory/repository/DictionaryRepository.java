@@ -0,0 +1,89 @@
+package com.inventory.repository;
+
+import com.inventory.cache.DictionaryCache;
+import com.inventory.cache.DictionaryCache.Dictionary;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves item and warehouse names to the ids of their rows in the {@code items} and {@code warehouses}
+ * dictionary tables, adding the names that are not there yet. Ids are served from the {@link DictionaryCache}
+ * where possible, so the database is only asked about names it has not resolved before.
+ */
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class DictionaryRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(DictionaryRepository.class);
+    // A name inserted by a concurrent transaction is invisible to the statement that waited for it
+    private static final int MAX_RESOLVE_ATTEMPTS = 3;
+
+    private final JdbcClient jdbcClient;
+    private final DictionaryCache dictionaryCache;
+
+    public DictionaryRepository(JdbcClient jdbcClient, DictionaryCache dictionaryCache) {
+        this.jdbcClient = jdbcClient;
+        this.dictionaryCache = dictionaryCache;
+    }
+
+    public int resolveItemId(String itemName) {
+        return resolveIds(Dictionary.ITEMS, Set.of(itemName)).get(itemName);
+    }
+
+    public int resolveWarehouseId(String warehouseName) {
+        return resolveIds(Dictionary.WAREHOUSES, Set.of(warehouseName)).get(warehouseName);
+    }
+
+    public Map<String, Integer> resolveItemIds(Collection<String> itemNames) {
+        return resolveIds(Dictionary.ITEMS, itemNames);
+    }
+
+    public Map<String, Integer> resolveWarehouseIds(Collection<String> warehouseNames) {
+        return resolveIds(Dictionary.WAREHOUSES, warehouseNames);
+    }
+
+    private Map<String, Integer> resolveIds(Dictionary dictionary, Collection<String> names) {
+        Set<String> distinctNames = new LinkedHashSet<>(names);
+        Map<String, Integer> ids = new HashMap<>(dictionaryCache.getAllPresent(dictionary, distinctNames));
+        distinctNames.removeAll(ids.keySet());
+
+        for (int attempt = 1; !distinctNames.isEmpty(); attempt++) {
+            if (attempt > MAX_RESOLVE_ATTEMPTS) {
+                throw new IllegalStateException("Could not resolve %d names in %s".formatted(distinctNames.size(), dictionary.table()));
+            }
+            log.info("Resolving {} names in {} ...", distinctNames.size(), dictionary.table());
+
+            Map<String, Integer> resolved = new HashMap<>();
+            // Inserted in name order, so concurrent transactions adding the same names wait for each other without deadlocking
+            jdbcClient.sql("""
+                    WITH names AS (
+                        SELECT DISTINCT unnest(CAST(:names AS varchar[])) COLLATE "C" AS name
+                    ), inserted AS (
+                        INSERT INTO %1$s (name)
+                        SELECT name FROM names ORDER BY name
+                        ON CONFLICT (name) DO NOTHING
+                        RETURNING id, name
+                    )
+                    SELECT id, name FROM inserted
+                    UNION ALL
+                    SELECT d.id, d.name FROM %1$s d JOIN names n ON n.name = d.name
+                    """.formatted(dictionary.table()))
+                    .param("names", distinctNames.toArray(String[]::new))
+                    .query((RowCallbackHandler) rs -> resolved.put(rs.getString("name"), rs.getInt("id")));
+            dictionaryCache.putAll(dictionary, resolved);
+            ids.putAll(resolved);
+            distinctNames.removeAll(resolved.keySet());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,115 @@
+package com.inventory.repository;
+
+import com.inventory.model.IdempotencyRecord;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class IdempotencyKeyRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyKeyRepository.class);
+    private final JdbcClient jdbcClient;
+
+    public IdempotencyKeyRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    public Optional<IdempotencyRecord> get(String key) {
+        log.info("Getting idempotency key [{}] ...", key);
+
+        return jdbcClient.sql("""
+                    SELECT idempotency_key, request_hash, status_code, response_body,
+                           status_code IS NULL AND claimed_until <= now() AS abandoned
+                    FROM idempotency_keys
+                    WHERE idempotency_key = :idempotency_key AND expires_at > now()
+                    """)
+                .param("idempotency_key", key)
+                .query((rs, rowNum) -> new IdempotencyRecord(
+                        rs.getString("idempotency_key"),
+                        rs.getBytes("request_hash"),
+                        rs.getObject("status_code", Integer.class),
+                        rs.getString("response_body"),
+                        rs.getBoolean("abandoned")))
+                .optional();
+    }
+
+    /**
+     * Stores a key unless it is already stored and not expired. A null status code marks the key as claimed by
+     * a running request until {@code claimedUntil}; after that the same request may take the claim over. Waits for
+     * a concurrent transaction claiming the same key and returns false if it commits.
+     */
+    public boolean claim(String key, byte[] requestHash, Integer statusCode, Instant expiresAt, Instant claimedUntil) {
+        log.info("Claiming idempotency key [{}] ...", key);
+
+        return jdbcClient.sql("""
+                    INSERT INTO idempotency_keys (idempotency_key, request_hash, status_code, response_body, expires_at, claimed_until)
+                    VALUES (:idempotency_key, :request_hash, :status_code, NULL, :expires_at, :claimed_until)
+                    ON CONFLICT (idempotency_key) DO UPDATE
+                    SET request_hash = EXCLUDED.request_hash,
+                        status_code = EXCLUDED.status_code,
+                        response_body = NULL,
+                        expires_at = EXCLUDED.expires_at,
+                        claimed_until = EXCLUDED.claimed_until
+                    WHERE idempotency_keys.expires_at <= now()
+                       OR (idempotency_keys.status_code IS NULL
+                           AND idempotency_keys.claimed_until <= now()
+                           AND idempotency_keys.request_hash = EXCLUDED.request_hash)
+                    """)
+                .param("idempotency_key", key)
+                .param("request_hash", requestHash)
+                .param("status_code", statusCode, Types.INTEGER)
+                .param("expires_at", Timestamp.from(expiresAt))
+                .param("claimed_until", claimedUntil == null ? null : Timestamp.from(claimedUntil), Types.TIMESTAMP)
+                .update() == 1;
+    }
+
+    public void complete(String key, int statusCode, String responseBody) {
+        log.info("Completing idempotency key [{}] with status [{}] ...", key, statusCode);
+
+        jdbcClient.sql("""
+                    UPDATE idempotency_keys
+                    SET status_code = :status_code, response_body = :response_body, claimed_until = NULL
+                    WHERE idempotency_key = :idempotency_key
+                    """)
+                .param("idempotency_key", key)
+                .param("status_code", statusCode)
+                .param("response_body", responseBody, Types.VARCHAR)
+                .update();
+    }
+
+    /**
+     * Drops a claim whose request failed, so the client can retry with the same key.
+     */
+    public void release(String key) {
+        log.info("Releasing idempotency key [{}] ...", key);
+
+        jdbcClient.sql("DELETE FROM idempotency_keys WHERE idempotency_key = :idempotency_key AND status_code IS NULL")
+                .param("idempotency_key", key)
+                .update();
+    }
+
+    public int deleteExpired() {
+        log.info("Deleting expired idempotency keys ...");
+
+        return jdbcClient.sql("DELETE FROM idempotency_keys WHERE expires_at <= now()")
+                .update();
+    }
+
+    public void streamKeys(Consumer<String> consumer) {
+        log.info("Streaming idempotency keys ...");
+
+        jdbcClient.sql("SELECT idempotency_key FROM idempotency_keys WHERE expires_at > now()")
+                .query((RowCallbackHandler) rs -> consumer.accept(rs.getString("idempotency_key")));
+    }
+}
@@ -0,0 +1,94 @@
+package com.inventory.repository;
+
+import com.inventory.model.JournalDeadLetter;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class JournalDeadLetterRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalDeadLetterRepository.class);
+    private static final RowMapper<JournalDeadLetter> DEAD_LETTER_ROW_MAPPER = (rs, rowNum) -> new JournalDeadLetter(
+            rs.getLong("id"),
+            rs.getString("journal_name"),
+            rs.getLong("position"),
+            rs.getString("transactions"),
+            rs.getString("reason"),
+            rs.getObject("rejected_at", OffsetDateTime.class).toInstant());
+
+    private final JdbcClient jdbcClient;
+
+    public JournalDeadLetterRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    public void create(String journalName, long position, String transactions, String reason) {
+        log.info("Setting journal record at position [{}] of journal [{}] aside ...", position, journalName);
+
+        jdbcClient.sql("""
+                    INSERT INTO journal_dead_letters (journal_name, position, transactions, reason)
+                    VALUES (:journal_name, :position, :transactions, :reason)
+                    """)
+                .param("journal_name", journalName)
+                .param("position", position)
+                .param("transactions", transactions)
+                .param("reason", reason)
+                .update();
+    }
+
+    public List<JournalDeadLetter> getAll() {
+        log.info("Getting journal dead letters ...");
+
+        return jdbcClient.sql("""
+                    SELECT id, journal_name, position, transactions, reason, rejected_at
+                    FROM journal_dead_letters
+                    ORDER BY id
+                    """)
+                .query(DEAD_LETTER_ROW_MAPPER)
+                .list();
+    }
+
+    /**
+     * Locks a dead letter until the end of the surrounding transaction, or returns empty if it is gone or another
+     * transaction is replaying it.
+     */
+    public Optional<JournalDeadLetter> lock(long id) {
+        log.info("Locking journal dead letter [{}] ...", id);
+
+        return jdbcClient.sql("""
+                    SELECT id, journal_name, position, transactions, reason, rejected_at
+                    FROM journal_dead_letters
+                    WHERE id = :id
+                    FOR UPDATE SKIP LOCKED
+                    """)
+                .param("id", id)
+                .query(DEAD_LETTER_ROW_MAPPER)
+                .optional();
+    }
+
+    public void updateReason(long id, String reason) {
+        log.info("Updating reason of journal dead letter [{}] ...", id);
+
+        jdbcClient.sql("UPDATE journal_dead_letters SET reason = :reason WHERE id = :id")
+                .param("id", id)
+                .param("reason", reason)
+                .update();
+    }
+
+    public void delete(long id) {
+        log.info("Deleting journal dead letter [{}] ...", id);
+
+        jdbcClient.sql("DELETE FROM journal_dead_letters WHERE id = :id")
+                .param("id", id)
+                .update();
+    }
+}
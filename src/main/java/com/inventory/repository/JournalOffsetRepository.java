@@ -0,0 +1,60 @@
+package com.inventory.repository;
+
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class JournalOffsetRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalOffsetRepository.class);
+    private final JdbcClient jdbcClient;
+
+    public JournalOffsetRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Returns the applied position of a journal, registering the journal at position 0 if it is new.
+     */
+    public long getPosition(String journalName) {
+        log.info("Getting applied position of journal [{}] ...", journalName);
+
+        jdbcClient.sql("""
+                    INSERT INTO journal_offsets (journal_name, position)
+                    VALUES (:journal_name, 0)
+                    ON CONFLICT (journal_name) DO NOTHING
+                    """)
+                .param("journal_name", journalName)
+                .update();
+        return jdbcClient.sql("SELECT position FROM journal_offsets WHERE journal_name = :journal_name")
+                .param("journal_name", journalName)
+                .query(Long.class)
+                .single();
+    }
+
+    /**
+     * Moves the applied position of a journal forward. Fails, rolling back the surrounding transaction, if the
+     * position is no longer the expected one, so no journal record is ever applied twice.
+     */
+    public void advance(String journalName, long expectedPosition, long newPosition) {
+        log.debug("Advancing journal [{}] from position [{}] to [{}] ...", journalName, expectedPosition, newPosition);
+
+        int updated = jdbcClient.sql("""
+                    UPDATE journal_offsets
+                    SET position = :new_position
+                    WHERE journal_name = :journal_name AND position = :expected_position
+                    """)
+                .param("journal_name", journalName)
+                .param("expected_position", expectedPosition)
+                .param("new_position", newPosition)
+                .update();
+        if (updated == 0) {
+            throw new IllegalStateException(
+                    "Journal [%s] is no longer at position [%d]".formatted(journalName, expectedPosition));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.inventory.repository;
+
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Partitions of the transactions table, which is partitioned by ranges of ids. Bounds are built from longs only, so
+ * they are safe to put into the DDL statements.
+ */
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class LedgerPartitionRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerPartitionRepository.class);
+
+    private final JdbcClient jdbcClient;
+
+    public LedgerPartitionRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Returns whether the transactions table is partitioned, which it is not in a database created before ledger
+     * partitions existed and not migrated yet.
+     */
+    public boolean isPartitioned() {
+        return jdbcClient.sql("SELECT relkind = 'p' FROM pg_class WHERE oid = 'transactions'::regclass")
+                .query(Boolean.class)
+                .single();
+    }
+
+    /**
+     * Returns the last id handed out for the ledger, including ids of entries that were rolled back, or 0.
+     */
+    public long getLastAssignedId() {
+        return jdbcClient.sql("""
+                    SELECT coalesce(pg_sequence_last_value(pg_get_serial_sequence('transactions', 'id')::regclass), 0)
+                    """)
+                .query(Long.class)
+                .single();
+    }
+
+    /**
+     * Sets how long statements wait for locks until the end of the surrounding transaction and returns the
+     * previous setting, so that it can be restored.
+     */
+    public String setLockTimeout(String lockTimeout) {
+        String previous = jdbcClient.sql("SELECT current_setting('lock_timeout')")
+                .query(String.class)
+                .single();
+        jdbcClient.sql("SELECT set_config('lock_timeout', :lock_timeout, true)")
+                .param("lock_timeout", lockTimeout)
+                .query(String.class)
+                .single();
+        return previous;
+    }
+
+    /**
+     * Serializes partition maintenance with other nodes until the end of the surrounding transaction. The lock lets
+     * reads and writes of the ledger go on.
+     */
+    public void lockPartitions() {
+        jdbcClient.sql("LOCK TABLE transactions IN SHARE UPDATE EXCLUSIVE MODE")
+                .update();
+    }
+
+    /**
+     * Returns the end, exclusive, of the partition with the highest ids, or 0 if there are no partitions.
+     */
+    public long getPartitionedUpTo() {
+        return jdbcClient.sql("""
+                    SELECT coalesce(max((regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\((\\d+)\\)'))[1]::bigint), 0)
+                    FROM pg_inherits i
+                    JOIN pg_class c ON c.oid = i.inhrelid
+                    WHERE i.inhparent = 'transactions'::regclass
+                    """)
+                .query(Long.class)
+                .single();
+    }
+
+    /**
+     * Adds the partition for ids in {@code [from, to)}. The table is created first and then attached, which only
+     * takes a lock on the ledger that lets reads and writes go on, unlike creating it as a partition right away.
+     */
+    public void createPartition(long from, long to) {
+        log.info("Creating ledger partition for ids between [{}] and [{}] ...", from, to);
+
+        String partition = "transactions_" + from;
+        jdbcClient.sql("CREATE TABLE %s (LIKE transactions)".formatted(partition))
+                .update();
+        jdbcClient.sql("ALTER TABLE transactions ATTACH PARTITION %s FOR VALUES FROM (%d) TO (%d)".formatted(partition, from, to))
+                .update();
+    }
+}
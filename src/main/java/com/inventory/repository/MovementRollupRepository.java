@@ -0,0 +1,228 @@
+package com.inventory.repository;
+
+import com.inventory.dto.MovementGranularity;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.MovementBucket;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hourly and daily movements per item and warehouse, rolled up from the ledger up to a watermark on
+ * {@code transactions.created_at}.
+ */
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class MovementRollupRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(MovementRollupRepository.class);
+    // item_id of the rollup rows which total a whole warehouse
+    private static final int ALL_ITEMS = 0;
+    // Rollups start from here; no ledger entry is older
+    private static final OffsetDateTime INITIAL_WATERMARK = OffsetDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC);
+    private static final RowMapper<MovementBucket> MOVEMENT_BUCKET_ROW_MAPPER = (rs, rowNum) -> new MovementBucket(
+            rs.getObject("bucket", OffsetDateTime.class).toInstant(),
+            FixedPoint.parse(rs.getString("quantity_in")),
+            FixedPoint.parse(rs.getString("quantity_out")),
+            FixedPoint.parse(rs.getString("value_in")),
+            FixedPoint.parse(rs.getString("value_out")),
+            rs.getLong("transactions"));
+
+    private final JdbcClient jdbcClient;
+
+    public MovementRollupRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    @Transactional(readOnly = true)
+    public List<MovementBucket> getBuckets(MovementGranularity granularity, String warehouseName, String itemName,
+                                           Instant from, Instant to) {
+        log.info("Getting {} movements of [{}, {}] between [{}] and [{}] ...", granularity, warehouseName, itemName, from, to);
+
+        return jdbcClient.sql("""
+                    SELECT r.bucket, r.quantity_in, r.quantity_out, r.value_in, r.value_out, r.transactions
+                    FROM %s r
+                    JOIN warehouses w ON w.id = r.warehouse_id
+                    WHERE w.name = :warehouse_name
+                      AND r.item_id = CASE WHEN CAST(:item_name AS varchar) IS NULL THEN %d
+                                           ELSE (SELECT i.id FROM items i WHERE i.name = :item_name) END
+                      AND r.bucket >= :from AND r.bucket < :to
+                    ORDER BY r.bucket
+                    """.formatted(table(granularity), ALL_ITEMS))
+                .param("warehouse_name", warehouseName)
+                .param("item_name", itemName)
+                .param("from", toTimestamp(from))
+                .param("to", toTimestamp(to))
+                .query(MOVEMENT_BUCKET_ROW_MAPPER)
+                .list();
+    }
+
+    @Transactional(readOnly = true)
+    public Instant getWatermark(String rollupName) {
+        return jdbcClient.sql("SELECT watermark FROM rollup_watermarks WHERE rollup_name = :rollup_name")
+                .param("rollup_name", rollupName)
+                .query(OffsetDateTime.class)
+                .optional()
+                .orElse(INITIAL_WATERMARK)
+                .toInstant();
+    }
+
+    /**
+     * Locks the watermark of a rollup for the surrounding transaction and returns it, registering the rollup at the
+     * initial watermark if it is new. Empty if another transaction holds the lock, i.e. is rolling up already.
+     */
+    public Optional<Instant> lockWatermark(String rollupName) {
+        log.debug("Locking watermark of rollup [{}] ...", rollupName);
+
+        jdbcClient.sql("""
+                    INSERT INTO rollup_watermarks (rollup_name, watermark)
+                    VALUES (:rollup_name, :watermark)
+                    ON CONFLICT (rollup_name) DO NOTHING
+                    """)
+                .param("rollup_name", rollupName)
+                .param("watermark", INITIAL_WATERMARK)
+                .update();
+        return jdbcClient.sql("""
+                    SELECT watermark
+                    FROM rollup_watermarks
+                    WHERE rollup_name = :rollup_name
+                    FOR UPDATE SKIP LOCKED
+                    """)
+                .param("rollup_name", rollupName)
+                .query(OffsetDateTime.class)
+                .optional()
+                .map(OffsetDateTime::toInstant);
+    }
+
+    public void advanceWatermark(String rollupName, Instant watermark) {
+        log.debug("Advancing watermark of rollup [{}] to [{}] ...", rollupName, watermark);
+
+        jdbcClient.sql("UPDATE rollup_watermarks SET watermark = :watermark WHERE rollup_name = :rollup_name")
+                .param("rollup_name", rollupName)
+                .param("watermark", toTimestamp(watermark))
+                .update();
+    }
+
+    /**
+     * Returns where to end a rollup batch of about {@code limit} ledger entries from {@code from}, but at most
+     * {@code to}. Entries created at the same time always end up in the same batch.
+     */
+    public Instant getBatchEnd(Instant from, Instant to, int limit) {
+        Optional<OffsetDateTime> end = jdbcClient.sql("""
+                    SELECT created_at
+                    FROM transactions
+                    WHERE created_at >= :from AND created_at < :to
+                    ORDER BY created_at
+                    OFFSET :limit
+                    LIMIT 1
+                    """)
+                .param("from", toTimestamp(from))
+                .param("to", toTimestamp(to))
+                .param("limit", limit)
+                .query(OffsetDateTime.class)
+                .optional();
+        if (end.isEmpty()) {
+            return to;
+        }
+        if (end.get().toInstant().isAfter(from)) {
+            return end.get().toInstant();
+        }
+        // More than a whole batch was created at the very start of it, take all of them
+        return jdbcClient.sql("""
+                    SELECT coalesce(min(created_at), :to)
+                    FROM transactions
+                    WHERE created_at > :from AND created_at < :to
+                    """)
+                .param("from", toTimestamp(from))
+                .param("to", toTimestamp(to))
+                .query(OffsetDateTime.class)
+                .single()
+                .toInstant();
+    }
+
+    /**
+     * Adds the ledger entries created in {@code [from, to)} to the hourly and daily rollups of their items and
+     * warehouses and returns how many there were. Rollup rows are updated in key order, so concurrent rollups never
+     * deadlock.
+     */
+    public int rollUp(Instant from, Instant to) {
+        log.info("Rolling up ledger entries created between [{}] and [{}] ...", from, to);
+
+        return jdbcClient.sql("""
+                    WITH entries AS (
+                        SELECT id, warehouse_id, item_id, quantity, price_per_unit, corrects_transaction_id, created_at
+                        FROM transactions
+                        WHERE created_at >= :from AND created_at < :to
+                    ), movements AS (
+                        SELECT e.created_at, e.warehouse_id, e.item_id,
+                               e.quantity AS quantity_in, 0 AS quantity_out,
+                               coalesce(e.quantity * e.price_per_unit, 0) AS value_in, 0 AS value_out,
+                               1 AS transactions
+                        FROM entries e
+                        UNION ALL
+                        SELECT e.created_at, o.warehouse_id, o.item_id,
+                               0, o.quantity,
+                               0, coalesce(o.quantity * o.price_per_unit, 0),
+                               0
+                        FROM entries e
+                        JOIN transactions o ON o.id = e.corrects_transaction_id
+                    ), hourly AS (
+                        INSERT INTO movement_rollups_hourly AS r
+                            (warehouse_id, item_id, bucket, quantity_in, quantity_out, value_in, value_out, transactions)
+                        SELECT warehouse_id, coalesce(item_id, %1$d), date_trunc('hour', created_at, 'UTC'),
+                               sum(quantity_in), sum(quantity_out), sum(value_in), sum(value_out), sum(transactions)
+                        FROM movements
+                        GROUP BY GROUPING SETS ((warehouse_id, item_id, date_trunc('hour', created_at, 'UTC')),
+                                                (warehouse_id, date_trunc('hour', created_at, 'UTC')))
+                        ORDER BY 1, 2, 3
+                        ON CONFLICT (warehouse_id, item_id, bucket) DO UPDATE
+                        SET quantity_in = r.quantity_in + EXCLUDED.quantity_in,
+                            quantity_out = r.quantity_out + EXCLUDED.quantity_out,
+                            value_in = r.value_in + EXCLUDED.value_in,
+                            value_out = r.value_out + EXCLUDED.value_out,
+                            transactions = r.transactions + EXCLUDED.transactions
+                    ), daily AS (
+                        INSERT INTO movement_rollups_daily AS r
+                            (warehouse_id, item_id, bucket, quantity_in, quantity_out, value_in, value_out, transactions)
+                        SELECT warehouse_id, coalesce(item_id, %1$d), date_trunc('day', created_at, 'UTC'),
+                               sum(quantity_in), sum(quantity_out), sum(value_in), sum(value_out), sum(transactions)
+                        FROM movements
+                        GROUP BY GROUPING SETS ((warehouse_id, item_id, date_trunc('day', created_at, 'UTC')),
+                                                (warehouse_id, date_trunc('day', created_at, 'UTC')))
+                        ORDER BY 1, 2, 3
+                        ON CONFLICT (warehouse_id, item_id, bucket) DO UPDATE
+                        SET quantity_in = r.quantity_in + EXCLUDED.quantity_in,
+                            quantity_out = r.quantity_out + EXCLUDED.quantity_out,
+                            value_in = r.value_in + EXCLUDED.value_in,
+                            value_out = r.value_out + EXCLUDED.value_out,
+                            transactions = r.transactions + EXCLUDED.transactions
+                    )
+                    SELECT count(*) FROM entries
+                    """.formatted(ALL_ITEMS))
+                .param("from", toTimestamp(from))
+                .param("to", toTimestamp(to))
+                .query(Integer.class)
+                .single();
+    }
+
+    private static String table(MovementGranularity granularity) {
+        return switch (granularity) {
+            case HOUR -> "movement_rollups_hourly";
+            case DAY -> "movement_rollups_daily";
+        };
+    }
+
+    private static OffsetDateTime toTimestamp(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+}
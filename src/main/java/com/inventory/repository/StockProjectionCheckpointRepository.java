@@ -0,0 +1,61 @@
+package com.inventory.repository;
+
+import com.inventory.model.StockProjectionCheckpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+@Repository
+public class StockProjectionCheckpointRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(StockProjectionCheckpointRepository.class);
+    private final JdbcClient jdbcClient;
+
+    public StockProjectionCheckpointRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    public Optional<StockProjectionCheckpoint> getLatest() {
+        log.info("Getting latest stock projection checkpoint ...");
+
+        return jdbcClient.sql("""
+                    SELECT ledger_position, pending_transaction_ids, state
+                    FROM stock_projection_checkpoints
+                    ORDER BY id DESC
+                    LIMIT 1
+                    """)
+                .query((rs, rowNum) -> new StockProjectionCheckpoint(
+                        rs.getLong("ledger_position"),
+                        Arrays.asList((Long[]) rs.getArray("pending_transaction_ids").getArray()),
+                        rs.getBytes("state")))
+                .optional();
+    }
+
+    /**
+     * Stores a checkpoint and drops the older ones, which are never read again.
+     */
+    @Transactional
+    public void save(StockProjectionCheckpoint checkpoint) {
+        log.info("Saving stock projection checkpoint at ledger position [{}] ({} bytes) ...",
+                checkpoint.ledgerPosition(), checkpoint.state().length);
+
+        Long id = jdbcClient.sql("""
+                    INSERT INTO stock_projection_checkpoints (ledger_position, pending_transaction_ids, state)
+                    VALUES (:ledger_position, :pending_transaction_ids, :state)
+                    RETURNING id
+                    """)
+                .param("ledger_position", checkpoint.ledgerPosition())
+                .param("pending_transaction_ids", checkpoint.pendingTransactionIds().toArray(Long[]::new))
+                .param("state", checkpoint.state())
+                .query(Long.class)
+                .single();
+        jdbcClient.sql("DELETE FROM stock_projection_checkpoints WHERE id < :id")
+                .param("id", id)
+                .update();
+    }
+}
@@ -1,77 +1,227 @@
 package com.inventory.repository;
 
+import com.inventory.cache.StockCache;
+import com.inventory.model.FixedPoint;
 import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
+import com.inventory.model.Transaction;
 import com.inventory.model.Unit;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Repository
+@Timed(value = "inventory.repository", histogram = true)
 public class StockRepository {
 
     private static final Logger log = LoggerFactory.getLogger(StockRepository.class);
+    private static final String UPSERT_STOCK_SQL = """
+            INSERT INTO stocks (item_id, quantity, unit, price_per_unit, warehouse_id)
+            VALUES (:item_id, :quantity, :unit, :price_per_unit, :warehouse_id)
+            ON CONFLICT (item_id, warehouse_id, price_per_unit)
+            DO UPDATE SET quantity = stocks.quantity + EXCLUDED.quantity;
+            """;
+    private static final String INSERT_STOCK_SQL = """
+            INSERT INTO stocks (item_id, quantity, unit, price_per_unit, warehouse_id)
+            VALUES (:item_id, :quantity, :unit, :price_per_unit, :warehouse_id)
+            """;
+
+    // Rows per round trip when streaming; PostgreSQL only uses a server-side cursor inside a transaction
+    private static final int STREAM_FETCH_SIZE = 1000;
+    // Quantities and prices are parsed from the column text straight into fixed-point longs
+    public static final RowMapper<StockEntry> STOCK_ENTRY_ROW_MAPPER = (rs, rowNum) -> new StockEntry(
+            rs.getLong("id"),
+            rs.getString("item_name"),
+            FixedPoint.parse(rs.getString("quantity")),
+            Unit.valueOf(rs.getString("unit")),
+            FixedPoint.parse(rs.getString("price_per_unit")),
+            rs.getString("warehouse_name"));
+
     private final JdbcClient jdbcClient;
+    private final JdbcClient streamingJdbcClient;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final StockCache stockCache;
+    private final DictionaryRepository dictionaryRepository;
 
-    public StockRepository(JdbcClient jdbcClient) {
+    public StockRepository(JdbcClient jdbcClient, NamedParameterJdbcTemplate namedParameterJdbcTemplate, StockCache stockCache,
+                           DictionaryRepository dictionaryRepository) {
         this.jdbcClient = jdbcClient;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.stockCache = stockCache;
+        this.dictionaryRepository = dictionaryRepository;
+
+        JdbcTemplate streamingJdbcTemplate = new JdbcTemplate(namedParameterJdbcTemplate.getJdbcTemplate().getDataSource());
+        streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        this.streamingJdbcClient = JdbcClient.create(streamingJdbcTemplate);
     }
 
+    @Transactional(readOnly = true)
     public List<StockEntry> getAll() {
         log.info("Getting all stocks...");
 
-        return jdbcClient.sql("SELECT * FROM stocks")
-                .query(StockEntry.class)
+        return jdbcClient.sql("SELECT * FROM stock_entries")
+                .query(STOCK_ENTRY_ROW_MAPPER)
                 .list();
     }
 
-    public Optional<StockEntry> getByCompositeKey(String itemName, String warehouseName, Double pricePerUnit) {
-        log.info("Getting stock entry for [{}, {}, {}] ...", itemName, warehouseName, pricePerUnit);
+    /**
+     * Hands every stock entry to the consumer while the rows are still being fetched, so memory use does
+     * not depend on the table size. Must run inside a transaction for the fetch size to take effect.
+     */
+    public void streamAll(Consumer<StockEntry> consumer) {
+        log.info("Streaming all stocks...");
+
+        streamingJdbcClient.sql("SELECT * FROM stock_entries")
+                .query((RowCallbackHandler) rs -> consumer.accept(STOCK_ENTRY_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    /**
+     * Reads one page of stocks in (warehouse_name, item_name, price_per_unit) order, starting right after
+     * the given key. Reads the stocks table by its order keys, copies of the names that compare bytewise,
+     * so the page index serves the filters, the order and the limit without a sort.
+     */
+    @Transactional(readOnly = true)
+    public List<StockEntry> getPage(String warehouseName, String itemPrefix, StockKey after, int limit) {
+        log.info("Getting page of {} stocks after [{}] ...", limit, after);
+
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, item_order_key AS item_name, quantity, unit, price_per_unit, warehouse_order_key AS warehouse_name
+                FROM stocks
+                WHERE true""");
+        Map<String, Object> params = new HashMap<>();
+        if (warehouseName != null) {
+            sql.append(" AND warehouse_order_key = :warehouse_name");
+            params.put("warehouse_name", warehouseName);
+        }
+        if (itemPrefix != null && !itemPrefix.isEmpty()) {
+            sql.append(" AND item_order_key LIKE :item_pattern");
+            params.put("item_pattern", itemPrefix.replaceAll("[\\\\%_]", "\\\\$0") + "%");
+        }
+        if (after != null) {
+            sql.append(" AND (warehouse_order_key, item_order_key, price_per_unit)")
+                    .append(" > (:after_warehouse_name, :after_item_name, CAST(:after_price_per_unit AS numeric))");
+            params.put("after_warehouse_name", after.warehouseName());
+            params.put("after_item_name", after.itemName());
+            params.put("after_price_per_unit", FixedPoint.toBigDecimal(after.pricePerUnit()));
+        }
+        sql.append(" ORDER BY warehouse_order_key, item_order_key, price_per_unit LIMIT :limit");
+        params.put("limit", limit);
+
+        return jdbcClient.sql(sql.toString())
+                .params(params)
+                .query(STOCK_ENTRY_ROW_MAPPER)
+                .list();
+    }
+
+    /**
+     * Always read from the primary: an entry loaded from a lagging replica right after a write would be cached
+     * in place of the one the write just evicted.
+     */
+    public Optional<StockEntry> getByCompositeKey(String itemName, String warehouseName, long pricePerUnit) {
+        return stockCache.get(new StockKey(itemName, warehouseName, pricePerUnit), this::loadByCompositeKey);
+    }
+
+    private Optional<StockEntry> loadByCompositeKey(StockKey key) {
+        log.info("Getting stock entry for [{}, {}, {}] ...", key.itemName(), key.warehouseName(), FixedPoint.toString(key.pricePerUnit()));
 
         return jdbcClient.sql("""
-                SELECT * FROM stocks
+                SELECT * FROM stock_entries
                 WHERE item_name=:item_name AND warehouse_name=:warehouse_name AND price_per_unit=:price_per_unit
                 """)
-                 .param("item_name", itemName)
-                 .param("warehouse_name", warehouseName)
-                 .param("price_per_unit", pricePerUnit)
-                .query(StockEntry.class)
+                 .param("item_name", key.itemName())
+                 .param("warehouse_name", key.warehouseName())
+                 .param("price_per_unit", FixedPoint.toBigDecimal(key.pricePerUnit()))
+                .query(STOCK_ENTRY_ROW_MAPPER)
                 .optional();
     }
 
-    public void createStock(String itemName, Double quantity, Unit unit, Double pricePerUnit, String warehouseName) {
+    @Transactional(readOnly = true)
+    public List<StockEntry> getByCompositeKeys(Collection<StockKey> keys) {
+        log.info("Getting stock entries for {} composite keys ...", keys.size());
+
+        return queryByCompositeKeys(keys, "");
+    }
+
+    /**
+     * Like {@link #getByCompositeKeys}, but also locks the rows for the rest of the transaction. Rows are locked
+     * in {@link StockKey#CANONICAL_ORDER}, the same order batch writers use.
+     */
+    public List<StockEntry> lockByCompositeKeys(Collection<StockKey> keys) {
+        log.info("Locking stock entries for {} composite keys ...", keys.size());
+
+        return queryByCompositeKeys(keys, """
+                ORDER BY w.name, i.name, s.price_per_unit
+                FOR UPDATE OF s
+                """);
+    }
+
+    private List<StockEntry> queryByCompositeKeys(Collection<StockKey> keys, String suffix) {
+        return jdbcClient.sql("""
+                SELECT s.id, i.name AS item_name, s.quantity, s.unit, s.price_per_unit, w.name AS warehouse_name
+                FROM stocks s
+                JOIN items i ON i.id = s.item_id
+                JOIN warehouses w ON w.id = s.warehouse_id
+                JOIN unnest(:item_names::varchar[], :warehouse_names::varchar[], :prices::numeric[])
+                    AS k(item_name, warehouse_name, price_per_unit)
+                  ON i.name = k.item_name
+                 AND w.name = k.warehouse_name
+                 AND s.price_per_unit = k.price_per_unit
+                """ + suffix)
+                .param("item_names", keys.stream().map(StockKey::itemName).toArray(String[]::new))
+                .param("warehouse_names", keys.stream().map(StockKey::warehouseName).toArray(String[]::new))
+                .param("prices", keys.stream().map(key -> FixedPoint.toString(key.pricePerUnit())).toArray(String[]::new))
+                .query(STOCK_ENTRY_ROW_MAPPER)
+                .list();
+    }
+
+    public void createStock(String itemName, long quantity, Unit unit, long pricePerUnit, String warehouseName) {
         log.info("Creating stock entry for item: [{}] ...", itemName);
+        stockCache.evict(new StockKey(itemName, warehouseName, pricePerUnit));
 
-        jdbcClient.sql("""
-                INSERT INTO stocks (item_name, quantity, unit, price_per_unit, warehouse_name)
-                VALUES (:item_name, :quantity, :unit, :price_per_unit, :warehouse_name)
-                """)
-                .param("item_name", itemName)
-                .param("quantity", quantity)
+        jdbcClient.sql(INSERT_STOCK_SQL)
+                .param("item_id", dictionaryRepository.resolveItemId(itemName))
+                .param("quantity", FixedPoint.toBigDecimal(quantity))
                 .param("unit", unit.toString())
-                .param("price_per_unit", pricePerUnit)
-                .param("warehouse_name", warehouseName)
+                .param("price_per_unit", FixedPoint.toBigDecimal(pricePerUnit))
+                .param("warehouse_id", dictionaryRepository.resolveWarehouseId(warehouseName))
                 .update();
     }
 
     public void updateStockItemName(Long id, String newItemName) {
         log.info("Updating item name for stock with id [{}] to [{}]...", id, newItemName);
+        stockCache.evictById(id);
 
         jdbcClient.sql("""
                 UPDATE stocks
-                SET item_name=:new_name
+                SET item_id=:new_item_id
                 WHERE id = :id
                 """)
                 .param("id", id)
-                .param("new_name", newItemName)
+                .param("new_item_id", dictionaryRepository.resolveItemId(newItemName))
                 .update();
     }
 
-    public void updateStockQuantity(Long id, Double newQuantity) {
-        log.info("Updating quantity for stock with id [{}] to [{}]...", id, newQuantity);
+    public void updateStockQuantity(Long id, long newQuantity) {
+        log.info("Updating quantity for stock with id [{}] to [{}]...", id, FixedPoint.toString(newQuantity));
+        stockCache.evictById(id);
 
         jdbcClient.sql("""
                 UPDATE stocks
@@ -79,12 +229,13 @@ public class StockRepository {
                 WHERE id = :id
                 """)
                 .param("id", id)
-                .param("quantity", newQuantity)
+                .param("quantity", FixedPoint.toBigDecimal(newQuantity))
                 .update();
     }
 
     public void updateStockUnit(Long id, Unit newUnit) {
         log.info("Updating unit for stock with id [{}] to [{}]...", id, newUnit);
+        stockCache.evictById(id);
 
         jdbcClient.sql("""
                 UPDATE stocks
@@ -96,8 +247,9 @@ public class StockRepository {
                 .update();
     }
 
-    public void updateStockPricePerUnit(Long id, Double newPrice) {
-        log.info("Updating price per unit for stock with id [{}] to [{}]...", id, newPrice);
+    public void updateStockPricePerUnit(Long id, long newPrice) {
+        log.info("Updating price per unit for stock with id [{}] to [{}]...", id, FixedPoint.toString(newPrice));
+        stockCache.evictById(id);
 
         jdbcClient.sql("""
                 UPDATE stocks
@@ -105,52 +257,191 @@ public class StockRepository {
                 WHERE id = :id
                 """)
                 .param("id", id)
-                .param("new_price", newPrice)
+                .param("new_price", FixedPoint.toBigDecimal(newPrice))
                 .update();
     }
 
     public void updateStockWarehouseName(Long id, String newWarehouse) {
         log.info("Updating warehouse name for stock with id [{}] to [{}]...", id, newWarehouse);
+        stockCache.evictById(id);
 
         jdbcClient.sql("""
                 UPDATE stocks
-                SET warehouse_name=:new_warehouse
+                SET warehouse_id=:new_warehouse_id
                 WHERE id = :id
                 """)
                 .param("id", id)
-                .param("new_warehouse", newWarehouse)
+                .param("new_warehouse_id", dictionaryRepository.resolveWarehouseId(newWarehouse))
                 .update();
     }
 
     public void deleteStock(StockEntry stockEntry) {
         log.info("Deleting stock [{}]...", stockEntry.itemName());
+        stockCache.evict(new StockKey(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit()));
 
         jdbcClient.sql("""
-                    DELETE FROM stocks
-                    WHERE item_name = :item AND price_per_unit = :price AND warehouse_name = :warehouse
+                    DELETE FROM stocks s
+                    USING items i, warehouses w
+                    WHERE s.item_id = i.id AND s.warehouse_id = w.id
+                      AND i.name = :item AND s.price_per_unit = :price AND w.name = :warehouse
                 """)
                 .param("item", stockEntry.itemName())
-                .param("price", stockEntry.pricePerUnit())
+                .param("price", FixedPoint.toBigDecimal(stockEntry.pricePerUnit()))
                 .param("warehouse", stockEntry.warehouseName())
                 .update();
     }
 
-    public void upsertStock(String itemName, Double quantity, Unit unit, Double pricePerUnit, String warehouseName) {
+    public void upsertStock(String itemName, long quantity, Unit unit, long pricePerUnit, String warehouseName) {
         log.info("Upserting stock [{}]...", itemName);
+        stockCache.evict(new StockKey(itemName, warehouseName, pricePerUnit));
 
-        jdbcClient.sql("""
-                INSERT INTO stocks (item_name, quantity, unit, price_per_unit, warehouse_name)
-                VALUES (:item_name, :quantity, :unit, :price_per_unit, :warehouse_name)
-                ON CONFLICT (item_name, warehouse_name, price_per_unit)
-                DO UPDATE SET quantity = stocks.quantity + EXCLUDED.quantity;
-                """)
-                .param("item_name", itemName)
-                .param("quantity", quantity)
+        jdbcClient.sql(UPSERT_STOCK_SQL)
+                .param("item_id", dictionaryRepository.resolveItemId(itemName))
+                .param("quantity", FixedPoint.toBigDecimal(quantity))
                 .param("unit", unit.toString())
-                .param("price_per_unit", pricePerUnit)
-                .param("warehouse_name", warehouseName)
+                .param("price_per_unit", FixedPoint.toBigDecimal(pricePerUnit))
+                .param("warehouse_id", dictionaryRepository.resolveWarehouseId(warehouseName))
+                .update();
+    }
+
+    /**
+     * Upserts the entries in {@link StockKey#CANONICAL_ORDER}, so that overlapping batches lock shared rows
+     * in the same order instead of deadlocking.
+     */
+    public void upsertStocks(List<StockEntry> stockEntries) {
+        log.info("Upserting {} stock entries...", stockEntries.size());
+        stockCache.evictAll(toStockKeys(stockEntries));
+
+        namedParameterJdbcTemplate.batchUpdate(UPSERT_STOCK_SQL, toParameterSources(inCanonicalOrder(stockEntries)));
+    }
+
+    /**
+     * Moves the quantity of an original transaction from its stock row to the corrected composite key
+     * in a single statement. A row left empty is rewritten to the corrected key, or removed when that key
+     * already has a row of its own; otherwise the corrected quantity is upserted into the target row.
+     *
+     * @return {@code false} if there is no stock row for the original composite key
+     */
+    public boolean applyCorrection(Transaction originalTransaction, Transaction correctTransaction) {
+        log.info("Applying correction of stock [{}] to [{}]...", originalTransaction.itemName(), correctTransaction.itemName());
+        stockCache.evict(new StockKey(originalTransaction.itemName(), originalTransaction.warehouseName(), originalTransaction.pricePerUnit()));
+        stockCache.evict(new StockKey(correctTransaction.itemName(), correctTransaction.warehouseName(), correctTransaction.pricePerUnit()));
+
+        boolean sameKey = Objects.equals(originalTransaction.itemName(), correctTransaction.itemName())
+                && Objects.equals(originalTransaction.warehouseName(), correctTransaction.warehouseName())
+                && originalTransaction.pricePerUnit() == correctTransaction.pricePerUnit();
+        return jdbcClient.sql("""
+                WITH original AS (
+                    SELECT id, quantity - CAST(:original_quantity AS numeric) AS remaining
+                    FROM stocks
+                    WHERE item_id = :original_item_id
+                      AND warehouse_id = :original_warehouse_id
+                      AND price_per_unit = :original_price_per_unit
+                    FOR UPDATE
+                ), target AS (
+                    SELECT id
+                    FROM stocks
+                    WHERE item_id = :item_id AND warehouse_id = :warehouse_id AND price_per_unit = :price_per_unit
+                      AND id NOT IN (SELECT id FROM original)
+                    FOR UPDATE
+                ), moved AS (
+                    UPDATE stocks s
+                    SET item_id = :item_id, quantity = :quantity, unit = :unit,
+                        price_per_unit = :price_per_unit, warehouse_id = :warehouse_id
+                    FROM original o
+                    WHERE s.id = o.id AND o.remaining = 0 AND NOT EXISTS (SELECT 1 FROM target)
+                    RETURNING s.id
+                ), reduced AS (
+                    UPDATE stocks s
+                    SET quantity = o.remaining + CASE WHEN :same_key THEN CAST(:quantity AS numeric) ELSE 0 END
+                    FROM original o
+                    WHERE s.id = o.id AND o.remaining <> 0
+                    RETURNING s.id
+                ), emptied AS (
+                    DELETE FROM stocks s
+                    USING original o
+                    WHERE s.id = o.id AND o.remaining = 0 AND EXISTS (SELECT 1 FROM target)
+                    RETURNING s.id
+                ), upserted AS (
+                    INSERT INTO stocks (item_id, quantity, unit, price_per_unit, warehouse_id)
+                    SELECT :item_id, :quantity, :unit, :price_per_unit, :warehouse_id
+                    FROM original
+                    WHERE NOT :same_key AND NOT EXISTS (SELECT 1 FROM moved)
+                    ON CONFLICT (item_id, warehouse_id, price_per_unit)
+                    DO UPDATE SET quantity = stocks.quantity + EXCLUDED.quantity
+                    RETURNING id
+                )
+                SELECT EXISTS (SELECT 1 FROM original)
+                """)
+                .param("original_item_id", dictionaryRepository.resolveItemId(originalTransaction.itemName()))
+                .param("original_quantity", FixedPoint.toBigDecimal(originalTransaction.quantity()))
+                .param("original_price_per_unit", FixedPoint.toBigDecimal(originalTransaction.pricePerUnit()))
+                .param("original_warehouse_id", dictionaryRepository.resolveWarehouseId(originalTransaction.warehouseName()))
+                .param("item_id", dictionaryRepository.resolveItemId(correctTransaction.itemName()))
+                .param("quantity", FixedPoint.toBigDecimal(correctTransaction.quantity()))
+                .param("unit", correctTransaction.unit().toString())
+                .param("price_per_unit", FixedPoint.toBigDecimal(correctTransaction.pricePerUnit()))
+                .param("warehouse_id", dictionaryRepository.resolveWarehouseId(correctTransaction.warehouseName()))
+                .param("same_key", sameKey)
+                .query(Boolean.class)
+                .single();
+    }
+
+    public void createStocks(List<StockEntry> stockEntries) {
+        log.info("Creating {} stock entries...", stockEntries.size());
+        stockCache.evictAll(toStockKeys(stockEntries));
+
+        namedParameterJdbcTemplate.batchUpdate(INSERT_STOCK_SQL, toParameterSources(inCanonicalOrder(stockEntries)));
+    }
+
+    public void updateStocks(List<StockEntry> stockEntries) {
+        log.info("Updating {} stock entries...", stockEntries.size());
+        stockCache.evictByIds(stockEntries.stream().map(StockEntry::id).toList());
+        stockCache.evictAll(toStockKeys(stockEntries));
+
+        namedParameterJdbcTemplate.batchUpdate("""
+                UPDATE stocks
+                SET item_id=:item_id, quantity=:quantity, unit=:unit,
+                    price_per_unit=:price_per_unit, warehouse_id=:warehouse_id
+                WHERE id = :id
+                """, toParameterSources(stockEntries));
+    }
+
+    public void deleteStocks(Collection<Long> ids) {
+        log.info("Deleting {} stock entries...", ids.size());
+        stockCache.evictByIds(ids);
+
+        jdbcClient.sql("DELETE FROM stocks WHERE id = ANY(:ids)")
+                .param("ids", ids.toArray(Long[]::new))
                 .update();
     }
 
+    private static List<StockEntry> inCanonicalOrder(List<StockEntry> stockEntries) {
+        return stockEntries.stream()
+                .sorted(Comparator.comparing(
+                        stockEntry -> new StockKey(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit()),
+                        StockKey.CANONICAL_ORDER))
+                .toList();
+    }
+
+    private static List<StockKey> toStockKeys(List<StockEntry> stockEntries) {
+        return stockEntries.stream()
+                .map(stockEntry -> new StockKey(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit()))
+                .toList();
+    }
+
+    private SqlParameterSource[] toParameterSources(List<StockEntry> stockEntries) {
+        Map<String, Integer> itemIds = dictionaryRepository.resolveItemIds(stockEntries.stream().map(StockEntry::itemName).toList());
+        Map<String, Integer> warehouseIds = dictionaryRepository.resolveWarehouseIds(stockEntries.stream().map(StockEntry::warehouseName).toList());
+        return stockEntries.stream()
+                .map(stockEntry -> new MapSqlParameterSource()
+                        .addValue("id", stockEntry.id())
+                        .addValue("item_id", itemIds.get(stockEntry.itemName()))
+                        .addValue("quantity", FixedPoint.toBigDecimal(stockEntry.quantity()))
+                        .addValue("unit", stockEntry.unit().toString())
+                        .addValue("price_per_unit", FixedPoint.toBigDecimal(stockEntry.pricePerUnit()))
+                        .addValue("warehouse_id", warehouseIds.get(stockEntry.warehouseName())))
+                .toArray(SqlParameterSource[]::new);
+    }
 
 }
@@ -0,0 +1,163 @@
+package com.inventory.repository;
+
+import com.inventory.model.FixedPoint;
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockSnapshot;
+import com.inventory.model.Unit;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class StockSnapshotRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(StockSnapshotRepository.class);
+    // Entries per INSERT, which binds one array per column
+    private static final int INSERT_CHUNK_SIZE = 10000;
+    private static final RowMapper<StockSnapshot> STOCK_SNAPSHOT_ROW_MAPPER = (rs, rowNum) -> new StockSnapshot(
+            rs.getLong("id"),
+            rs.getLong("ledger_position"));
+    // Snapshot entries have no stock row, so no id
+    private static final RowMapper<StockEntry> SNAPSHOT_ENTRY_ROW_MAPPER = (rs, rowNum) -> new StockEntry(
+            null,
+            rs.getString("item_name"),
+            FixedPoint.parse(rs.getString("quantity")),
+            Unit.valueOf(rs.getString("unit")),
+            FixedPoint.parse(rs.getString("price_per_unit")),
+            rs.getString("warehouse_name"));
+    private static final String SNAPSHOT_ENTRY_SELECT = """
+            SELECT i.name AS item_name, e.quantity, e.unit, e.price_per_unit, w.name AS warehouse_name
+            FROM stock_snapshot_entries e
+            JOIN items i ON i.id = e.item_id
+            JOIN warehouses w ON w.id = e.warehouse_id
+            """;
+
+    private final JdbcClient jdbcClient;
+
+    public StockSnapshotRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    public Optional<StockSnapshot> getLatest() {
+        log.info("Getting latest stock snapshot ...");
+
+        return jdbcClient.sql("""
+                    SELECT id, ledger_position
+                    FROM stock_snapshots
+                    ORDER BY ledger_position DESC
+                    LIMIT 1
+                    """)
+                .query(STOCK_SNAPSHOT_ROW_MAPPER)
+                .optional();
+    }
+
+    /**
+     * Returns the snapshot nearest to the given ledger position, not after it.
+     */
+    @Transactional(readOnly = true)
+    public Optional<StockSnapshot> getLatestAtOrBefore(long ledgerPosition) {
+        log.info("Getting stock snapshot at or before ledger position [{}] ...", ledgerPosition);
+
+        return jdbcClient.sql("""
+                    SELECT id, ledger_position
+                    FROM stock_snapshots
+                    WHERE ledger_position <= :ledger_position
+                    ORDER BY ledger_position DESC
+                    LIMIT 1
+                    """)
+                .param("ledger_position", ledgerPosition)
+                .query(STOCK_SNAPSHOT_ROW_MAPPER)
+                .optional();
+    }
+
+    public void streamEntries(long snapshotId, Consumer<StockEntry> consumer) {
+        log.info("Streaming entries of stock snapshot [{}] ...", snapshotId);
+
+        jdbcClient.sql(SNAPSHOT_ENTRY_SELECT + "WHERE e.snapshot_id = :snapshot_id")
+                .param("snapshot_id", snapshotId)
+                .query((RowCallbackHandler) rs -> consumer.accept(SNAPSHOT_ENTRY_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    @Transactional(readOnly = true)
+    public List<StockEntry> getEntries(long snapshotId, String itemName, String warehouseName) {
+        log.info("Getting entries of stock snapshot [{}] for [{}, {}] ...", snapshotId, itemName, warehouseName);
+
+        return jdbcClient.sql(SNAPSHOT_ENTRY_SELECT + """
+                    WHERE e.snapshot_id = :snapshot_id AND i.name = :item_name AND w.name = :warehouse_name
+                    ORDER BY e.price_per_unit
+                    """)
+                .param("snapshot_id", snapshotId)
+                .param("item_name", itemName)
+                .param("warehouse_name", warehouseName)
+                .query(SNAPSHOT_ENTRY_ROW_MAPPER)
+                .list();
+    }
+
+    /**
+     * Stores a snapshot with its entries and returns it, or returns empty if there is one at that ledger position
+     * already.
+     */
+    public Optional<StockSnapshot> create(long ledgerPosition, Collection<StockEntry> entries) {
+        log.info("Creating stock snapshot at ledger position [{}] with {} entries ...", ledgerPosition, entries.size());
+
+        Optional<StockSnapshot> snapshot = jdbcClient.sql("""
+                    INSERT INTO stock_snapshots (ledger_position)
+                    VALUES (:ledger_position)
+                    ON CONFLICT (ledger_position) DO NOTHING
+                    RETURNING id, ledger_position
+                    """)
+                .param("ledger_position", ledgerPosition)
+                .query(STOCK_SNAPSHOT_ROW_MAPPER)
+                .optional();
+        if (snapshot.isEmpty()) {
+            return snapshot;
+        }
+        List<StockEntry> list = List.copyOf(entries);
+        for (int from = 0; from < list.size(); from += INSERT_CHUNK_SIZE) {
+            List<StockEntry> chunk = list.subList(from, Math.min(from + INSERT_CHUNK_SIZE, list.size()));
+            jdbcClient.sql("""
+                        INSERT INTO stock_snapshot_entries (snapshot_id, warehouse_id, item_id, price_per_unit, quantity, unit)
+                        SELECT :snapshot_id, w.id, i.id, k.price_per_unit, k.quantity, k.unit
+                        FROM unnest(:item_names::varchar[], :warehouse_names::varchar[], :prices::numeric[],
+                                    :quantities::numeric[], :units::varchar[])
+                            AS k(item_name, warehouse_name, price_per_unit, quantity, unit)
+                        JOIN items i ON i.name = k.item_name
+                        JOIN warehouses w ON w.name = k.warehouse_name
+                        """)
+                    .param("snapshot_id", snapshot.get().id())
+                    .param("item_names", chunk.stream().map(StockEntry::itemName).toArray(String[]::new))
+                    .param("warehouse_names", chunk.stream().map(StockEntry::warehouseName).toArray(String[]::new))
+                    .param("prices", chunk.stream().map(entry -> FixedPoint.toString(entry.pricePerUnit())).toArray(String[]::new))
+                    .param("quantities", chunk.stream().map(entry -> FixedPoint.toString(entry.quantity())).toArray(String[]::new))
+                    .param("units", chunk.stream().map(entry -> entry.unit().toString()).toArray(String[]::new))
+                    .update();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Deletes all but the {@code keep} snapshots at the highest ledger positions, with their entries, and returns how
+     * many were deleted.
+     */
+    public int deleteAllButLatest(int keep) {
+        log.info("Deleting all but the latest {} stock snapshots ...", keep);
+
+        return jdbcClient.sql("""
+                    DELETE FROM stock_snapshots
+                    WHERE id IN (SELECT id FROM stock_snapshots ORDER BY ledger_position DESC OFFSET :keep)
+                    """)
+                .param("keep", keep)
+                .update();
+    }
+}
@@ -0,0 +1,170 @@
+package com.inventory.repository;
+
+import com.inventory.cache.StockCache;
+import com.inventory.model.Unit;
+import io.micrometer.core.annotation.Timed;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bulk loads CSV transaction files through a temporary staging table filled with COPY FROM STDIN.
+ * All methods must run in the same transaction, the staging table is dropped on commit.
+ */
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class TransactionImportRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionImportRepository.class);
+    private static final String NUMBER_PATTERN = "^[+-]?([0-9]+(\\.[0-9]*)?|\\.[0-9]+)([eE][+-]?[0-9]+)?$";
+
+    private final JdbcClient jdbcClient;
+    private final DataSource dataSource;
+    private final StockCache stockCache;
+
+    public TransactionImportRepository(JdbcClient jdbcClient, DataSource dataSource, StockCache stockCache) {
+        this.jdbcClient = jdbcClient;
+        this.dataSource = dataSource;
+        this.stockCache = stockCache;
+    }
+
+    public long copyIntoStaging(Reader csv) throws IOException {
+        log.info("Copying CSV into staging table...");
+
+        jdbcClient.sql("""
+                CREATE TEMPORARY TABLE transactions_import (
+                    line_no bigint GENERATED ALWAYS AS IDENTITY,
+                    item_name text,
+                    quantity text,
+                    unit text,
+                    price_per_unit text,
+                    warehouse_name text
+                ) ON COMMIT DROP
+                """)
+                .update();
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyIn("""
+                    COPY transactions_import (item_name, quantity, unit, price_per_unit, warehouse_name)
+                    FROM STDIN WITH (FORMAT csv, HEADER true)
+                    """, csv);
+        } catch (SQLException e) {
+            throw new IOException("COPY into staging table failed: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    /**
+     * Checks the staged rows against the same rules as {@code TransactionPostRequest}: quantities and prices
+     * must be positive and have at most the decimals of the {@link com.inventory.model.FixedPoint} scale.
+     * Line numbers refer to the CSV file, including its header line.
+     */
+    public List<String> findInvalidRows(int limit) {
+        log.info("Validating staged transactions...");
+
+        return jdbcClient.sql("""
+                SELECT format('line %s: %s', line_no + 1, concat_ws(', ',
+                    CASE WHEN item_name IS NULL OR item_name = '' THEN 'itemName must not be empty' END,
+                    CASE WHEN quantity IS NULL OR trim(quantity) !~ :number_pattern THEN 'quantity must be a number'
+                         WHEN CAST(trim(quantity) AS numeric) <= 0 THEN 'quantity must be greater than 0'
+                         WHEN CAST(trim(quantity) AS numeric) <> round(CAST(trim(quantity) AS numeric), 2)
+                             THEN 'quantity must have at most 2 decimals' END,
+                    CASE WHEN unit IS NULL OR NOT unit = ANY(:units) THEN 'unit must be one of ' || array_to_string(:units, ', ') END,
+                    CASE WHEN price_per_unit IS NULL OR trim(price_per_unit) !~ :number_pattern THEN 'pricePerUnit must be a number'
+                         WHEN CAST(trim(price_per_unit) AS numeric) <= 0 THEN 'pricePerUnit must be greater than 0'
+                         WHEN CAST(trim(price_per_unit) AS numeric) <> round(CAST(trim(price_per_unit) AS numeric), 2)
+                             THEN 'pricePerUnit must have at most 2 decimals' END,
+                    CASE WHEN warehouse_name IS NULL OR warehouse_name = '' THEN 'warehouseName must not be empty' END))
+                FROM transactions_import
+                WHERE item_name IS NULL OR item_name = ''
+                   OR quantity IS NULL OR trim(quantity) !~ :number_pattern
+                   OR CASE WHEN trim(quantity) ~ :number_pattern
+                           THEN CAST(trim(quantity) AS numeric) <= 0
+                             OR CAST(trim(quantity) AS numeric) <> round(CAST(trim(quantity) AS numeric), 2) END
+                   OR unit IS NULL OR NOT unit = ANY(:units)
+                   OR price_per_unit IS NULL OR trim(price_per_unit) !~ :number_pattern
+                   OR CASE WHEN trim(price_per_unit) ~ :number_pattern
+                           THEN CAST(trim(price_per_unit) AS numeric) <= 0
+                             OR CAST(trim(price_per_unit) AS numeric) <> round(CAST(trim(price_per_unit) AS numeric), 2) END
+                   OR warehouse_name IS NULL OR warehouse_name = ''
+                ORDER BY line_no
+                LIMIT :limit
+                """)
+                .param("number_pattern", NUMBER_PATTERN)
+                .param("units", Arrays.stream(Unit.values()).map(Unit::name).toArray(String[]::new))
+                .param("limit", limit)
+                .query(String.class)
+                .list();
+    }
+
+    /**
+     * Adds the staged item and warehouse names missing from the dictionaries, in name order like
+     * {@link DictionaryRepository}, so both wait for each other instead of deadlocking.
+     */
+    public void addStagedNamesToDictionaries() {
+        log.info("Adding staged names to dictionaries...");
+
+        jdbcClient.sql("""
+                INSERT INTO items (name)
+                SELECT DISTINCT item_name FROM transactions_import ORDER BY 1
+                ON CONFLICT (name) DO NOTHING
+                """)
+                .update();
+        jdbcClient.sql("""
+                INSERT INTO warehouses (name)
+                SELECT DISTINCT warehouse_name FROM transactions_import ORDER BY 1
+                ON CONFLICT (name) DO NOTHING
+                """)
+                .update();
+    }
+
+    public int moveStagingIntoTransactions() {
+        log.info("Moving staged rows into transactions...");
+
+        return jdbcClient.sql("""
+                INSERT INTO transactions (item_id, quantity, unit, price_per_unit, warehouse_id)
+                SELECT i.id, CAST(trim(ti.quantity) AS numeric), ti.unit, CAST(trim(ti.price_per_unit) AS numeric(10,2)), w.id
+                FROM transactions_import ti
+                JOIN items i ON i.name = ti.item_name
+                JOIN warehouses w ON w.name = ti.warehouse_name
+                ORDER BY ti.line_no
+                """)
+                .update();
+    }
+
+    public int foldStagingIntoStocks() {
+        log.info("Folding staged rows into stocks...");
+        stockCache.clear();
+
+        return jdbcClient.sql("""
+                INSERT INTO stocks (item_id, quantity, unit, price_per_unit, warehouse_id)
+                SELECT i.id,
+                       sum(CAST(trim(ti.quantity) AS numeric)),
+                       (array_agg(ti.unit ORDER BY ti.line_no))[1],
+                       CAST(trim(ti.price_per_unit) AS numeric(10,2)),
+                       w.id
+                FROM transactions_import ti
+                JOIN items i ON i.name = ti.item_name
+                JOIN warehouses w ON w.name = ti.warehouse_name
+                GROUP BY i.id, i.name, w.id, w.name, CAST(trim(ti.price_per_unit) AS numeric(10,2))
+                -- The canonical key order of StockKey, so imports and batches lock shared rows in the same order
+                ORDER BY w.name, i.name, CAST(trim(ti.price_per_unit) AS numeric(10,2))
+                ON CONFLICT (item_id, warehouse_id, price_per_unit)
+                DO UPDATE SET quantity = stocks.quantity + EXCLUDED.quantity
+                """)
+                .update();
+    }
+}
@@ -1,52 +1,312 @@
 package com.inventory.repository;
 
+import com.inventory.model.FixedPoint;
+import com.inventory.model.LedgerHead;
+import com.inventory.model.LedgerEntry;
 import com.inventory.model.Transaction;
 import com.inventory.model.Unit;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
+@Timed(value = "inventory.repository", histogram = true)
 public class TransactionRepository {
 
     private static final Logger log = LoggerFactory.getLogger(TransactionRepository.class);
+    // Keeps every multi-row INSERT well below the 65535 bind parameter limit of the PostgreSQL protocol
+    private static final int INSERT_CHUNK_SIZE = 1000;
+    private static final String LEDGER_ENTRY_SELECT = """
+            SELECT t.id, t.item_name, t.quantity, t.unit, t.price_per_unit, t.warehouse_name, t.corrects_transaction_id,
+                   o.item_name AS original_item_name, o.quantity AS original_quantity,
+                   o.price_per_unit AS original_price_per_unit, o.warehouse_name AS original_warehouse_name
+            FROM transaction_entries t
+            LEFT JOIN transaction_entries o ON o.id = t.corrects_transaction_id
+            """;
+    // Quantities and prices are parsed from the column text straight into fixed-point longs
+    public static final RowMapper<Transaction> TRANSACTION_ROW_MAPPER = (rs, rowNum) -> new Transaction(
+            rs.getLong("id"),
+            rs.getString("item_name"),
+            FixedPoint.parse(rs.getString("quantity")),
+            Unit.valueOf(rs.getString("unit")),
+            FixedPoint.parse(rs.getString("price_per_unit")),
+            rs.getString("warehouse_name"));
+    private static final RowMapper<LedgerEntry> LEDGER_ENTRY_ROW_MAPPER = (rs, rowNum) -> {
+        long correctsTransactionId = rs.getLong("corrects_transaction_id");
+        boolean correction = !rs.wasNull();
+        String originalQuantity = rs.getString("original_quantity");
+        String originalPricePerUnit = rs.getString("original_price_per_unit");
+        return new LedgerEntry(
+                rs.getLong("id"),
+                rs.getString("item_name"),
+                FixedPoint.parse(rs.getString("quantity")),
+                Unit.valueOf(rs.getString("unit")),
+                FixedPoint.parse(rs.getString("price_per_unit")),
+                rs.getString("warehouse_name"),
+                correction ? correctsTransactionId : null,
+                rs.getString("original_item_name"),
+                originalQuantity == null ? 0 : FixedPoint.parse(originalQuantity),
+                originalPricePerUnit == null ? 0 : FixedPoint.parse(originalPricePerUnit),
+                rs.getString("original_warehouse_name"));
+    };
+
     private final JdbcClient jdbcClient;
+    private final DictionaryRepository dictionaryRepository;
+    // Warns once when transaction starts become hidden instead of at every poll
+    private volatile boolean hiddenSessionsReported;
 
-    public TransactionRepository(JdbcClient jdbcClient) {
+    public TransactionRepository(JdbcClient jdbcClient, DictionaryRepository dictionaryRepository) {
         this.jdbcClient = jdbcClient;
+        this.dictionaryRepository = dictionaryRepository;
     }
 
+    @Transactional(readOnly = true)
     public Optional<Transaction> getById(Long id) {
         log.info("Getting transaction with id: [{}] ...", id);
 
         return jdbcClient.sql("""
                     SELECT *
-                    FROM transactions
+                    FROM transaction_entries
                     WHERE id = :id
                     """)
                 .param("id", id)
-                .query(Transaction.class)
+                .query(TRANSACTION_ROW_MAPPER)
                 .optional();
     }
 
-    public void createTransaction(String itemName, Double quantity, Unit unit, Double pricePerUnit, String warehouseName) {
+    @Transactional(readOnly = true)
+    public List<Transaction> getByIds(Collection<Long> ids) {
+        log.info("Getting {} transactions by id ...", ids.size());
+
+        return jdbcClient.sql("""
+                    SELECT *
+                    FROM transaction_entries
+                    WHERE id = ANY(:ids)
+                    """)
+                .param("ids", ids.toArray(Long[]::new))
+                .query(TRANSACTION_ROW_MAPPER)
+                .list();
+    }
+
+    public void createTransaction(String itemName, long quantity, Unit unit, long pricePerUnit, String warehouseName) {
         log.info("Creating transaction for item: [{}, {}, {}, {}, {}] ...",
-                itemName, quantity, unit.toString(), pricePerUnit, warehouseName);
+                itemName, FixedPoint.toString(quantity), unit.toString(), FixedPoint.toString(pricePerUnit), warehouseName);
 
+        insertTransaction(null, itemName, quantity, unit, pricePerUnit, warehouseName);
+    }
+
+    public void createCorrectionTransaction(Long originalTransactionId, String itemName, long quantity, Unit unit,
+                                            long pricePerUnit, String warehouseName) {
+        log.info("Creating correction of transaction [{}] for item: [{}, {}, {}, {}, {}] ...",
+                originalTransactionId, itemName, FixedPoint.toString(quantity), unit.toString(), FixedPoint.toString(pricePerUnit), warehouseName);
+
+        insertTransaction(originalTransactionId, itemName, quantity, unit, pricePerUnit, warehouseName);
+    }
+
+    private void insertTransaction(Long originalTransactionId, String itemName, long quantity, Unit unit,
+                                   long pricePerUnit, String warehouseName) {
         jdbcClient.sql("""
-                        INSERT INTO transactions (item_name, quantity, unit, price_per_unit, warehouse_name)
-                        VALUES (:item_name, :quantity, :unit, :price_per_unit, :warehouse_name)
+                        INSERT INTO transactions (item_id, quantity, unit, price_per_unit, warehouse_id, corrects_transaction_id)
+                        VALUES (:item_id, :quantity, :unit, :price_per_unit, :warehouse_id, :corrects_transaction_id)
                         """)
-                .param("item_name", itemName)
-                .param("quantity", quantity)
+                .param("item_id", dictionaryRepository.resolveItemId(itemName))
+                .param("quantity", FixedPoint.toBigDecimal(quantity))
                 .param("unit", unit.toString())
-                .param("price_per_unit", pricePerUnit)
-                .param("warehouse_name", warehouseName)
+                .param("price_per_unit", FixedPoint.toBigDecimal(pricePerUnit))
+                .param("warehouse_id", dictionaryRepository.resolveWarehouseId(warehouseName))
+                .param("corrects_transaction_id", originalTransactionId, Types.INTEGER)
                 .update();
     }
 
+    public void createTransactions(List<Transaction> transactions) {
+        log.info("Creating {} transactions ...", transactions.size());
+
+        insertTransactions(transactions, null);
+    }
+
+    /**
+     * Records correction transactions; {@code originalTransactionIds} holds the corrected id for each of them.
+     */
+    public void createCorrectionTransactions(List<Transaction> corrections, List<Long> originalTransactionIds) {
+        log.info("Creating {} correction transactions ...", corrections.size());
+
+        insertTransactions(corrections, originalTransactionIds);
+    }
+
+    /**
+     * Reads the ledger in id order: entries after the given position, plus the given earlier ids which were
+     * not committed yet when the ledger was last read. Both come from one snapshot, so a correction is never
+     * returned without the entry it corrects.
+     */
+    public List<LedgerEntry> getLedgerTail(long position, Collection<Long> pendingIds, int limit) {
+        log.debug("Getting {} ledger entries after [{}] and {} pending ones ...", limit, position, pendingIds.size());
+
+        return jdbcClient.sql(LEDGER_ENTRY_SELECT + """
+                    WHERE t.id > :position OR t.id = ANY(:pending_ids)
+                    ORDER BY t.id
+                    LIMIT :limit
+                    """)
+                .param("position", position)
+                .param("pending_ids", pendingIds.toArray(Long[]::new))
+                .param("limit", limit)
+                .query(LEDGER_ENTRY_ROW_MAPPER)
+                .list();
+    }
+
+    /**
+     * Reads the ledger entries with ids in {@code (from, to]} in id order, at most {@code limit} of them.
+     */
+    public List<LedgerEntry> getLedgerRange(long from, long to, int limit) {
+        log.debug("Getting {} ledger entries between [{}] and [{}] ...", limit, from, to);
+
+        return jdbcClient.sql(LEDGER_ENTRY_SELECT + """
+                    WHERE t.id > :from AND t.id <= :to
+                    ORDER BY t.id
+                    LIMIT :limit
+                    """)
+                .param("from", from)
+                .param("to", to)
+                .param("limit", limit)
+                .query(LEDGER_ENTRY_ROW_MAPPER)
+                .list();
+    }
+
+    /**
+     * Reads the ledger entries with ids in {@code (from, to]} that move stock of one item in one warehouse, in id
+     * order: those adding to it and corrections taking from it.
+     */
+    @Transactional(readOnly = true)
+    public List<LedgerEntry> getLedgerRange(long from, long to, String itemName, String warehouseName) {
+        log.info("Getting ledger entries of [{}, {}] between [{}] and [{}] ...", itemName, warehouseName, from, to);
+
+        return jdbcClient.sql(LEDGER_ENTRY_SELECT + """
+                    WHERE t.id > :from AND t.id <= :to
+                      AND ((t.item_name = :item_name AND t.warehouse_name = :warehouse_name)
+                           OR (o.item_name = :item_name AND o.warehouse_name = :warehouse_name))
+                    ORDER BY t.id
+                    """)
+                .param("from", from)
+                .param("to", to)
+                .param("item_name", itemName)
+                .param("warehouse_name", warehouseName)
+                .query(LEDGER_ENTRY_ROW_MAPPER)
+                .list();
+    }
+
+    public long getLedgerPosition() {
+        log.info("Getting ledger position ...");
+
+        return jdbcClient.sql("SELECT coalesce(max(id), 0) FROM transactions")
+                .query(Long.class)
+                .single();
+    }
+
+    /**
+     * Returns the highest ledger id together with the database time right after it was read. Every id below it
+     * belongs to an entry that is committed, rolled back, or written by a transaction that started before that time.
+     */
+    public LedgerHead getLedgerHead() {
+        return jdbcClient.sql("SELECT coalesce(max(id), 0) AS position, clock_timestamp() AS read_at FROM transactions")
+                .query((rs, rowNum) -> new LedgerHead(
+                        rs.getLong("position"),
+                        rs.getObject("read_at", OffsetDateTime.class).toInstant()))
+                .single();
+    }
+
+    /**
+     * Returns the time before which no more ledger entries can commit. An entry is stamped with the time it is
+     * inserted, so only transactions that hold a write lock on the ledger can still commit entries below the current
+     * time. It is the start of the oldest of them, or the current time if there is none, less {@code settleDelay} for
+     * writers that take the lock while they are being listed. Read-only and idle transactions do not hold it back.
+     * <p>
+     * Sessions of other database users only show their transaction start to members of those users or of
+     * {@code pg_read_all_stats}. A writer whose start is hidden is taken to have been open for
+     * {@code maxTransactionAge}, so the result stays safe as long as no transaction runs for longer.
+     */
+    public Instant getSettledUpTo(Duration settleDelay, Duration maxTransactionAge) {
+        return jdbcClient.sql("""
+                    SELECT least(clock_timestamp() - make_interval(secs => :settle_delay),
+                                 min(a.xact_start),
+                                 CASE WHEN count(*) FILTER (WHERE a.xact_start IS NULL) > 0
+                                      THEN clock_timestamp() - make_interval(secs => :max_transaction_age) END) AS settled_up_to,
+                           count(*) FILTER (WHERE a.xact_start IS NULL) AS hidden
+                    FROM pg_locks l
+                    LEFT JOIN pg_stat_activity a ON a.pid = l.pid
+                    WHERE l.locktype = 'relation'
+                      AND l.database = (SELECT oid FROM pg_database WHERE datname = current_database())
+                      AND l.relation = to_regclass('transactions')
+                      AND l.mode = 'RowExclusiveLock'
+                      AND l.granted
+                      AND l.pid IS DISTINCT FROM pg_backend_pid()
+                    """)
+                .param("settle_delay", settleDelay.toNanos() / 1e9)
+                .param("max_transaction_age", maxTransactionAge.toNanos() / 1e9)
+                .query((rs, rowNum) -> {
+                    long hidden = rs.getLong("hidden");
+                    if (hidden > 0 && !hiddenSessionsReported) {
+                        log.warn("Cannot see when {} ledger writers of other database users started their transactions, "
+                                + "assuming they started {} ago; grant pg_read_all_stats to see them", hidden, maxTransactionAge);
+                    }
+                    hiddenSessionsReported = hidden > 0;
+                    return rs.getObject("settled_up_to", OffsetDateTime.class).toInstant();
+                })
+                .single();
+    }
+
+    /**
+     * Returns the ids in {@code (from, to]} which have no ledger entry, i.e. which are still uncommitted or were rolled back.
+     * The range is repeated on the ledger side, so only the partitions covering it are read.
+     */
+    public List<Long> getMissingIds(long from, long to) {
+        log.info("Getting missing ledger ids between [{}] and [{}] ...", from, to);
+
+        return jdbcClient.sql("""
+                    SELECT g.id
+                    FROM generate_series(CAST(:from AS bigint) + 1, CAST(:to AS bigint)) AS g(id)
+                    WHERE NOT EXISTS (SELECT 1 FROM transactions t WHERE t.id = g.id AND t.id > :from AND t.id <= :to)
+                    """)
+                .param("from", from)
+                .param("to", to)
+                .query(Long.class)
+                .list();
+    }
+
+    private void insertTransactions(List<Transaction> transactions, List<Long> originalTransactionIds) {
+        Map<String, Integer> itemIds = dictionaryRepository.resolveItemIds(transactions.stream().map(Transaction::itemName).toList());
+        Map<String, Integer> warehouseIds = dictionaryRepository.resolveWarehouseIds(transactions.stream().map(Transaction::warehouseName).toList());
+        for (int from = 0; from < transactions.size(); from += INSERT_CHUNK_SIZE) {
+            int to = Math.min(from + INSERT_CHUNK_SIZE, transactions.size());
+            StringBuilder sql = new StringBuilder("""
+                    INSERT INTO transactions (item_id, quantity, unit, price_per_unit, warehouse_id, corrects_transaction_id) VALUES """);
+            List<Object> params = new ArrayList<>((to - from) * 6);
+            for (int i = from; i < to; i++) {
+                Transaction transaction = transactions.get(i);
+                sql.append(i == from ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+                params.add(itemIds.get(transaction.itemName()));
+                params.add(FixedPoint.toBigDecimal(transaction.quantity()));
+                params.add(transaction.unit().toString());
+                params.add(FixedPoint.toBigDecimal(transaction.pricePerUnit()));
+                params.add(warehouseIds.get(transaction.warehouseName()));
+                params.add(originalTransactionIds == null ? null : originalTransactionIds.get(i));
+            }
+            jdbcClient.sql(sql.toString())
+                    .params(params)
+                    .update();
+        }
+    }
+
 }
@@ -0,0 +1,155 @@
+package com.inventory.repository;
+
+import com.inventory.model.FixedPoint;
+import com.inventory.model.Valuation;
+import com.inventory.model.ValuationDrift;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stock value per warehouse and per item. A trigger on {@code stocks} records every change of value as a delta in
+ * the writing transaction; a total is its folded row plus the deltas not folded yet, so it is read without
+ * touching the stocks table.
+ */
+@Repository
+@Timed(value = "inventory.repository", histogram = true)
+public class ValuationRepository {
+
+    public enum Scope {
+        WAREHOUSE("warehouses", "warehouse_id", "warehouse_valuations"),
+        ITEM("items", "item_id", "item_valuations");
+
+        private final String dictionary;
+        private final String key;
+        private final String totals;
+
+        Scope(String dictionary, String key, String totals) {
+            this.dictionary = dictionary;
+            this.key = key;
+            this.totals = totals;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ValuationRepository.class);
+    // Totals are numeric with four decimals and are rounded half up to hundredths
+    private static final RowMapper<Valuation> VALUATION_ROW_MAPPER = (rs, rowNum) -> new Valuation(
+            rs.getString("name"),
+            FixedPoint.parse(rs.getString("value")));
+    private static final RowMapper<ValuationDrift> VALUATION_DRIFT_ROW_MAPPER = (rs, rowNum) -> new ValuationDrift(
+            rs.getString("name"),
+            FixedPoint.parse(rs.getString("expected")),
+            FixedPoint.parse(rs.getString("recorded")));
+
+    private final JdbcClient jdbcClient;
+
+    public ValuationRepository(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Returns the valuation of one warehouse or item, empty if the name is not known at all.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Valuation> get(Scope scope, String name) {
+        log.info("Getting valuation of {} [{}] ...", scope.dictionary, name);
+
+        return jdbcClient.sql(selectValuations(scope) + " WHERE d.name = :name")
+                .param("name", name)
+                .query(VALUATION_ROW_MAPPER)
+                .optional();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Valuation> getAll(Scope scope) {
+        log.info("Getting valuations of all {} ...", scope.dictionary);
+
+        return jdbcClient.sql(selectValuations(scope) + " ORDER BY d.name")
+                .query(VALUATION_ROW_MAPPER)
+                .list();
+    }
+
+    /**
+     * Moves up to {@code limit} of the oldest committed deltas into the totals and returns how many were moved.
+     * Deltas locked by a concurrent fold are skipped, and totals are updated in key order, so folds on several
+     * nodes neither repeat nor block each other.
+     */
+    public int foldDeltas(int limit) {
+        log.debug("Folding up to {} valuation deltas ...", limit);
+
+        return jdbcClient.sql("""
+                    WITH folded AS (
+                        DELETE FROM stock_valuation_deltas
+                        WHERE id IN (
+                            SELECT id FROM stock_valuation_deltas
+                            ORDER BY id
+                            LIMIT :limit
+                            FOR UPDATE SKIP LOCKED
+                        )
+                        RETURNING warehouse_id, item_id, value
+                    ), warehouse_totals AS (
+                        INSERT INTO warehouse_valuations AS v (warehouse_id, value)
+                        SELECT warehouse_id, sum(value) FROM folded GROUP BY warehouse_id ORDER BY warehouse_id
+                        ON CONFLICT (warehouse_id) DO UPDATE SET value = v.value + EXCLUDED.value
+                    ), item_totals AS (
+                        INSERT INTO item_valuations AS v (item_id, value)
+                        SELECT item_id, sum(value) FROM folded GROUP BY item_id ORDER BY item_id
+                        ON CONFLICT (item_id) DO UPDATE SET value = v.value + EXCLUDED.value
+                    )
+                    SELECT count(*) FROM folded
+                    """)
+                .param("limit", limit)
+                .query(Integer.class)
+                .single();
+    }
+
+    /**
+     * Recomputes every total from the stocks table and returns those that differ from the maintained ones,
+     * compared from a single snapshot.
+     */
+    @Transactional(readOnly = true)
+    public List<ValuationDrift> findDrift(Scope scope) {
+        log.info("Verifying valuations of all {} ...", scope.dictionary);
+
+        return jdbcClient.sql("""
+                    WITH expected AS (
+                        SELECT %2$s AS id, sum(quantity * price_per_unit) AS value
+                        FROM stocks
+                        GROUP BY %2$s
+                    ), recorded AS (
+                        SELECT id, sum(value) AS value
+                        FROM (
+                            SELECT %2$s AS id, value FROM %3$s
+                            UNION ALL
+                            SELECT %2$s AS id, value FROM stock_valuation_deltas
+                        ) t
+                        GROUP BY id
+                    )
+                    SELECT d.name, coalesce(e.value, 0) AS expected, coalesce(r.value, 0) AS recorded
+                    FROM expected e
+                    FULL JOIN recorded r ON r.id = e.id
+                    JOIN %1$s d ON d.id = coalesce(e.id, r.id)
+                    WHERE coalesce(e.value, 0) <> coalesce(r.value, 0)
+                    ORDER BY d.name
+                    """.formatted(scope.dictionary, scope.key, scope.totals))
+                .query(VALUATION_DRIFT_ROW_MAPPER)
+                .list();
+    }
+
+    private static String selectValuations(Scope scope) {
+        return """
+                SELECT d.name,
+                       coalesce((SELECT v.value FROM %3$s v WHERE v.%2$s = d.id), 0)
+                       + coalesce((SELECT sum(delta.value) FROM stock_valuation_deltas delta WHERE delta.%2$s = d.id), 0)
+                       AS value
+                FROM %1$s d
+                """.formatted(scope.dictionary, scope.key, scope.totals);
+    }
+}
@@ -0,0 +1,45 @@
+package com.inventory.runner;
+
+import com.inventory.dto.ImportResult;
+import com.inventory.service.TransactionImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Imports a CSV transaction file on startup, e.g.
+ * {@code java -jar inventory.jar --inventory.import.file=suppliers.csv --spring.main.web-application-type=none}.
+ */
+@Component
+@ConditionalOnProperty("inventory.import.file")
+public class TransactionImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionImportRunner.class);
+
+    private final TransactionImportService transactionImportService;
+    private final Path file;
+
+    public TransactionImportRunner(TransactionImportService transactionImportService,
+                                   @Value("${inventory.import.file}") Path file) {
+        this.transactionImportService = transactionImportService;
+        this.file = file;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Importing transactions from {}", file);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            ImportResult result = transactionImportService.importCsv(reader);
+            log.info("Imported {} transactions from {} into {} stock entries", result.transactions(), file, result.stocks());
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.inventory.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.cache.IdempotencyKeyFilter;
+import com.inventory.exception.IdempotencyKeyInProgressException;
+import com.inventory.exception.IdempotencyKeyReusedException;
+import com.inventory.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Makes requests sent with an {@code Idempotency-Key} header take effect once: a retry gets the stored response
+ * of the first request and does not write anything. Keys are stored for {@code inventory.idempotency.ttl}, with
+ * a hash of the request, so reusing a key for a different request is refused.
+ * <p>
+ * New keys are recognised by a bloom filter and cost no extra lookup. Writes that run in a single database
+ * transaction store their key in that transaction, so a concurrent retry waits for it and then replays it.
+ * Other writes claim the key first and store the response once they are done. Such a claim is leased for
+ * {@code inventory.idempotency.claim-lease}; if the request neither completes nor releases it in time, e.g. because
+ * its instance crashed, a retry of the same request takes the key over instead of being refused until it expires.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final IdempotencyKeyFilter idempotencyKeyFilter;
+    private final RetryingTransactionExecutor retryingTransactionExecutor;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration claimLease;
+    private final Counter replayCounter;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              IdempotencyKeyFilter idempotencyKeyFilter,
+                              RetryingTransactionExecutor retryingTransactionExecutor,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${inventory.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${inventory.idempotency.claim-lease:5m}") Duration claimLease) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.idempotencyKeyFilter = idempotencyKeyFilter;
+        this.retryingTransactionExecutor = retryingTransactionExecutor;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.claimLease = claimLease;
+        this.replayCounter = Counter.builder("inventory.idempotency.replays")
+                .description("Requests answered with the stored response of an earlier request with the same key")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a write that commits in one database transaction, storing the key in the same transaction.
+     */
+    public ResponseEntity<?> executeAtomic(String key, String operation, Object request, HttpStatus status, Runnable write) {
+        byte[] requestHash = hash(operation, request);
+        Optional<ResponseEntity<?>> replay = replayIfKnown(key, requestHash);
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+        boolean claimed = retryingTransactionExecutor.execute(operation, () -> {
+            if (!idempotencyKeyRepository.claim(key, requestHash, status.value(), expiresAt(), null)) {
+                return false;
+            }
+            write.run();
+            return true;
+        });
+        idempotencyKeyFilter.add(key);
+        if (!claimed) {
+            return replay(key, requestHash).orElseThrow(() -> new IdempotencyKeyInProgressException(key));
+        }
+        return ResponseEntity.status(status).build();
+    }
+
+    /**
+     * Runs a write that spans several transactions (or none): the key is claimed before and completed with the
+     * response after it. A failed write releases the key.
+     */
+    public ResponseEntity<?> executeClaimed(String key, String operation, Object request, Supplier<ResponseEntity<?>> write) {
+        byte[] requestHash = hash(operation, request);
+        Optional<ResponseEntity<?>> replay = replayIfKnown(key, requestHash);
+        if (replay.isPresent()) {
+            return replay.get();
+        }
+        boolean claimed = idempotencyKeyRepository.claim(key, requestHash, null, expiresAt(),
+                Instant.now().plus(claimLease));
+        idempotencyKeyFilter.add(key);
+        if (!claimed) {
+            return replay(key, requestHash).orElseThrow(() -> new IdempotencyKeyInProgressException(key));
+        }
+        ResponseEntity<?> response;
+        try {
+            response = write.get();
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.release(key);
+            throw e;
+        }
+        idempotencyKeyRepository.complete(key, response.getStatusCode().value(),
+                response.hasBody() ? toJson(response.getBody()) : null);
+        return response;
+    }
+
+    /**
+     * Purges expired keys and rebuilds the bloom filter from the remaining ones; also runs on startup.
+     */
+    @Scheduled(fixedDelayString = "${inventory.idempotency.cleanup-interval:1h}")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteExpired();
+        idempotencyKeyFilter.rebuild(idempotencyKeyRepository::streamKeys);
+        log.info("Purged {} expired idempotency keys", deleted);
+    }
+
+    private Optional<ResponseEntity<?>> replayIfKnown(String key, byte[] requestHash) {
+        return idempotencyKeyFilter.mightContain(key) ? replay(key, requestHash) : Optional.empty();
+    }
+
+    private Optional<ResponseEntity<?>> replay(String key, byte[] requestHash) {
+        return idempotencyKeyRepository.get(key).flatMap(record -> {
+            if (!MessageDigest.isEqual(record.requestHash(), requestHash)) {
+                throw new IdempotencyKeyReusedException(key);
+            }
+            if (record.abandoned()) {
+                // Nothing to replay, the caller claims the key again
+                return Optional.empty();
+            }
+            if (!record.isCompleted()) {
+                throw new IdempotencyKeyInProgressException(key);
+            }
+            log.info("Replaying response of idempotency key [{}]", key);
+            replayCounter.increment();
+            ResponseEntity.BodyBuilder response = ResponseEntity.status(record.statusCode()).header(REPLAYED_HEADER, "true");
+            return Optional.of(record.responseBody() == null
+                    ? response.build()
+                    : response.contentType(MediaType.APPLICATION_JSON).body(record.responseBody()));
+        });
+    }
+
+    private Instant expiresAt() {
+        return Instant.now().plus(ttl);
+    }
+
+    private byte[] hash(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash request for idempotency key", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store response for idempotency key", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.inventory.service;
+
+import com.inventory.repository.LedgerPartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * Creates the partitions of the ledger ahead of the ids that go into them.
+ * <p>
+ * The transactions table is partitioned by ranges of {@code partition-size} ids, so lookups and scans by id only read
+ * the partitions in their range, and vacuum and index maintenance work on one partition at a time. Partitions are
+ * created before any request is served and then checked periodically, so that there are always
+ * {@code partitions-ahead} of them beyond the last id handed out. A database whose transactions table is not
+ * partitioned yet is left as it is until {@code db/partition-transactions.sql} is run.
+ */
+@Service
+public class LedgerPartitionService implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerPartitionService.class);
+
+    private final LedgerPartitionRepository ledgerPartitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long partitionSize;
+    private final int partitionsAhead;
+    private final Duration lockTimeout;
+    private volatile boolean running;
+
+    public LedgerPartitionService(LedgerPartitionRepository ledgerPartitionRepository,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${inventory.ledger.partition-size:10000000}") long partitionSize,
+                                  @Value("${inventory.ledger.partitions-ahead:2}") int partitionsAhead,
+                                  @Value("${inventory.ledger.lock-timeout:5s}") Duration lockTimeout) {
+        this.ledgerPartitionRepository = ledgerPartitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitionSize = partitionSize;
+        this.partitionsAhead = partitionsAhead;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @Override
+    public void start() {
+        if (!ledgerPartitionRepository.isPartitioned()) {
+            log.warn("The transactions table is not partitioned, run db/partition-transactions.sql to partition it");
+        }
+        ensurePartitions();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Before the web server, the journal drainer and the runners write to the ledger
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * Creates the partitions missing up to {@code partitions-ahead} partitions beyond the last id handed out and
+     * returns how many there were.
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.partition-interval:1m}")
+    public int ensurePartitions() {
+        return ensurePartitions(0);
+    }
+
+    /**
+     * Like {@link #ensurePartitions()}, but also covers {@code extraIds} more ids, for a bulk write that takes more
+     * ids at once than the partitions ahead may hold. Within a transaction the partitions are created on its
+     * connection and commit with it, and partition maintenance elsewhere waits until then.
+     */
+    public int ensurePartitions(long extraIds) {
+        if (!ledgerPartitionRepository.isPartitioned()) {
+            return 0;
+        }
+        Integer created = transactionTemplate.execute(status -> {
+            String previousLockTimeout = ledgerPartitionRepository.setLockTimeout(lockTimeout.toMillis() + "ms");
+            ledgerPartitionRepository.lockPartitions();
+            long until = ledgerPartitionRepository.getLastAssignedId() + extraIds + partitionsAhead * partitionSize;
+            int partitions = 0;
+            for (long from = ledgerPartitionRepository.getPartitionedUpTo(); from <= until; from += partitionSize) {
+                ledgerPartitionRepository.createPartition(from, from + partitionSize);
+                partitions++;
+            }
+            ledgerPartitionRepository.setLockTimeout(previousLockTimeout);
+            return partitions;
+        });
+        if (created > 0) {
+            log.info("Created {} ledger partitions of {} ids", created, partitionSize);
+        }
+        return created;
+    }
+}
@@ -0,0 +1,111 @@
+package com.inventory.service;
+
+import com.inventory.dto.MovementGranularity;
+import com.inventory.dto.MovementSeries;
+import com.inventory.repository.MovementRollupRepository;
+import com.inventory.repository.TransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Movements in and out of a warehouse per hour or day, read from rollups of the ledger.
+ * <p>
+ * A background job adds the ledger entries created since its watermark to the rollups and advances the watermark in
+ * the same transaction, so every entry is counted exactly once. The watermark only passes a point in time once no
+ * transaction writing the ledger that started before it is still open, because their entries may be stamped before
+ * it and still commit.
+ */
+@Service
+public class MovementRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(MovementRollupService.class);
+    static final String ROLLUP_NAME = "movements";
+
+    private final MovementRollupRepository movementRollupRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration settleDelay;
+    private final Duration maxTransactionAge;
+    private volatile Instant watermark;
+
+    public MovementRollupService(MovementRollupRepository movementRollupRepository,
+                                 TransactionRepository transactionRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${inventory.rollups.batch-size:10000}") int batchSize,
+                                 @Value("${inventory.rollups.settle-delay:1s}") Duration settleDelay,
+                                 @Value("${inventory.ledger.max-transaction-age:1h}") Duration maxTransactionAge) {
+        this.movementRollupRepository = movementRollupRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.settleDelay = settleDelay;
+        this.maxTransactionAge = maxTransactionAge;
+        Gauge.builder("inventory.rollups.lag", this, service -> service.getLag().toMillis() / 1000.0)
+                .description("How far the movement rollups are behind the ledger")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public MovementSeries getMovements(String warehouseName, String itemName, String granularity, Instant from, Instant to) {
+        MovementGranularity movementGranularity = MovementGranularity.fromValue(granularity);
+        return new MovementSeries(
+                movementRollupRepository.getBuckets(movementGranularity, warehouseName, itemName, from, to),
+                movementRollupRepository.getWatermark(ROLLUP_NAME));
+    }
+
+    /**
+     * Rolls up all ledger entries that can no longer change and returns how many there were. Does nothing while
+     * another node is rolling up.
+     */
+    @Scheduled(fixedDelayString = "${inventory.rollups.interval:10s}")
+    public int rollUp() {
+        int rolledUp = 0;
+        Optional<Batch> batch;
+        do {
+            batch = Optional.ofNullable(transactionTemplate.execute(status -> rollUpBatch()));
+            rolledUp += batch.map(Batch::entries).orElse(0);
+        } while (batch.map(Batch::truncated).orElse(false));
+        if (rolledUp > 0) {
+            log.info("Rolled up {} ledger entries up to [{}]", rolledUp, watermark);
+        }
+        return rolledUp;
+    }
+
+    private Batch rollUpBatch() {
+        Optional<Instant> locked = movementRollupRepository.lockWatermark(ROLLUP_NAME);
+        if (locked.isEmpty()) {
+            return null;
+        }
+        Instant from = locked.get();
+        Instant settled = transactionRepository.getSettledUpTo(settleDelay, maxTransactionAge);
+        if (!settled.isAfter(from)) {
+            watermark = from;
+            return new Batch(0, false);
+        }
+        Instant to = movementRollupRepository.getBatchEnd(from, settled, batchSize);
+        int entries = movementRollupRepository.rollUp(from, to);
+        movementRollupRepository.advanceWatermark(ROLLUP_NAME, to);
+        watermark = to;
+        return new Batch(entries, to.isBefore(settled));
+    }
+
+    private Duration getLag() {
+        Instant current = watermark;
+        return current == null ? Duration.ZERO : Duration.between(current, Instant.now());
+    }
+
+    private record Batch(int entries, boolean truncated) {}
+}
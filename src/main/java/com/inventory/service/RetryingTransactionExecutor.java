@@ -0,0 +1,96 @@
+package com.inventory.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs work in a new database transaction and runs it again when the database aborted it because of a deadlock,
+ * a serialization failure or a lock timeout ({@link ConcurrencyFailureException}).
+ * <p>
+ * Attempts are separated by exponential backoff with full jitter, so transactions that collided once do not
+ * collide again. Work joining a transaction that is already running cannot be retried and runs once.
+ */
+@Component
+public class RetryingTransactionExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryingTransactionExecutor.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    public RetryingTransactionExecutor(PlatformTransactionManager transactionManager,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${inventory.retry.max-attempts:5}") int maxAttempts,
+                                       @Value("${inventory.retry.initial-backoff:20ms}") Duration initialBackoff,
+                                       @Value("${inventory.retry.max-backoff:1s}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    public void execute(String operation, Runnable work) {
+        execute(operation, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T execute(String operation, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    counter("inventory.transaction.retries.exhausted", operation).increment();
+                    log.error("Giving up on {} after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                counter("inventory.transaction.retries", operation).increment();
+                long backoffMillis = backoffMillis(attempt);
+                log.warn("Retrying {} in {} ms after attempt {} failed: {}", operation, backoffMillis, attempt,
+                        e.getMostSpecificCause().getMessage());
+                sleep(backoffMillis);
+            }
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private Counter counter(String name, String operation) {
+        return Counter.builder(name)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
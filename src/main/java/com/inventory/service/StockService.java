@@ -0,0 +1,136 @@
+package com.inventory.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.inventory.dto.ExportFormat;
+import com.inventory.dto.StockPage;
+import com.inventory.dto.StockPageCursor;
+import com.inventory.exception.StockNotFoundException;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.StockEntry;
+import com.inventory.projection.StockProjection;
+import com.inventory.repository.StockRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class StockService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private static final String CSV_HEADER = "id,item_name,quantity,unit,price_per_unit,warehouse_name";
+
+    private final StockRepository stockRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<StockProjection> stockProjection;
+
+    public StockService(StockRepository stockRepository, ObjectMapper objectMapper,
+                        ObjectProvider<StockProjection> stockProjection) {
+        this.stockRepository = stockRepository;
+        this.objectMapper = objectMapper;
+        this.stockProjection = stockProjection;
+    }
+
+    /**
+     * Answered by the in-memory stock projection once it is enabled and caught up; its entries carry no id.
+     */
+    public StockEntry getStock(String itemName, String warehouseName, long pricePerUnit) {
+        StockProjection projection = stockProjection.getIfAvailable();
+        Optional<StockEntry> stockEntry = projection != null && projection.isReady()
+                ? projection.get(itemName, warehouseName, pricePerUnit)
+                : stockRepository.getByCompositeKey(itemName, warehouseName, pricePerUnit);
+        return stockEntry
+                .orElseThrow(() -> new StockNotFoundException(itemName, warehouseName, pricePerUnit));
+    }
+
+    public StockPage getStocks(String warehouseName, String itemPrefix, String cursor, int size) {
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        List<StockEntry> entries = stockRepository.getPage(
+                warehouseName,
+                itemPrefix,
+                cursor == null ? null : StockPageCursor.decode(cursor),
+                pageSize + 1);
+
+        if (entries.size() <= pageSize) {
+            return new StockPage(entries, null);
+        }
+        List<StockEntry> page = entries.subList(0, pageSize);
+        return new StockPage(List.copyOf(page), StockPageCursor.encode(page.get(pageSize - 1)));
+    }
+
+    /**
+     * Writes every stock entry to the output as it is read from the database cursor.
+     */
+    @Transactional(readOnly = true)
+    public void exportStocks(ExportFormat format, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        try {
+            switch (format) {
+                case NDJSON -> exportNdjson(writer);
+                case CSV -> exportCsv(writer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void exportNdjson(Writer writer) throws IOException {
+        SequenceWriter sequenceWriter = objectMapper.writerFor(StockEntry.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(writer);
+        stockRepository.streamAll(stockEntry -> {
+            try {
+                sequenceWriter.write(stockEntry);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        sequenceWriter.flush();
+        writer.write('\n');
+    }
+
+    private void exportCsv(Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        stockRepository.streamAll(stockEntry -> {
+            try {
+                writer.write(String.valueOf(stockEntry.id()));
+                writer.write(',');
+                writer.write(csvField(stockEntry.itemName()));
+                writer.write(',');
+                writer.write(FixedPoint.toString(stockEntry.quantity()));
+                writer.write(',');
+                writer.write(stockEntry.unit().toString());
+                writer.write(',');
+                writer.write(FixedPoint.toString(stockEntry.pricePerUnit()));
+                writer.write(',');
+                writer.write(csvField(stockEntry.warehouseName()));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,150 @@
+package com.inventory.service;
+
+import com.inventory.exception.TransactionNotFoundException;
+import com.inventory.model.LedgerEntry;
+import com.inventory.model.LedgerHead;
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockSnapshot;
+import com.inventory.projection.StockReplay;
+import com.inventory.repository.StockSnapshotRepository;
+import com.inventory.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stock levels as of a ledger position, for audits.
+ * <p>
+ * Snapshots of all stock levels are taken periodically, each built from the previous one plus the ledger entries
+ * since. An as-of query starts from the nearest earlier snapshot and replays only the entries after it, so it costs
+ * at most one snapshot interval of ledger, however long the ledger is.
+ * <p>
+ * A snapshot is only taken at a position below which no entry can still commit. Ids are taken before the inserting
+ * transaction commits, so the position is read first and the snapshot waits until every transaction that was open
+ * at that moment has finished.
+ */
+@Service
+public class StockSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockSnapshotService.class);
+    private static final Duration SETTLE_POLL_INTERVAL = Duration.ofMillis(200);
+
+    private final TransactionRepository transactionRepository;
+    private final StockSnapshotRepository stockSnapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration settleDelay;
+    private final Duration maxTransactionAge;
+    private final Duration maxSettleWait;
+    private final int keep;
+
+    public StockSnapshotService(TransactionRepository transactionRepository,
+                                StockSnapshotRepository stockSnapshotRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${inventory.snapshots.batch-size:10000}") int batchSize,
+                                @Value("${inventory.snapshots.settle-delay:1s}") Duration settleDelay,
+                                @Value("${inventory.snapshots.max-settle-wait:5m}") Duration maxSettleWait,
+                                @Value("${inventory.snapshots.keep:28}") int keep,
+                                @Value("${inventory.ledger.max-transaction-age:1h}") Duration maxTransactionAge) {
+        this.transactionRepository = transactionRepository;
+        this.stockSnapshotRepository = stockSnapshotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.settleDelay = settleDelay;
+        this.maxTransactionAge = maxTransactionAge;
+        this.maxSettleWait = maxSettleWait;
+        // The latest snapshot is always kept, the next one is built from it
+        this.keep = Math.max(keep, 1);
+    }
+
+    /**
+     * Returns the stock of one item in one warehouse, per price, right after the given transaction was recorded.
+     * Reads from a single database snapshot, so the stock snapshot it starts from cannot be pruned halfway.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public List<StockEntry> getStockAsOf(long transactionId, String itemName, String warehouseName) {
+        if (transactionRepository.getById(transactionId).isEmpty()) {
+            throw new TransactionNotFoundException(transactionId);
+        }
+        StockReplay replay = new StockReplay(key -> key.itemName().equals(itemName) && key.warehouseName().equals(warehouseName));
+        Optional<StockSnapshot> snapshot = stockSnapshotRepository.getLatestAtOrBefore(transactionId);
+        snapshot.ifPresent(s -> stockSnapshotRepository.getEntries(s.id(), itemName, warehouseName).forEach(replay::put));
+        long from = snapshot.map(StockSnapshot::ledgerPosition).orElse(0L);
+        transactionRepository.getLedgerRange(from, transactionId, itemName, warehouseName).forEach(replay::apply);
+
+        return replay.entries().stream()
+                .sorted(Comparator.comparingLong(StockEntry::pricePerUnit))
+                .toList();
+    }
+
+    /**
+     * Takes a snapshot at the current end of the ledger, unless there is nothing new since the latest one or
+     * transactions that may still add entries below it stay open for longer than {@code max-settle-wait}.
+     */
+    @Scheduled(fixedDelayString = "${inventory.snapshots.interval:6h}",
+            initialDelayString = "${inventory.snapshots.initial-delay:1m}")
+    public Optional<StockSnapshot> takeSnapshot() {
+        LedgerHead head = transactionRepository.getLedgerHead();
+        Optional<StockSnapshot> latest = stockSnapshotRepository.getLatest();
+        if (latest.isPresent() && latest.get().ledgerPosition() >= head.position()) {
+            return Optional.empty();
+        }
+        if (!awaitSettled(head.readAt())) {
+            log.warn("Skipped stock snapshot at ledger position [{}], transactions stayed open for more than {}",
+                    head.position(), maxSettleWait);
+            return Optional.empty();
+        }
+        Optional<StockSnapshot> snapshot = transactionTemplate.execute(status -> createSnapshot(latest, head.position()));
+        snapshot.ifPresent(s -> log.info("Took stock snapshot [{}] at ledger position [{}]", s.id(), s.ledgerPosition()));
+        if (snapshot.isPresent()) {
+            int deleted = stockSnapshotRepository.deleteAllButLatest(keep);
+            if (deleted > 0) {
+                log.info("Deleted {} stock snapshots beyond the latest {}", deleted, keep);
+            }
+        }
+        return snapshot;
+    }
+
+    private Optional<StockSnapshot> createSnapshot(Optional<StockSnapshot> latest, long position) {
+        StockReplay replay = new StockReplay();
+        latest.ifPresent(s -> stockSnapshotRepository.streamEntries(s.id(), replay::put));
+        long from = latest.map(StockSnapshot::ledgerPosition).orElse(0L);
+        List<LedgerEntry> entries;
+        do {
+            entries = transactionRepository.getLedgerRange(from, position, batchSize);
+            entries.forEach(replay::apply);
+            if (!entries.isEmpty()) {
+                from = entries.getLast().id();
+            }
+        } while (entries.size() == batchSize);
+        return stockSnapshotRepository.create(position, replay.entries());
+    }
+
+    private boolean awaitSettled(Instant readAt) {
+        Instant deadline = Instant.now().plus(maxSettleWait);
+        while (!transactionRepository.getSettledUpTo(settleDelay, maxTransactionAge).isAfter(readAt)) {
+            if (Instant.now().isAfter(deadline)) {
+                return false;
+            }
+            try {
+                Thread.sleep(SETTLE_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,238 @@
+package com.inventory.service;
+
+import com.inventory.event.LedgerAppendedEvent;
+import com.inventory.model.StockEntry;
+import com.inventory.model.Transaction;
+import com.inventory.repository.StockRepository;
+import com.inventory.repository.TransactionRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes ledger writes to a fixed set of single-writer lanes by composite key hash, so every stock row is only
+ * ever written by one lane.
+ * <p>
+ * A lane takes everything queued for it, writes the ledger rows and the summed stock deltas in one database
+ * transaction (a group commit) and then completes the callers' futures. A hot row thus gets one update per
+ * group instead of one lock hand-over per request. If a group fails, its submissions are retried one by one,
+ * so a single bad submission only fails its own caller. Submissions still queued when the lanes stop, or caught in
+ * a group that fails with an error, are failed rather than left for their callers to wait on. A caller that gives up
+ * waiting withdraws its submission, which only succeeds while no lane has picked it up.
+ */
+@Component
+@ConditionalOnProperty(name = "inventory.stock-writer.lanes")
+public class StockWriteLanes implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(StockWriteLanes.class);
+
+    private final TransactionRepository transactionRepository;
+    private final StockRepository stockRepository;
+    private final RetryingTransactionExecutor retryingTransactionExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxGroupSize;
+    private final Duration writeTimeout;
+    private final List<BlockingQueue<Submission>> queues = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private final DistributionSummary groupSize;
+    private volatile boolean running;
+
+    public StockWriteLanes(TransactionRepository transactionRepository,
+                           StockRepository stockRepository,
+                           RetryingTransactionExecutor retryingTransactionExecutor,
+                           ApplicationEventPublisher eventPublisher,
+                           MeterRegistry meterRegistry,
+                           @Value("${inventory.stock-writer.lanes}") int lanes,
+                           @Value("${inventory.stock-writer.max-group-size:1000}") int maxGroupSize,
+                           @Value("${inventory.stock-writer.write-timeout:30s}") Duration writeTimeout) {
+        this.transactionRepository = transactionRepository;
+        this.stockRepository = stockRepository;
+        this.retryingTransactionExecutor = retryingTransactionExecutor;
+        this.eventPublisher = eventPublisher;
+        this.maxGroupSize = maxGroupSize;
+        this.writeTimeout = writeTimeout;
+        for (int lane = 0; lane < lanes; lane++) {
+            LinkedBlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+            queues.add(queue);
+            Gauge.builder("inventory.stock.lanes.queued", queue, Collection::size)
+                    .description("Submissions waiting for their stock write lane")
+                    .tag("lane", String.valueOf(lane))
+                    .register(meterRegistry);
+        }
+        this.groupSize = DistributionSummary.builder("inventory.stock.lanes.group.size")
+                .description("Submissions written per group commit")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the lane all the given transactions belong to, or -1 if they span several lanes.
+     */
+    public int laneOf(List<Transaction> transactions) {
+        int lane = -1;
+        for (Transaction transaction : transactions) {
+            int transactionLane = Math.floorMod(TransactionService.stockKeyOf(transaction).hashCode(), queues.size());
+            if (lane >= 0 && lane != transactionLane) {
+                return -1;
+            }
+            lane = transactionLane;
+        }
+        return lane;
+    }
+
+    /**
+     * How long a caller waits for its submission to be committed.
+     */
+    public Duration getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    /**
+     * Queues the transactions on their lane; the future completes once they are committed.
+     */
+    public CompletableFuture<Void> submit(int lane, List<Transaction> transactions) {
+        Submission submission = new Submission(transactions, new CompletableFuture<>());
+        BlockingQueue<Submission> queue = queues.get(lane);
+        if (!running) {
+            submission.completion().completeExceptionally(stopped());
+            return submission.completion();
+        }
+        queue.add(submission);
+        // Stopped in between, after the lane or stop() took its last look at the queue
+        if (!running && queue.remove(submission)) {
+            submission.completion().completeExceptionally(stopped());
+        }
+        return submission.completion();
+    }
+
+    /**
+     * Takes a submission off its lane if the lane has not picked it up yet, cancelling its future. Returns false
+     * once the lane is writing it, as it may then still commit.
+     */
+    public boolean withdraw(int lane, CompletableFuture<Void> completion) {
+        if (!queues.get(lane).removeIf(submission -> submission.completion() == completion)) {
+            return false;
+        }
+        completion.cancel(false);
+        return true;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (int lane = 0; lane < queues.size(); lane++) {
+            BlockingQueue<Submission> queue = queues.get(lane);
+            writers.add(Thread.ofPlatform()
+                    .name("stock-lane-" + lane)
+                    .daemon()
+                    .start(() -> drain(queue)));
+        }
+        log.info("Started {} stock write lanes", queues.size());
+    }
+
+    @Override
+    public void stop() {
+        // Lanes notice within one poll interval and write what is still queued before exiting
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writers.clear();
+        // Left behind by a lane that did not finish in time
+        List<Submission> leftovers = new ArrayList<>();
+        queues.forEach(queue -> queue.drainTo(leftovers));
+        if (!leftovers.isEmpty()) {
+            log.warn("Failing {} submissions still queued when the stock write lanes stopped", leftovers.size());
+            leftovers.forEach(submission -> submission.completion().completeExceptionally(stopped()));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drain(BlockingQueue<Submission> queue) {
+        List<Submission> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Submission first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(group, maxGroupSize - group.size());
+            try {
+                writeGroup(group);
+            } catch (Throwable e) {
+                // Keeps the lane alive and its callers from waiting on a group that will never complete
+                log.error("Group commit of {} submissions failed", group.size(), e);
+                group.forEach(submission -> submission.completion().completeExceptionally(e));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void writeGroup(List<Submission> group) {
+        groupSize.record(group.size());
+        try {
+            write(group.stream().flatMap(submission -> submission.transactions().stream()).toList());
+            group.forEach(submission -> submission.completion().complete(null));
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                group.getFirst().completion().completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of {} submissions failed, writing them one by one: {}", group.size(), e.getMessage());
+            for (Submission submission : group) {
+                try {
+                    write(submission.transactions());
+                    submission.completion().complete(null);
+                } catch (RuntimeException submissionFailure) {
+                    submission.completion().completeExceptionally(submissionFailure);
+                }
+            }
+        }
+    }
+
+    private void write(List<Transaction> transactions) {
+        List<StockEntry> stockDeltas = TransactionService.coalesceStockDeltas(transactions);
+        retryingTransactionExecutor.execute("stockLaneGroupCommit", () -> {
+            transactionRepository.createTransactions(transactions);
+            stockRepository.upsertStocks(stockDeltas);
+            eventPublisher.publishEvent(new LedgerAppendedEvent(transactions.size()));
+        });
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Stock write lanes are stopped");
+    }
+
+    private record Submission(List<Transaction> transactions, CompletableFuture<Void> completion) {
+    }
+}
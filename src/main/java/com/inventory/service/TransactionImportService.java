@@ -0,0 +1,65 @@
+package com.inventory.service;
+
+import com.inventory.dto.ImportResult;
+import com.inventory.event.LedgerAppendedEvent;
+import com.inventory.exception.InvalidImportException;
+import com.inventory.metrics.TransactionMetrics;
+import com.inventory.repository.TransactionImportRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+@Service
+public class TransactionImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionImportService.class);
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final TransactionImportRepository transactionImportRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionMetrics transactionMetrics;
+    private final LedgerPartitionService ledgerPartitionService;
+
+    public TransactionImportService(TransactionImportRepository transactionImportRepository,
+                                    ApplicationEventPublisher eventPublisher,
+                                    TransactionMetrics transactionMetrics,
+                                    LedgerPartitionService ledgerPartitionService) {
+        this.transactionImportRepository = transactionImportRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionMetrics = transactionMetrics;
+        this.ledgerPartitionService = ledgerPartitionService;
+    }
+
+    /**
+     * Loads a CSV file with the columns item_name, quantity, unit, price_per_unit, warehouse_name
+     * (preceded by a header line). Either every line is applied or, if any line is invalid, none is.
+     */
+    @Transactional
+    public ImportResult importCsv(Reader csv) throws IOException {
+        long staged = transactionImportRepository.copyIntoStaging(csv);
+        log.info("Staged {} transactions for import", staged);
+
+        List<String> errors = transactionImportRepository.findInvalidRows(MAX_REPORTED_ERRORS);
+        if (!errors.isEmpty()) {
+            throw new InvalidImportException(errors);
+        }
+
+        // A file can hold more rows than the partitions kept ahead of the ledger. They are created in this
+        // transaction, so the import needs no second connection. Attaching one locks the dictionaries its foreign
+        // keys reference, so this goes before new names are added to them.
+        ledgerPartitionService.ensurePartitions(staged);
+        transactionImportRepository.addStagedNamesToDictionaries();
+        int transactions = transactionImportRepository.moveStagingIntoTransactions();
+        int stocks = transactionImportRepository.foldStagingIntoStocks();
+        log.info("Imported {} transactions into {} stock entries", transactions, stocks);
+        transactionMetrics.recordImported(transactions);
+        eventPublisher.publishEvent(new LedgerAppendedEvent(transactions));
+        return new ImportResult(transactions, stocks);
+    }
+}
@@ -0,0 +1,233 @@
+package com.inventory.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.dto.IngestionChunkResult;
+import com.inventory.dto.TransactionLineResult;
+import com.inventory.dto.TransactionPostRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Reads NDJSON transaction uploads record by record and commits them in fixed-size chunks
+ * while the rest of the body is still arriving. Also applies JSON batches per warehouse in parallel,
+ * when {@code inventory.ingestion.warehouse-parallelism} is above 1.
+ */
+@Service
+public class TransactionIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionIngestionService.class);
+    private static final int MAX_ERRORS_PER_CHUNK = 100;
+
+    private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final AsyncTaskExecutor taskExecutor;
+    private final int warehouseParallelism;
+    // Shared by all requests, so partitions never hold more than warehouseParallelism connections in total
+    private final Semaphore partitionPermits;
+
+    public TransactionIngestionService(TransactionService transactionService,
+                                       ObjectMapper objectMapper,
+                                       Validator validator,
+                                       @Value("${inventory.ingestion.chunk-size:1000}") int chunkSize,
+                                       @Qualifier("applicationTaskExecutor") AsyncTaskExecutor taskExecutor,
+                                       @Value("${inventory.ingestion.warehouse-parallelism:1}") int warehouseParallelism) {
+        this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.taskExecutor = taskExecutor;
+        this.warehouseParallelism = warehouseParallelism;
+        this.partitionPermits = new Semaphore(Math.max(warehouseParallelism, 1), true);
+    }
+
+    public boolean isPartitionedByWarehouse() {
+        return warehouseParallelism > 1;
+    }
+
+    /**
+     * Splits a batch by warehouse and writes every warehouse in its own database transaction, several at once.
+     * Warehouses never share stock rows, so the partitions do not wait on each other's locks. A failing
+     * warehouse only fails its own lines.
+     */
+    public List<TransactionLineResult> ingestByWarehouse(List<TransactionPostRequest> transactions) {
+        Map<String, List<Integer>> linesByWarehouse = new LinkedHashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            linesByWarehouse.computeIfAbsent(transactions.get(i).warehouseName(), warehouse -> new ArrayList<>()).add(i);
+        }
+        log.info("Applying {} transactions as {} warehouse partitions", transactions.size(), linesByWarehouse.size());
+
+        List<CompletableFuture<String>> partitions = new ArrayList<>(linesByWarehouse.size());
+        for (Map.Entry<String, List<Integer>> partition : linesByWarehouse.entrySet()) {
+            List<TransactionPostRequest> lines = partition.getValue().stream().map(transactions::get).toList();
+            partitions.add(CompletableFuture.supplyAsync(() -> applyPartition(partition.getKey(), lines), taskExecutor));
+        }
+
+        // Every partition is settled before answering, so none is still writing once the response is out
+        CompletableFuture.allOf(partitions.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        TransactionLineResult[] results = new TransactionLineResult[transactions.size()];
+        int partition = 0;
+        for (Map.Entry<String, List<Integer>> warehouse : linesByWarehouse.entrySet()) {
+            String error = join(partitions.get(partition++));
+            for (int index : warehouse.getValue()) {
+                results[index] = new TransactionLineResult(index + 1, warehouse.getKey(),
+                        error == null ? TransactionLineResult.Status.COMMITTED : TransactionLineResult.Status.FAILED,
+                        error);
+            }
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Returns null once the partition is committed, or the reason it was rolled back.
+     */
+    private String applyPartition(String warehouseName, List<TransactionPostRequest> lines) {
+        partitionPermits.acquireUninterruptibly();
+        try {
+            transactionService.addTransactions(lines);
+            log.info("Committed {} transactions for warehouse [{}]", lines.size(), warehouseName);
+            return null;
+        } catch (DataAccessException e) {
+            log.error("Failed to write {} transactions for warehouse [{}]: {}", lines.size(), warehouseName, e.getMessage());
+            return e.getMostSpecificCause().getMessage();
+        } catch (RuntimeException e) {
+            log.error("Failed to apply {} transactions for warehouse [{}]", lines.size(), warehouseName, e);
+            return String.valueOf(e.getMessage());
+        } finally {
+            partitionPermits.release();
+        }
+    }
+
+    private static String join(CompletableFuture<String> partition) {
+        try {
+            return partition.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Commits the records chunk by chunk and returns the outcome of every chunk read. A chunk that fails for a
+     * reason other than the database ends the upload, the chunks before it stay committed.
+     */
+    public List<IngestionChunkResult> ingest(InputStream body) throws IOException {
+        List<IngestionChunkResult> results = new ArrayList<>();
+        try {
+            readChunks(body, results);
+        } catch (ChunkFailedException e) {
+            results.add(e.result);
+        }
+        return results;
+    }
+
+    /**
+     * Lines are the physical lines of the body as the parser counts them, so blank lines and records spread over
+     * several lines do not shift them. A chunk runs from the line its first record starts on to the line its last
+     * record ends on.
+     */
+    private void readChunks(InputStream body, List<IngestionChunkResult> results) throws IOException {
+        List<TransactionPostRequest> chunk = new ArrayList<>(chunkSize);
+        List<String> errors = new ArrayList<>();
+        long firstLine = 0;
+        long lastLine = 0;
+        long recordLine = 0;
+
+        try (MappingIterator<TransactionPostRequest> records = objectMapper
+                .readerFor(TransactionPostRequest.class)
+                .readValues(body)) {
+            while (records.hasNextValue()) {
+                recordLine = records.getParser().currentTokenLocation().getLineNr();
+                TransactionPostRequest transaction = records.nextValue();
+                for (ConstraintViolation<TransactionPostRequest> violation : validator.validate(transaction)) {
+                    addError(errors, "line %d: %s %s".formatted(recordLine, violation.getPropertyPath(), violation.getMessage()));
+                }
+                if (chunk.isEmpty()) {
+                    firstLine = recordLine;
+                }
+                chunk.add(transaction);
+                lastLine = records.getCurrentLocation().getLineNr();
+                if (chunk.size() == chunkSize) {
+                    results.add(applyChunk(results.size() + 1, firstLine, lastLine, chunk, errors));
+                    chunk.clear();
+                    errors.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            if (!chunk.isEmpty()) {
+                results.add(applyChunk(results.size() + 1, firstLine, lastLine, chunk, errors));
+            }
+            long line = e.getLocation() != null ? e.getLocation().getLineNr() : lastLine + 1;
+            // From the start of the record that could not be read, unless the parser failed before finding one
+            long rejectedFrom = recordLine > lastLine ? Math.min(recordLine, line) : line;
+            log.warn("Stopped ingestion at line {}: {}", line, e.getOriginalMessage());
+            results.add(new IngestionChunkResult(results.size() + 1, rejectedFrom, line,
+                    IngestionChunkResult.Status.REJECTED, List.of("line %d: %s".formatted(line, e.getOriginalMessage()))));
+            return;
+        }
+
+        if (!chunk.isEmpty()) {
+            results.add(applyChunk(results.size() + 1, firstLine, lastLine, chunk, errors));
+        }
+    }
+
+    private IngestionChunkResult applyChunk(int chunkNumber, long firstLine, long lastLine, List<TransactionPostRequest> chunk,
+                                            List<String> errors) {
+        if (!errors.isEmpty()) {
+            log.warn("Rejected chunk {} (lines {}-{}) with {} invalid records", chunkNumber, firstLine, lastLine, errors.size());
+            return new IngestionChunkResult(chunkNumber, firstLine, lastLine, IngestionChunkResult.Status.REJECTED, List.copyOf(errors));
+        }
+        try {
+            transactionService.addTransactions(List.copyOf(chunk));
+            log.info("Committed chunk {} (lines {}-{})", chunkNumber, firstLine, lastLine);
+            return new IngestionChunkResult(chunkNumber, firstLine, lastLine, IngestionChunkResult.Status.COMMITTED, List.of());
+        } catch (DataAccessException e) {
+            log.error("Failed to write chunk {} (lines {}-{}): {}", chunkNumber, firstLine, lastLine, e.getMessage());
+            return new IngestionChunkResult(chunkNumber, firstLine, lastLine, IngestionChunkResult.Status.FAILED,
+                    List.of(e.getMostSpecificCause().getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Stopped ingestion, failed to write chunk {} (lines {}-{})", chunkNumber, firstLine, lastLine, e);
+            throw new ChunkFailedException(new IngestionChunkResult(chunkNumber, firstLine, lastLine,
+                    IngestionChunkResult.Status.FAILED, List.of(String.valueOf(e.getMessage()))));
+        }
+    }
+
+    private static void addError(List<String> errors, String error) {
+        if (errors.size() < MAX_ERRORS_PER_CHUNK) {
+            errors.add(error);
+        }
+    }
+
+    // Carries the result of the failed chunk out of the read loop, so the results of the committed chunks are kept
+    private static final class ChunkFailedException extends RuntimeException {
+
+        private final IngestionChunkResult result;
+
+        private ChunkFailedException(IngestionChunkResult result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+}
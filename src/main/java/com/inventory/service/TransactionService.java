@@ -1,18 +1,51 @@
 package com.inventory.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.dto.DeadLetterReplayResult;
 import com.inventory.dto.TransactionPatchRequest;
 import com.inventory.dto.TransactionPostRequest;
+import com.inventory.event.LedgerAppendedEvent;
 import com.inventory.exception.StockNotFoundException;
+import com.inventory.exception.StockWriteTimeoutException;
 import com.inventory.exception.TransactionNotFoundException;
+import com.inventory.exception.WriteOutcomeUnknownException;
+import com.inventory.journal.JournalBatch;
+import com.inventory.journal.TransactionJournal;
+import com.inventory.metrics.TransactionMetrics;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.JournalDeadLetter;
 import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
 import com.inventory.model.Transaction;
+import com.inventory.repository.JournalDeadLetterRepository;
+import com.inventory.repository.JournalOffsetRepository;
 import com.inventory.repository.StockRepository;
 import com.inventory.repository.TransactionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Objects;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class TransactionService {
@@ -21,14 +54,138 @@ public class TransactionService {
 
     private final TransactionRepository transactionRepository;
     private final StockRepository stockRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionMetrics transactionMetrics;
+    private final RetryingTransactionExecutor retryingTransactionExecutor;
+    private final ObjectProvider<StockWriteLanes> stockWriteLanes;
+    private final ObjectProvider<TransactionJournal> transactionJournal;
+    private final JournalOffsetRepository journalOffsetRepository;
+    private final JournalDeadLetterRepository journalDeadLetterRepository;
+    private final ObjectMapper objectMapper;
 
-    public TransactionService(TransactionRepository transactionRepository, StockRepository stockRepository) {
+    public TransactionService(TransactionRepository transactionRepository, StockRepository stockRepository,
+                              ApplicationEventPublisher eventPublisher, TransactionMetrics transactionMetrics,
+                              RetryingTransactionExecutor retryingTransactionExecutor,
+                              ObjectProvider<StockWriteLanes> stockWriteLanes,
+                              ObjectProvider<TransactionJournal> transactionJournal,
+                              JournalOffsetRepository journalOffsetRepository,
+                              JournalDeadLetterRepository journalDeadLetterRepository,
+                              ObjectMapper objectMapper) {
         this.transactionRepository = transactionRepository;
         this.stockRepository = stockRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionMetrics = transactionMetrics;
+        this.retryingTransactionExecutor = retryingTransactionExecutor;
+        this.stockWriteLanes = stockWriteLanes;
+        this.transactionJournal = transactionJournal;
+        this.journalOffsetRepository = journalOffsetRepository;
+        this.journalDeadLetterRepository = journalDeadLetterRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isJournaled() {
+        return transactionJournal.getIfAvailable() != null;
+    }
+
+    /**
+     * Appends the batch to the local journal and returns once it is on disk. The journal drainer applies it
+     * to the database later.
+     */
+    public void journalTransactions(List<TransactionPostRequest> transactionRequestDTOs) {
+        List<Transaction> transactions = transactionRequestDTOs.stream()
+                .map(this::mapTransactionCreationDtoToTransaction)
+                .toList();
+        transactionJournal.getObject().append(transactions);
+    }
+
+    /**
+     * Writes a batch read from the journal in the same database transaction as the journal's new applied
+     * position, so a crash in between can neither lose nor repeat a journaled transaction.
+     */
+    public void applyJournaled(String journalName, JournalBatch batch) {
+        List<StockEntry> stockDeltas = coalesceStockDeltas(batch.transactions());
+        retryingTransactionExecutor.execute("applyJournaled", () -> {
+            transactionRepository.createTransactions(batch.transactions());
+            stockRepository.upsertStocks(stockDeltas);
+            journalOffsetRepository.advance(journalName, batch.startPosition(), batch.endPosition());
+            eventPublisher.publishEvent(new LedgerAppendedEvent(batch.transactions().size()));
+        });
+        transactionMetrics.recordCreated(batch.transactions().size());
+    }
+
+    /**
+     * Sets a journal record that cannot be applied aside as a dead letter, in the same database transaction as the
+     * journal's applied position moves past it, so the record is kept whatever happens to the journal file.
+     */
+    public void deadLetterJournaled(String journalName, JournalBatch batch, String reason) {
+        String transactions = toJson(batch.transactions());
+        retryingTransactionExecutor.execute("deadLetterJournaled", () -> {
+            journalDeadLetterRepository.create(journalName, batch.startPosition(), transactions, reason);
+            journalOffsetRepository.advance(journalName, batch.startPosition(), batch.endPosition());
+        });
+    }
+
+    public List<JournalDeadLetter> getDeadLetters() {
+        return journalDeadLetterRepository.getAll();
+    }
+
+    /**
+     * Applies every dead letter again, each in its own database transaction together with deleting it. A dead letter
+     * that still fails is kept with the new reason, and one being replayed concurrently is left to that replay.
+     */
+    public DeadLetterReplayResult replayDeadLetters() {
+        int replayed = 0;
+        int failed = 0;
+        for (JournalDeadLetter deadLetter : journalDeadLetterRepository.getAll()) {
+            try {
+                if (retryingTransactionExecutor.execute("replayDeadLetter", () -> replayDeadLetter(deadLetter.id()))) {
+                    replayed++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not replay journal dead letter [{}]: {}", deadLetter.id(), e.getMessage());
+                journalDeadLetterRepository.updateReason(deadLetter.id(), String.valueOf(e.getMessage()));
+                failed++;
+            }
+        }
+        return new DeadLetterReplayResult(replayed, failed);
+    }
+
+    private boolean replayDeadLetter(long id) {
+        Optional<JournalDeadLetter> deadLetter = journalDeadLetterRepository.lock(id);
+        if (deadLetter.isEmpty()) {
+            return false;
+        }
+        List<Transaction> transactions = fromJson(deadLetter.get().transactions());
+        transactionRepository.createTransactions(transactions);
+        stockRepository.upsertStocks(coalesceStockDeltas(transactions));
+        journalDeadLetterRepository.delete(id);
+        eventPublisher.publishEvent(new LedgerAppendedEvent(transactions.size()));
+        transactionMetrics.recordCreated(transactions.size());
+        return true;
+    }
+
+    private String toJson(List<Transaction> transactions) {
+        try {
+            return objectMapper.writeValueAsString(transactions);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize journal record", e);
+        }
+    }
+
+    private List<Transaction> fromJson(String transactions) {
+        try {
+            return objectMapper.readValue(transactions, new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read journal dead letter", e);
+        }
     }
 
     public void addTransaction(TransactionPostRequest transactionRequestDTO) {
         Transaction transaction = mapTransactionCreationDtoToTransaction(transactionRequestDTO);
+        if (writeThroughLane(List.of(transaction))) {
+            transactionMetrics.recordCreated(1);
+            return;
+        }
         transactionRepository.createTransaction(
                 transaction.itemName(),
                 transaction.quantity(),
@@ -41,55 +198,258 @@ public class TransactionService {
                 transaction.unit(),
                 transaction.pricePerUnit(),
                 transaction.warehouseName());
+        transactionMetrics.recordCreated(1);
+        eventPublisher.publishEvent(new LedgerAppendedEvent(1));
+    }
+
+    /**
+     * Writes the whole batch in one database transaction, retried on deadlocks and serialization failures.
+     * When stock write lanes are enabled and the batch touches a single lane, it is group-committed there instead.
+     */
+    public void addTransactions(List<TransactionPostRequest> transactionRequestDTOs) {
+        List<Transaction> transactions = transactionRequestDTOs.stream()
+                .map(this::mapTransactionCreationDtoToTransaction)
+                .toList();
+        if (writeThroughLane(transactions)) {
+            transactionMetrics.recordCreated(transactions.size());
+            return;
+        }
+        List<StockEntry> stockDeltas = coalesceStockDeltas(transactions);
+        retryingTransactionExecutor.execute("addTransactions", () -> {
+            transactionRepository.createTransactions(transactions);
+            stockRepository.upsertStocks(stockDeltas);
+            eventPublisher.publishEvent(new LedgerAppendedEvent(transactions.size()));
+        });
+        transactionMetrics.recordCreated(transactions.size());
+    }
+
+    /**
+     * Hands the transactions to their stock write lane and waits until they are committed. Returns false, leaving
+     * the write to the caller, when lanes are disabled, the batch spans several lanes (splitting it would break its
+     * atomicity) or the caller already runs inside a transaction. On timeout the submission is withdrawn if the lane
+     * has not picked it up yet, so the write failed; otherwise its outcome is unknown.
+     */
+    private boolean writeThroughLane(List<Transaction> transactions) {
+        StockWriteLanes lanes = stockWriteLanes.getIfAvailable();
+        if (lanes == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        int lane = lanes.laneOf(transactions);
+        if (lane < 0) {
+            return false;
+        }
+        Duration timeout = lanes.getWriteTimeout();
+        CompletableFuture<Void> completion = lanes.submit(lane, transactions);
+        try {
+            completion.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            throw laneFailure(lane, e.getCause());
+        } catch (TimeoutException e) {
+            if (lanes.withdraw(lane, completion)) {
+                throw new StockWriteTimeoutException(lane, timeout);
+            }
+            // Picked up by the lane, so its group may still commit unless it finished in the meantime
+            return switch (completion.state()) {
+                case SUCCESS -> true;
+                case FAILED -> throw laneFailure(lane, completion.exceptionNow());
+                default -> throw new WriteOutcomeUnknownException(lane, timeout);
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for stock write lane " + lane, e);
+        }
+    }
+
+    private static RuntimeException laneFailure(int lane, Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new IllegalStateException("Stock write lane " + lane + " failed", cause);
     }
 
     public void correctTransaction(TransactionPatchRequest correction) {
+        retryingTransactionExecutor.execute("correctTransaction", () -> applyCorrection(correction));
+        transactionMetrics.recordCorrected(1);
+    }
+
+    private void applyCorrection(TransactionPatchRequest correction) {
         Long originalTransactionId = correction.originalTransactionId();
         Transaction correctTransaction = mapTransactionCorrectionDtoToTransaction(correction);
         Transaction originalTransaction = transactionRepository.getById(originalTransactionId).orElseThrow(
                 () -> new TransactionNotFoundException(originalTransactionId)
         );
-        log.info("Original transaction [{}, {}, {}, {}, {}]", originalTransaction.itemName(), originalTransaction.quantity(), originalTransaction.unit().toString(),
-                originalTransaction.pricePerUnit(), originalTransaction.warehouseName());
-        transactionRepository.createTransaction(
+        log.info("Original transaction [{}, {}, {}, {}, {}]", originalTransaction.itemName(), FixedPoint.toString(originalTransaction.quantity()),
+                originalTransaction.unit().toString(), FixedPoint.toString(originalTransaction.pricePerUnit()), originalTransaction.warehouseName());
+        // Both rows are locked up front in canonical order; the correction statement alone locks the original first
+        stockRepository.lockByCompositeKeys(List.of(stockKeyOf(originalTransaction), stockKeyOf(correctTransaction)));
+        transactionRepository.createCorrectionTransaction(
+                    originalTransactionId,
                     correctTransaction.itemName(),
                     correctTransaction.quantity(),
                     correctTransaction.unit(),
                     correctTransaction.pricePerUnit(),
                     correctTransaction.warehouseName());
 
-        StockEntry stockEntryToFix = stockRepository
-                .getByCompositeKey(originalTransaction.itemName(), originalTransaction.warehouseName(),originalTransaction.pricePerUnit())
-                .orElseThrow(() -> new StockNotFoundException(originalTransaction.itemName(),
-                        originalTransaction.warehouseName(), originalTransaction.pricePerUnit()));
+        if (!stockRepository.applyCorrection(originalTransaction, correctTransaction)) {
+            throw new StockNotFoundException(originalTransaction.itemName(),
+                    originalTransaction.warehouseName(), originalTransaction.pricePerUnit());
+        }
+        eventPublisher.publishEvent(new LedgerAppendedEvent(1));
+    }
 
-        double newQuantity = stockEntryToFix.quantity() - originalTransaction.quantity();
-        if (newQuantity == 0) {
-            if (!stockEntryToFix.itemName().equals(correctTransaction.itemName())) {
-                stockRepository.updateStockItemName(stockEntryToFix.id(), correctTransaction.itemName());
-            }
-            if (!stockEntryToFix.quantity().equals(correctTransaction.quantity())) {
-                stockRepository.updateStockQuantity(stockEntryToFix.id(), correctTransaction.quantity());
-            }
-            if (!stockEntryToFix.unit().equals(correctTransaction.unit())) {
-                stockRepository.updateStockUnit(stockEntryToFix.id(), correctTransaction.unit());
-            }
-            if (!Objects.equals(stockEntryToFix.pricePerUnit(), correctTransaction.pricePerUnit())) {
-                stockRepository.updateStockPricePerUnit(stockEntryToFix.id(), correctTransaction.pricePerUnit());
-            }
-            if (!stockEntryToFix.warehouseName().equals(correctTransaction.warehouseName())) {
-                stockRepository.updateStockWarehouseName(stockEntryToFix.id(), correctTransaction.warehouseName());
+    /**
+     * Applies a whole correction file at once: originals and affected stock rows are loaded with one query each,
+     * the corrections are replayed in memory in request order, and the resulting ledger and stock changes
+     * are written back as batches inside a single transaction. The stock rows stay locked from the moment they are
+     * loaded, and the transaction is retried on deadlocks and serialization failures.
+     */
+    public void correctTransactions(List<TransactionPatchRequest> corrections) {
+        retryingTransactionExecutor.execute("correctTransactions", () -> applyCorrections(corrections));
+        transactionMetrics.recordCorrected(corrections.size());
+    }
+
+    private void applyCorrections(List<TransactionPatchRequest> corrections) {
+        Map<Long, Transaction> originals = transactionRepository
+                .getByIds(corrections.stream().map(TransactionPatchRequest::originalTransactionId).distinct().toList())
+                .stream()
+                .collect(Collectors.toMap(Transaction::id, Function.identity()));
+
+        Set<StockKey> affectedKeys = new LinkedHashSet<>();
+        for (TransactionPatchRequest correction : corrections) {
+            Transaction originalTransaction = originals.get(correction.originalTransactionId());
+            if (originalTransaction == null) {
+                throw new TransactionNotFoundException(correction.originalTransactionId());
             }
-        } else {
-            stockRepository.createStock(
+            affectedKeys.add(stockKeyOf(originalTransaction));
+            affectedKeys.add(new StockKey(correction.itemName(), correction.warehouseName(), correction.pricePerUnit()));
+        }
+
+        List<StockEntry> loadedStocks = stockRepository.lockByCompositeKeys(affectedKeys);
+        Map<StockKey, StockEntry> stocks = new HashMap<>();
+        loadedStocks.forEach(stockEntry -> stocks.put(stockKeyOf(stockEntry), stockEntry));
+
+        List<Transaction> correctionTransactions = new ArrayList<>(corrections.size());
+        for (TransactionPatchRequest correction : corrections) {
+            Transaction correctTransaction = mapTransactionCorrectionDtoToTransaction(correction);
+            applyCorrection(stocks, originals.get(correction.originalTransactionId()), correctTransaction);
+            correctionTransactions.add(correctTransaction);
+        }
+
+        transactionRepository.createCorrectionTransactions(correctionTransactions,
+                corrections.stream().map(TransactionPatchRequest::originalTransactionId).toList());
+        writeStockChanges(loadedStocks, stocks.values());
+        eventPublisher.publishEvent(new LedgerAppendedEvent(correctionTransactions.size()));
+    }
+
+    private void applyCorrection(Map<StockKey, StockEntry> stocks, Transaction originalTransaction, Transaction correctTransaction) {
+        StockKey originalKey = stockKeyOf(originalTransaction);
+        StockKey correctKey = stockKeyOf(correctTransaction);
+        StockEntry stockEntryToFix = stocks.remove(originalKey);
+        if (stockEntryToFix == null) {
+            throw new StockNotFoundException(originalTransaction.itemName(),
+                    originalTransaction.warehouseName(), originalTransaction.pricePerUnit());
+        }
+
+        long newQuantity = Math.subtractExact(stockEntryToFix.quantity(), originalTransaction.quantity());
+        StockEntry existingTarget = stocks.get(correctKey);
+        if (newQuantity == 0 && existingTarget == null) {
+            // The original was the only contribution to its row: move the row itself to the corrected values
+            stocks.put(correctKey, new StockEntry(
+                    stockEntryToFix.id(),
                     correctTransaction.itemName(),
                     correctTransaction.quantity(),
                     correctTransaction.unit(),
                     correctTransaction.pricePerUnit(),
-                    correctTransaction.warehouseName());
-            newQuantity = stockEntryToFix.quantity() - originalTransaction.quantity();
-            stockRepository.updateStockQuantity(stockEntryToFix.id(), newQuantity);
+                    correctTransaction.warehouseName()));
+            return;
         }
+        if (newQuantity != 0) {
+            stocks.put(originalKey, withQuantity(stockEntryToFix, newQuantity));
+            existingTarget = stocks.get(correctKey);
+        }
+        stocks.put(correctKey, existingTarget == null
+                ? new StockEntry(
+                        null,
+                        correctTransaction.itemName(),
+                        correctTransaction.quantity(),
+                        correctTransaction.unit(),
+                        correctTransaction.pricePerUnit(),
+                        correctTransaction.warehouseName())
+                : withQuantity(existingTarget, Math.addExact(existingTarget.quantity(), correctTransaction.quantity())));
+    }
+
+    private void writeStockChanges(List<StockEntry> loadedStocks, Iterable<StockEntry> currentStocks) {
+        Map<Long, StockEntry> loadedById = loadedStocks.stream()
+                .collect(Collectors.toMap(StockEntry::id, Function.identity()));
+        Map<StockKey, Long> loadedIdsByKey = loadedStocks.stream()
+                .collect(Collectors.toMap(TransactionService::stockKeyOf, StockEntry::id));
+        Set<Long> keptIds = new HashSet<>();
+        for (StockEntry stockEntry : currentStocks) {
+            if (stockEntry.id() != null) {
+                keptIds.add(stockEntry.id());
+            }
+        }
+        List<StockEntry> toUpdate = new ArrayList<>();
+        List<StockEntry> toCreate = new ArrayList<>();
+        List<Long> toDelete = new ArrayList<>(loadedById.keySet().stream().filter(id -> !keptIds.contains(id)).toList());
+        for (StockEntry stockEntry : currentStocks) {
+            if (stockEntry.id() == null) {
+                toCreate.add(stockEntry);
+                continue;
+            }
+            if (stockEntry.equals(loadedById.get(stockEntry.id()))) {
+                continue;
+            }
+            Long previousHolder = loadedIdsByKey.get(stockKeyOf(stockEntry));
+            if (previousHolder != null && !previousHolder.equals(stockEntry.id()) && keptIds.contains(previousHolder)) {
+                // The key is only released when the row holding it moves too, e.g. when two rows swap keys, which
+                // no order of updates can do; the row is recreated instead
+                toDelete.add(stockEntry.id());
+                toCreate.add(withId(stockEntry, null));
+            } else {
+                toUpdate.add(stockEntry);
+            }
+        }
+
+        // Deletes and moves go first so that a key released by one row can be taken by another
+        if (!toDelete.isEmpty()) {
+            stockRepository.deleteStocks(toDelete);
+        }
+        if (!toUpdate.isEmpty()) {
+            stockRepository.updateStocks(toUpdate);
+        }
+        if (!toCreate.isEmpty()) {
+            stockRepository.createStocks(toCreate);
+        }
+    }
+
+    static StockKey stockKeyOf(Transaction transaction) {
+        return new StockKey(transaction.itemName(), transaction.warehouseName(), transaction.pricePerUnit());
+    }
+
+    private static StockKey stockKeyOf(StockEntry stockEntry) {
+        return new StockKey(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit());
+    }
+
+    private static StockEntry withId(StockEntry stockEntry, Long id) {
+        return new StockEntry(
+                id,
+                stockEntry.itemName(),
+                stockEntry.quantity(),
+                stockEntry.unit(),
+                stockEntry.pricePerUnit(),
+                stockEntry.warehouseName());
+    }
+
+    private static StockEntry withQuantity(StockEntry stockEntry, long quantity) {
+        return new StockEntry(
+                stockEntry.id(),
+                stockEntry.itemName(),
+                quantity,
+                stockEntry.unit(),
+                stockEntry.pricePerUnit(),
+                stockEntry.warehouseName());
     }
 
     private Transaction mapTransactionCreationDtoToTransaction(TransactionPostRequest dto) {
@@ -103,6 +463,40 @@ public class TransactionService {
         );
     }
 
+    /**
+     * Sums the quantities of all transactions sharing a composite key, so that every stock row
+     * is upserted (and locked) only once per batch, and returns the sums in the canonical key order.
+     * Sums are exact, like the numeric column they end up in.
+     */
+    static List<StockEntry> coalesceStockDeltas(List<Transaction> transactions) {
+        Map<StockKey, StockEntry> deltas = new TreeMap<>(StockKey.CANONICAL_ORDER);
+        for (Transaction transaction : transactions) {
+            deltas.merge(stockKeyOf(transaction), mapTransactionToStockEntry(transaction), (pending, next) -> new StockEntry(
+                    null,
+                    pending.itemName(),
+                    Math.addExact(pending.quantity(), next.quantity()),
+                    pending.unit(),
+                    pending.pricePerUnit(),
+                    pending.warehouseName()
+            ));
+        }
+        if (deltas.size() < transactions.size()) {
+            log.info("Coalesced {} transactions into {} stock deltas", transactions.size(), deltas.size());
+        }
+        return List.copyOf(deltas.values());
+    }
+
+    private static StockEntry mapTransactionToStockEntry(Transaction transaction) {
+        return new StockEntry(
+                null,
+                transaction.itemName(),
+                transaction.quantity(),
+                transaction.unit(),
+                transaction.pricePerUnit(),
+                transaction.warehouseName()
+        );
+    }
+
     private Transaction mapTransactionCorrectionDtoToTransaction(TransactionPatchRequest dto) {
         return new Transaction(
                 null,
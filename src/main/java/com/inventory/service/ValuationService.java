@@ -0,0 +1,108 @@
+package com.inventory.service;
+
+import com.inventory.exception.ValuationNotFoundException;
+import com.inventory.model.FixedPoint;
+import com.inventory.model.Valuation;
+import com.inventory.model.ValuationDrift;
+import com.inventory.repository.ValuationRepository;
+import com.inventory.repository.ValuationRepository.Scope;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stock value per warehouse and per item, read from totals that every stock write keeps up to date.
+ * <p>
+ * The value deltas recorded by stock writes are folded into the totals in the background, which only keeps the
+ * reads short; a total is correct whether or not its deltas are folded yet. A verifier periodically recomputes all
+ * totals from the stocks table and reports the ones that drifted, e.g. after stocks were edited with the trigger
+ * disabled.
+ */
+@Service
+public class ValuationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ValuationService.class);
+    private static final int LOGGED_DRIFTS = 10;
+
+    private final ValuationRepository valuationRepository;
+    private final int foldBatchSize;
+    private final Map<Scope, AtomicInteger> drifts = new EnumMap<>(Scope.class);
+
+    public ValuationService(ValuationRepository valuationRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${inventory.valuation.fold-batch-size:10000}") int foldBatchSize) {
+        this.valuationRepository = valuationRepository;
+        this.foldBatchSize = foldBatchSize;
+        for (Scope scope : Scope.values()) {
+            AtomicInteger drift = new AtomicInteger();
+            drifts.put(scope, drift);
+            Gauge.builder("inventory.valuation.drift", drift, AtomicInteger::get)
+                    .description("Totals that differed from the stocks table at the last verification")
+                    .tag("scope", scope.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    public Valuation getWarehouseValuation(String warehouseName) {
+        return valuationRepository.get(Scope.WAREHOUSE, warehouseName)
+                .orElseThrow(() -> new ValuationNotFoundException("Warehouse", warehouseName));
+    }
+
+    public Valuation getItemValuation(String itemName) {
+        return valuationRepository.get(Scope.ITEM, itemName)
+                .orElseThrow(() -> new ValuationNotFoundException("Item", itemName));
+    }
+
+    public List<Valuation> getWarehouseValuations() {
+        return valuationRepository.getAll(Scope.WAREHOUSE);
+    }
+
+    /**
+     * Folds all committed value deltas into the totals and returns how many there were.
+     */
+    @Scheduled(fixedDelayString = "${inventory.valuation.fold-interval:1s}")
+    public int foldDeltas() {
+        int folded = 0;
+        int batch;
+        do {
+            batch = valuationRepository.foldDeltas(foldBatchSize);
+            folded += batch;
+        } while (batch == foldBatchSize);
+        return folded;
+    }
+
+    /**
+     * Recomputes every total from the stocks table and returns how many differ from the maintained ones.
+     */
+    @Scheduled(fixedDelayString = "${inventory.valuation.verify-interval:1h}",
+            initialDelayString = "${inventory.valuation.verify-interval:1h}")
+    public int verify() {
+        int drifted = 0;
+        for (Scope scope : Scope.values()) {
+            List<ValuationDrift> found = valuationRepository.findDrift(scope);
+            drifts.get(scope).set(found.size());
+            drifted += found.size();
+            found.stream().limit(LOGGED_DRIFTS).forEach(drift -> log.warn(
+                    "Valuation of {} [{}] drifted: recorded {}, stocks add up to {}",
+                    scope.name().toLowerCase(Locale.ROOT), drift.name(),
+                    FixedPoint.toString(drift.recorded()), FixedPoint.toString(drift.expected())));
+        }
+        if (drifted > 0) {
+            log.warn("{} valuation totals drifted from the stocks table; db/rebuild-stock-valuations.sql recomputes them",
+                    drifted);
+        } else {
+            log.info("Valuation totals match the stocks table");
+        }
+        return drifted;
+    }
+}
@@ -0,0 +1,16 @@
+-- Adds the claim lease to the idempotency keys of a database created before claims could be taken over. Run it once,
+-- before starting the new version:
+--
+--   psql -d inventory_mgmt -f src/main/resources/db/add-idempotency-claim-leases.sql
+--
+-- Claims taken before have no lease and are kept until their key expires. The column is nullable without a default, so
+-- it is added without rewriting the table. A database from before idempotency keys has no such table yet and is left
+-- as it is.
+\set ON_ERROR_STOP on
+
+BEGIN;
+
+ALTER TABLE IF EXISTS idempotency_keys
+    ADD COLUMN IF NOT EXISTS claimed_until timestamp with time zone;
+
+COMMIT;
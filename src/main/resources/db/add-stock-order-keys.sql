@@ -0,0 +1,42 @@
+-- Adds the order keys that stock pages are read by to the stocks table of a database created before they existed.
+-- Run it once, before starting the new version, while the old version keeps running:
+--
+--   psql -d inventory_mgmt -f src/main/resources/db/add-stock-order-keys.sql
+--
+-- The trigger is created first, so stock rows the old version writes meanwhile get their keys too. Filling in the
+-- keys of the existing rows holds back stock writes until it commits; the index is then built without blocking them.
+\set ON_ERROR_STOP on
+BEGIN;
+
+ALTER TABLE stocks
+    ADD COLUMN IF NOT EXISTS warehouse_order_key varchar(255) COLLATE "C",
+    ADD COLUMN IF NOT EXISTS item_order_key varchar(255) COLLATE "C";
+
+CREATE OR REPLACE FUNCTION set_stock_order_keys() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP = ''INSERT'' OR NEW.warehouse_id <> OLD.warehouse_id THEN
+        NEW.warehouse_order_key := (SELECT name FROM warehouses WHERE id = NEW.warehouse_id);
+    END IF;
+    IF TG_OP = ''INSERT'' OR NEW.item_id <> OLD.item_id THEN
+        NEW.item_order_key := (SELECT name FROM items WHERE id = NEW.item_id);
+    END IF;
+    RETURN NEW;
+END';
+
+CREATE OR REPLACE TRIGGER stocks_order_keys
+    BEFORE INSERT OR UPDATE OF warehouse_id, item_id ON stocks
+    FOR EACH ROW EXECUTE FUNCTION set_stock_order_keys();
+
+UPDATE stocks s
+SET warehouse_order_key = w.name, item_order_key = i.name
+FROM warehouses w, items i
+WHERE w.id = s.warehouse_id AND i.id = s.item_id AND s.item_order_key IS NULL;
+
+ALTER TABLE stocks
+    ALTER COLUMN warehouse_order_key SET NOT NULL,
+    ALTER COLUMN item_order_key SET NOT NULL;
+
+COMMIT;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_stocks_page
+    ON stocks (warehouse_order_key, item_order_key, price_per_unit);
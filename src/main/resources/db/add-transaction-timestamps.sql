@@ -0,0 +1,21 @@
+-- Adds the created_at timestamp to the ledger of a database created before movement rollups existed. Run it once,
+-- before starting the new version:
+--
+--   psql -d inventory_mgmt -f src/main/resources/db/add-transaction-timestamps.sql
+--
+-- Existing entries have no recorded time and are stamped with the time of the migration, so all of them land in the
+-- current hourly and daily buckets once they are rolled up. New entries are stamped with the time they are inserted.
+-- The column is added without rewriting the table, and the index is built afterwards without blocking writers.
+\set ON_ERROR_STOP on
+
+BEGIN;
+
+ALTER TABLE transactions
+    ADD COLUMN IF NOT EXISTS created_at timestamp with time zone NOT NULL DEFAULT now();
+ALTER TABLE transactions
+    ALTER COLUMN created_at SET DEFAULT clock_timestamp();
+
+COMMIT;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_created_at
+    ON transactions (created_at);
@@ -0,0 +1,69 @@
+-- Moves a database created before item and warehouse names were stored in the items and warehouses dictionaries
+-- to the current schema. Run it once, before starting the new version:
+--
+--   psql -d inventory_mgmt -f src/main/resources/db/migrate-to-dictionary-keys.sql
+--
+-- The old name columns are dropped, run VACUUM FULL transactions, stocks afterwards to give their space back.
+\set ON_ERROR_STOP on
+
+BEGIN;
+
+CREATE TABLE items (
+    id serial PRIMARY KEY NOT NULL,
+    name varchar(255) COLLATE "C" NOT NULL UNIQUE
+);
+
+CREATE TABLE warehouses (
+    id serial PRIMARY KEY NOT NULL,
+    name varchar(255) COLLATE "C" NOT NULL UNIQUE
+);
+
+INSERT INTO items (name)
+SELECT item_name COLLATE "C" FROM transactions
+UNION
+SELECT item_name COLLATE "C" FROM stocks
+ORDER BY 1;
+
+INSERT INTO warehouses (name)
+SELECT warehouse_name COLLATE "C" FROM transactions
+UNION
+SELECT warehouse_name COLLATE "C" FROM stocks
+ORDER BY 1;
+
+-- Corrections reference the ledger entry they reverse, entries from before the migration reference none
+ALTER TABLE transactions
+    ADD COLUMN IF NOT EXISTS corrects_transaction_id integer,
+    ADD COLUMN item_id integer REFERENCES items (id),
+    ADD COLUMN warehouse_id integer REFERENCES warehouses (id);
+
+UPDATE transactions t
+SET item_id = i.id, warehouse_id = w.id
+FROM items i, warehouses w
+WHERE i.name = t.item_name COLLATE "C" AND w.name = t.warehouse_name COLLATE "C";
+
+ALTER TABLE transactions
+    ALTER COLUMN item_id SET NOT NULL,
+    ALTER COLUMN warehouse_id SET NOT NULL,
+    DROP COLUMN item_name,
+    DROP COLUMN warehouse_name;
+
+ALTER TABLE stocks
+    ADD COLUMN item_id integer REFERENCES items (id),
+    ADD COLUMN warehouse_id integer REFERENCES warehouses (id);
+
+UPDATE stocks s
+SET item_id = i.id, warehouse_id = w.id
+FROM items i, warehouses w
+WHERE i.name = s.item_name COLLATE "C" AND w.name = s.warehouse_name COLLATE "C";
+
+-- Also drops unique_item_warehouse_price, idx_stocks_page and idx_stocks_item_name, which index the names
+ALTER TABLE stocks
+    ALTER COLUMN item_id SET NOT NULL,
+    ALTER COLUMN warehouse_id SET NOT NULL,
+    DROP COLUMN item_name,
+    DROP COLUMN warehouse_name;
+
+ALTER TABLE stocks
+    ADD CONSTRAINT unique_item_warehouse_price UNIQUE (item_id, warehouse_id, price_per_unit);
+
+COMMIT;
@@ -0,0 +1,64 @@
+-- Partitions the ledger of a database created before the transactions table was partitioned. The existing table
+-- becomes the first partition as it is, so no rows are copied, and writers are only held up for the final rename.
+-- Start the new version first, it works with either table, then run this once while the application keeps running:
+--
+--   psql -d inventory_mgmt -v partition_size=10000000 -f src/main/resources/db/partition-transactions.sql
+--
+-- partition_size must match inventory.ledger.partition-size. The old table keeps all ids up to the end of the
+-- partition after the one the id sequence is in, and the application creates the partitions from there on at its
+-- next check. Every lock is waited for at most lock_timeout; if a step times out, run the script again.
+\set ON_ERROR_STOP on
+\if :{?partition_size}
+\else
+    \set partition_size 10000000
+\endif
+SET lock_timeout = '5s';
+
+SELECT (last_value / :partition_size + 2) * :partition_size AS legacy_end
+FROM transactions_id_seq \gset
+
+-- Proves that all current and upcoming rows of the old table fall into its partition, so attaching it skips the scan.
+-- Adding the constraint NOT VALID is instant, validating it scans the table without blocking reads or writes
+ALTER TABLE transactions DROP CONSTRAINT IF EXISTS transactions_legacy_range;
+ALTER TABLE transactions ADD CONSTRAINT transactions_legacy_range CHECK (id < :legacy_end) NOT VALID;
+ALTER TABLE transactions VALIDATE CONSTRAINT transactions_legacy_range;
+
+BEGIN;
+
+-- Same columns, constraints and indexes as the old table, so attaching it reuses its indexes instead of building them
+CREATE TABLE transactions_partitioned (
+    id integer NOT NULL DEFAULT nextval('transactions_id_seq'),
+    item_id integer NOT NULL CONSTRAINT transactions_item_id_fkey REFERENCES items (id),
+    quantity numeric NOT NULL,
+    unit varchar(255) NOT NULL,
+    price_per_unit numeric(10,2) NOT NULL,
+    warehouse_id integer NOT NULL CONSTRAINT transactions_warehouse_id_fkey REFERENCES warehouses (id),
+    corrects_transaction_id integer,
+    created_at timestamp with time zone NOT NULL DEFAULT clock_timestamp(),
+    CONSTRAINT transactions_partitioned_pkey PRIMARY KEY (id)
+) PARTITION BY RANGE (id);
+
+CREATE INDEX idx_transactions_partitioned_created_at
+    ON transactions_partitioned (created_at);
+
+ALTER TABLE transactions RENAME TO transactions_legacy;
+ALTER INDEX transactions_pkey RENAME TO transactions_legacy_pkey;
+ALTER INDEX idx_transactions_created_at RENAME TO transactions_legacy_created_at_idx;
+ALTER TABLE transactions_partitioned RENAME TO transactions;
+ALTER INDEX transactions_partitioned_pkey RENAME TO transactions_pkey;
+ALTER INDEX idx_transactions_partitioned_created_at RENAME TO idx_transactions_created_at;
+ALTER TABLE transactions ATTACH PARTITION transactions_legacy FOR VALUES FROM (MINVALUE) TO (:legacy_end);
+ALTER SEQUENCE transactions_id_seq OWNED BY transactions.id;
+
+-- Views refer to the table they were created on, which is now the partition
+CREATE OR REPLACE VIEW transaction_entries AS
+    SELECT t.id, i.name AS item_name, t.quantity, t.unit, t.price_per_unit, w.name AS warehouse_name,
+           t.corrects_transaction_id
+    FROM transactions t
+    JOIN items i ON i.id = t.item_id
+    JOIN warehouses w ON w.id = t.warehouse_id;
+
+COMMIT;
+
+-- The partition bound enforces the range from now on
+ALTER TABLE transactions_legacy DROP CONSTRAINT transactions_legacy_range;
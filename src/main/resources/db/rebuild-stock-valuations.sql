@@ -0,0 +1,25 @@
+-- Recomputes the per-warehouse and per-item stock valuations from the stocks table. Run it once after upgrading a
+-- database whose stocks predate the valuation tables, or to repair drift reported by the valuation verifier:
+--
+--   psql -d inventory_mgmt -f src/main/resources/db/rebuild-stock-valuations.sql
+--
+-- Stock writes wait for it to finish; reads are not blocked.
+BEGIN;
+
+LOCK TABLE stocks IN SHARE MODE;
+
+DELETE FROM stock_valuation_deltas;
+DELETE FROM warehouse_valuations;
+DELETE FROM item_valuations;
+
+INSERT INTO warehouse_valuations (warehouse_id, value)
+SELECT warehouse_id, coalesce(sum(quantity * price_per_unit), 0)
+FROM stocks
+GROUP BY warehouse_id;
+
+INSERT INTO item_valuations (item_id, value)
+SELECT item_id, coalesce(sum(quantity * price_per_unit), 0)
+FROM stocks
+GROUP BY item_id;
+
+COMMIT;
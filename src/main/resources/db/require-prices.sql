@@ -0,0 +1,36 @@
+-- Removes the ledger entries and stock rows without a price from a database created before prices were required, and
+-- makes the price columns NOT NULL. Such stock rows could never be looked up or corrected, since a NULL price never
+-- matches the unique stock key. Run it once, before starting the new version:
+--
+--   psql -d inventory_mgmt -f src/main/resources/db/require-prices.sql
+--
+-- A correction of a removed entry stays in the ledger as a plain entry. Both columns are proven NOT NULL by check
+-- constraints first, which are validated without blocking reads or writes and let SET NOT NULL skip its scan.
+\set ON_ERROR_STOP on
+
+BEGIN;
+
+UPDATE transactions
+SET corrects_transaction_id = NULL
+WHERE corrects_transaction_id IN (SELECT id FROM transactions WHERE price_per_unit IS NULL);
+
+DELETE FROM transactions WHERE price_per_unit IS NULL;
+
+DELETE FROM stocks WHERE price_per_unit IS NULL;
+
+ALTER TABLE transactions
+    ADD CONSTRAINT transactions_price_per_unit_not_null CHECK (price_per_unit IS NOT NULL) NOT VALID;
+
+ALTER TABLE stocks
+    ADD CONSTRAINT stocks_price_per_unit_not_null CHECK (price_per_unit IS NOT NULL) NOT VALID;
+
+COMMIT;
+
+ALTER TABLE transactions VALIDATE CONSTRAINT transactions_price_per_unit_not_null;
+ALTER TABLE stocks VALIDATE CONSTRAINT stocks_price_per_unit_not_null;
+
+ALTER TABLE transactions ALTER COLUMN price_per_unit SET NOT NULL;
+ALTER TABLE stocks ALTER COLUMN price_per_unit SET NOT NULL;
+
+ALTER TABLE transactions DROP CONSTRAINT transactions_price_per_unit_not_null;
+ALTER TABLE stocks DROP CONSTRAINT stocks_price_per_unit_not_null;
@@ -0,0 +1,40 @@
+package com.inventory.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyKeyFilterTest {
+
+    @Test
+    void testContainsEveryAddedKey() {
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.add("key-" + i));
+
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("key-" + i))).isTrue();
+    }
+
+    @Test
+    void testFalsePositiveRateStaysNearConfiguredRate() {
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.add("key-" + i));
+
+        long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("other-" + i)).count();
+
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    void testRebuildDropsKeysNotLoadedAgain() {
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(1_000, 0.01);
+        filter.add("expired");
+
+        filter.rebuild(consumer -> List.of("kept").forEach(consumer));
+
+        assertThat(filter.mightContain("kept")).isTrue();
+        assertThat(filter.mightContain("expired")).isFalse();
+    }
+}
@@ -0,0 +1,83 @@
+package com.inventory.cache;
+
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
+import com.inventory.model.Unit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockCacheTest {
+
+    private final StockKey key = new StockKey("Strawberry", "LIDL", 525);
+    private final StockEntry entry = new StockEntry(7L, "Strawberry", 5000, Unit.KG, 525, "LIDL");
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private StockCache stockCache;
+
+    @BeforeEach
+    void setup() {
+        stockCache = new StockCache(100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void testLoadsOnlyOnce() {
+        assertThat(stockCache.get(key, this::load)).contains(entry);
+        assertThat(stockCache.get(key, this::load)).contains(entry);
+
+        assertThat(loads).hasValue(1);
+        assertThat(stockCache.stats().hitCount()).isEqualTo(1);
+        assertThat(stockCache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testDoesNotCacheMissingEntries() {
+        assertThat(stockCache.get(key, k -> { loads.incrementAndGet(); return Optional.empty(); })).isEmpty();
+        assertThat(stockCache.get(key, this::load)).contains(entry);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testEvictByKey() {
+        stockCache.get(key, this::load);
+
+        stockCache.evictAll(List.of(key));
+        stockCache.get(key, this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testEvictById() {
+        stockCache.get(key, this::load);
+
+        stockCache.evictById(entry.id());
+        stockCache.get(key, this::load);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void testStaysWithinMaximumSize() {
+        StockCache smallCache = new StockCache(1, Duration.ofMinutes(5));
+        StockKey otherKey = new StockKey("Blueberry", "LIDL", 525);
+
+        smallCache.get(key, this::load);
+        smallCache.get(otherKey, k -> Optional.of(new StockEntry(8L, "Blueberry", 100, Unit.KG, 525, "LIDL")));
+        smallCache.get(otherKey, k -> Optional.empty());
+
+        assertThat(smallCache.size()).isEqualTo(1);
+    }
+
+    private Optional<StockEntry> load(StockKey stockKey) {
+        loads.incrementAndGet();
+        return Optional.of(entry);
+    }
+}
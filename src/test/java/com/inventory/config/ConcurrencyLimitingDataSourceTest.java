@@ -0,0 +1,70 @@
+package com.inventory.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConcurrencyLimitingDataSourceTest {
+
+    private final DataSource pool = mock(DataSource.class);
+    private final Connection pooledConnection = mock(Connection.class);
+
+    private ConcurrencyLimitingDataSource dataSource;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        when(pool.getConnection()).thenReturn(pooledConnection);
+        dataSource = new ConcurrencyLimitingDataSource(pool, 1, Duration.ofMillis(50));
+    }
+
+    @Test
+    void testTimesOutWhileAllPermitsAreHeld() throws SQLException {
+        Connection connection = dataSource.getConnection();
+
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(dataSource.getAvailablePermits()).isZero();
+
+        connection.close();
+        verify(pooledConnection).close();
+        assertThat(dataSource.getConnection()).isNotNull();
+    }
+
+    @Test
+    void testReleasesPermitOnlyOnce() throws SQLException {
+        Connection connection = dataSource.getConnection();
+
+        connection.close();
+        connection.close();
+
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void testReleasesPermitWhenPoolFails() throws SQLException {
+        when(pool.getConnection()).thenThrow(new SQLException("pool exhausted"));
+
+        assertThatThrownBy(dataSource::getConnection).hasMessage("pool exhausted");
+        assertThat(dataSource.getAvailablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void testDelegatesUnwrap() throws SQLException {
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pooledConnection.unwrap(any())).thenReturn(pgConnection);
+
+        assertThat(dataSource.getConnection().unwrap(PGConnection.class)).isSameAs(pgConnection);
+    }
+}
@@ -0,0 +1,129 @@
+package com.inventory.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadReplicasTest {
+
+    private final DataSource primary = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+
+    @Test
+    void testReadsFromPrimaryUntilReplicasAreChecked() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        ReadReplicas readReplicas = readReplicas(Map.of("replica-1", replicaWithLag(0L)));
+
+        assertThat(readReplicas.fallingBackTo(primary).getConnection()).isSameAs(primaryConnection);
+        assertThat(readReplicas.getFallbackCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testRoutesRoundRobinToReplicasInSync() throws SQLException {
+        DataSource first = replicaWithLag(0L);
+        DataSource second = replicaWithLag(1_000L);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", first);
+        replicas.put("replica-2", second);
+        ReadReplicas readReplicas = readReplicas(replicas);
+        readReplicas.checkLag();
+
+        DataSource dataSource = readReplicas.fallingBackTo(primary);
+
+        assertThat(dataSource.getConnection()).isSameAs(first.getConnection());
+        assertThat(dataSource.getConnection()).isSameAs(second.getConnection());
+        assertThat(dataSource.getConnection()).isSameAs(first.getConnection());
+        assertThat(readReplicas.getFallbackCount()).isZero();
+    }
+
+    @Test
+    void testFallsBackToPrimaryForLaggingOrUnreachableReplicas() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        DataSource unreachable = mock(DataSource.class);
+        when(unreachable.getConnection()).thenThrow(new SQLTransientConnectionException("connection refused"));
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("lagging", replicaWithLag(60_000L));
+        replicas.put("not-streaming", replicaWithLag(null));
+        replicas.put("unreachable", unreachable);
+        ReadReplicas readReplicas = readReplicas(replicas);
+        readReplicas.checkLag();
+
+        assertThat(readReplicas.fallingBackTo(primary).getConnection()).isSameAs(primaryConnection);
+        assertThat(readReplicas.getFallbackCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testSkipsReplicaThatRefusesConnectionUntilCheckedAgain() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        DataSource replica = replicaWithLag(0L);
+        Connection replicaConnection = replica.getConnection();
+        ReadReplicas readReplicas = readReplicas(Map.of("replica-1", replica));
+        readReplicas.checkLag();
+        DataSource dataSource = readReplicas.fallingBackTo(primary);
+
+        when(replica.getConnection()).thenThrow(new SQLTransientConnectionException("timed out"));
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+        doReturn(replicaConnection).when(replica).getConnection();
+        assertThat(dataSource.getConnection()).isSameAs(primaryConnection);
+
+        readReplicas.checkLag();
+        assertThat(dataSource.getConnection()).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void testPassesOtherCredentialsToTheChosenDataSource() throws SQLException {
+        when(primary.getConnection("reader", "secret")).thenReturn(primaryConnection);
+        DataSource replica = replicaWithLag(0L);
+        Connection replicaConnection = mock(Connection.class);
+        when(replica.getConnection("reader", "secret")).thenReturn(replicaConnection);
+        ReadReplicas readReplicas = readReplicas(Map.of("replica-1", replica));
+        DataSource dataSource = readReplicas.fallingBackTo(primary);
+
+        assertThat(dataSource.getConnection("reader", "secret")).isSameAs(primaryConnection);
+
+        readReplicas.checkLag();
+        assertThat(dataSource.getConnection("reader", "secret")).isSameAs(replicaConnection);
+    }
+
+    private ReadReplicas readReplicas(Map<String, DataSource> replicas) {
+        return new ReadReplicas(replicas, Duration.ofSeconds(5));
+    }
+
+    /**
+     * A replica whose lag query answers with the given milliseconds, or SQL NULL.
+     */
+    private DataSource replicaWithLag(Long lagMillis) throws SQLException {
+        DataSource replica = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenAnswer(invocation -> {
+            when(resultSet.next()).thenReturn(true, false);
+            return resultSet;
+        });
+        when(resultSet.getMetaData()).thenReturn(metaData);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(resultSet.getLong(1)).thenReturn(lagMillis == null ? 0 : lagMillis);
+        when(resultSet.wasNull()).thenReturn(lagMillis == null);
+        return replica;
+    }
+}
@@ -0,0 +1,142 @@
+package com.inventory.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.model.StockEntry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Starts the application against a database of the first release, upgraded with the scripts in the order of the README
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class DatabaseUpgradeIT {
+
+    // In the order the README lists them; psql meta-commands such as \set are skipped like comments
+    private static final String[] UPGRADE_SCRIPTS = {
+            "db/migrate-to-dictionary-keys.sql",
+            "db/add-stock-order-keys.sql",
+            "db/add-transaction-timestamps.sql",
+            "db/add-idempotency-claim-leases.sql",
+            "db/require-prices.sql"
+    };
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcClient jdbcClient;
+
+    @BeforeAll
+    static void createUpgradedDatabase() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    CREATE TABLE transactions (
+                        id serial PRIMARY KEY NOT NULL,
+                        item_name varchar(255) NOT NULL,
+                        quantity numeric NOT NULL,
+                        unit varchar(255) NOT NULL,
+                        price_per_unit numeric(10,2),
+                        warehouse_name varchar(255) NOT NULL
+                    );
+
+                    CREATE TABLE stocks (
+                        id serial PRIMARY KEY NOT NULL,
+                        item_name varchar(255) NOT NULL,
+                        quantity numeric NOT NULL,
+                        unit varchar(255) NOT NULL,
+                        price_per_unit numeric(10,2),
+                        warehouse_name varchar(255) NOT NULL,
+                        CONSTRAINT unique_item_warehouse_price UNIQUE (item_name, warehouse_name, price_per_unit)
+                    );
+
+                    INSERT INTO transactions (item_name, quantity, unit, price_per_unit, warehouse_name)
+                    VALUES ('Apple', 10, 'KG', 2.50, 'LIDL'), ('Pear', 7, 'KG', 1.00, 'LIDL'), ('Plum', 3, 'KG', NULL, 'LIDL');
+                    INSERT INTO stocks (item_name, quantity, unit, price_per_unit, warehouse_name)
+                    VALUES ('Apple', 10, 'KG', 2.50, 'LIDL'), ('Pear', 7, 'KG', 1.00, 'LIDL'), ('Plum', 3, 'KG', NULL, 'LIDL');
+                    """);
+            for (String script : UPGRADE_SCRIPTS) {
+                ScriptUtils.executeSqlScript(connection, new EncodedResource(new ClassPathResource(script)), false, false,
+                        new String[] {"--", "\\"}, ScriptUtils.DEFAULT_STATEMENT_SEPARATOR,
+                        ScriptUtils.DEFAULT_BLOCK_COMMENT_START_DELIMITER, ScriptUtils.DEFAULT_BLOCK_COMMENT_END_DELIMITER);
+            }
+        }
+    }
+
+    @Test
+    void testUpgradedDatabaseServesAndCorrectsExistingEntries() throws Exception {
+        assertEquals(1000, getStock("Apple", "2.50").quantity());
+
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": 1, "itemName": "Apple", "quantity": 4, "unit": "KG",
+                                  "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isAccepted());
+
+        assertEquals(400, getStock("Apple", "2.50").quantity());
+        assertEquals(700, getStock("Pear", "1.00").quantity());
+    }
+
+    @Test
+    void testEntriesWithoutPriceAreRemoved() {
+        assertEquals(List.of("Apple", "Pear"), jdbcClient.sql("SELECT DISTINCT item_name FROM transaction_entries ORDER BY item_name")
+                .query(String.class)
+                .list());
+        assertEquals(List.of("Apple", "Pear"), jdbcClient.sql("SELECT item_name FROM stock_entries ORDER BY item_name")
+                .query(String.class)
+                .list());
+    }
+
+    private StockEntry getStock(String itemName, String pricePerUnit) throws Exception {
+        String json = mockMvc.perform(get("/api/v1/stocks/entry")
+                        .param("itemName", itemName)
+                        .param("warehouseName", "LIDL")
+                        .param("pricePerUnit", pricePerUnit))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, StockEntry.class);
+    }
+}
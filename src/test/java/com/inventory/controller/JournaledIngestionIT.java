@@ -0,0 +1,190 @@
+package com.inventory.controller;
+
+import com.inventory.journal.JournalDrainer;
+import com.inventory.journal.TransactionJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "inventory.journal.enabled=true",
+        "inventory.journal.segment-size=1MB"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class JournaledIngestionIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) throws Exception {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        Path directory = Files.createTempDirectory("journal");
+        registry.add("inventory.journal.directory", directory::toString);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private TransactionJournal transactionJournal;
+    @Autowired
+    private JournalDrainer journalDrainer;
+
+    @AfterEach
+    public void cleanUp() throws Exception {
+        awaitDrained();
+        jdbcClient.sql("TRUNCATE transactions, stocks, journal_dead_letters RESTART IDENTITY CASCADE").update();
+    }
+
+    @Test
+    void testAcceptedBatchesAreAppliedInTheBackground() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            postTransactions("""
+                    [
+                      {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                      {"itemName": "Pear", "quantity": 3, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "BILLA"}
+                    ]
+                    """);
+        }
+
+        awaitDrained();
+        assertEquals(10, jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single());
+        assertEquals(50.0, jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Apple'")
+                .query(Double.class)
+                .single());
+        assertEquals(transactionJournal.getDurablePosition(), jdbcClient
+                .sql("SELECT position FROM journal_offsets WHERE journal_name = 'local'")
+                .query(Long.class)
+                .single());
+    }
+
+    @Test
+    void testRefusedRecordIsSkippedWithoutBlockingOthers() throws Exception {
+        postTransactions("""
+                [{"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                """);
+        postTransactions("""
+                [{"itemName": "%s", "quantity": 6, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                """.formatted("X".repeat(300)));
+        postTransactions("""
+                [{"itemName": "Pear", "quantity": 3, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "BILLA"}]
+                """);
+
+        awaitDrained();
+        assertEquals(List.of("Apple", "Pear"), jdbcClient.sql("SELECT item_name FROM transaction_entries ORDER BY id")
+                .query(String.class)
+                .list());
+        assertEquals(1, jdbcClient.sql("SELECT count(*) FROM journal_dead_letters").query(Long.class).single());
+    }
+
+    @Test
+    void testRecordFailingToApplyIsSkippedWithoutStoppingTheDrainer() throws Exception {
+        postTransactions("""
+                [{"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                """);
+        // Overflows the stock quantity on every attempt
+        postTransactions("""
+                [
+                  {"itemName": "Salt", "quantity": 90000000000000000, "unit": "KG", "pricePerUnit": 1, "warehouseName": "LIDL"},
+                  {"itemName": "Salt", "quantity": 90000000000000000, "unit": "KG", "pricePerUnit": 1, "warehouseName": "LIDL"}
+                ]
+                """);
+        postTransactions("""
+                [{"itemName": "Pear", "quantity": 3, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "BILLA"}]
+                """);
+
+        awaitDrained();
+        assertEquals(List.of("Apple", "Pear"), jdbcClient.sql("SELECT item_name FROM transaction_entries ORDER BY id")
+                .query(String.class)
+                .list());
+        assertTrue(journalDrainer.isRunning());
+        assertEquals(Status.UP, journalDrainer.health().getStatus());
+    }
+
+    @Test
+    void testDeadLetterIsReplayedOnceItsCauseIsFixed() throws Exception {
+        // Refused like a write into a missing ledger partition, until the constraint is dropped
+        jdbcClient.sql("ALTER TABLE transactions ADD CONSTRAINT small_quantities CHECK (quantity < 100)").update();
+        try {
+            postTransactions("""
+                    [{"itemName": "Apple", "quantity": 500, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                    """);
+            postTransactions("""
+                    [{"itemName": "Pear", "quantity": 3, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "BILLA"}]
+                    """);
+            awaitDrained();
+        } finally {
+            jdbcClient.sql("ALTER TABLE transactions DROP CONSTRAINT small_quantities").update();
+        }
+
+        mockMvc.perform(get("/api/v1/journal/dead-letters"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].transactions[0].itemName").value("Apple"))
+                .andExpect(jsonPath("$[0].transactions[0].quantity").value(500.0))
+                .andExpect(jsonPath("$[0].reason").value(containsString("small_quantities")));
+
+        mockMvc.perform(post("/api/v1/journal/dead-letters/replay"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.replayed").value(1))
+                .andExpect(jsonPath("$.failed").value(0));
+
+        assertEquals(List.of("Pear", "Apple"), jdbcClient.sql("SELECT item_name FROM transaction_entries ORDER BY id")
+                .query(String.class)
+                .list());
+        assertEquals(500.0, jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Apple'")
+                .query(Double.class)
+                .single());
+        assertEquals(0, jdbcClient.sql("SELECT count(*) FROM journal_dead_letters").query(Long.class).single());
+    }
+
+    private void postTransactions(String payload) throws Exception {
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(payload))
+                .andExpect(status().isAccepted());
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (journalDrainer.getPosition() < transactionJournal.getDurablePosition()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Journal was not drained in time");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.inventory.controller;
+
+import com.inventory.service.LedgerPartitionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Partitions of three ids, so a handful of transactions spans several of them
+@SpringBootTest(properties = {
+        "inventory.ledger.partition-size=3",
+        "inventory.ledger.partitions-ahead=2"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class LedgerPartitionIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private LedgerPartitionService ledgerPartitionService;
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcClient.sql("TRUNCATE transactions, stocks RESTART IDENTITY CASCADE").update();
+        // Back to the partitions created at startup
+        getPartitions().stream()
+                .filter(partition -> !List.of("transactions_0", "transactions_3", "transactions_6").contains(partition))
+                .forEach(partition -> jdbcClient.sql("DROP TABLE " + partition).update());
+    }
+
+    @Test
+    void testPartitionsAreCreatedAheadOfTheLedger() throws Exception {
+        assertThat(getPartitions()).containsExactly("transactions_0", "transactions_3", "transactions_6");
+
+        // Ids 1 to 7, and the correction of id 1 as id 8
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 1, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 1, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 1, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 1, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 1, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 1, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}
+                                ]
+                                """))
+                .andExpect(status().isCreated());
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": 1, "itemName": "Apple", "quantity": 4, "unit": "KG",
+                                  "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isAccepted());
+
+        Map<String, Long> entriesPerPartition = jdbcClient.sql("SELECT tableoid::regclass::text AS partition FROM transactions")
+                .query(String.class)
+                .list()
+                .stream()
+                .collect(Collectors.groupingBy(partition -> partition, Collectors.counting()));
+        assertThat(entriesPerPartition).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "transactions_0", 2L, "transactions_3", 3L, "transactions_6", 3L));
+        BigDecimal quantity = jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Apple'")
+                .query(BigDecimal.class)
+                .single();
+        assertThat(quantity).isEqualByComparingTo("10");
+
+        assertThat(ledgerPartitionService.ensurePartitions()).isEqualTo(2);
+        assertThat(getPartitions()).endsWith("transactions_9", "transactions_12");
+        assertThat(ledgerPartitionService.ensurePartitions()).isZero();
+    }
+
+    @Test
+    void testImportCreatesThePartitionsItNeeds() throws Exception {
+        StringBuilder csv = new StringBuilder("item_name,quantity,unit,price_per_unit,warehouse_name\n");
+        for (int line = 0; line < 12; line++) {
+            csv.append("Apple,1,KG,2.5,LIDL\n");
+        }
+        mockMvc.perform(post("/api/v1/transactions/import")
+                        .contentType("text/csv")
+                        .content(csv.toString()))
+                .andExpect(status().isCreated());
+
+        assertThat(jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single()).isEqualTo(12L);
+        assertThat(getPartitions()).containsSequence("transactions_9", "transactions_12", "transactions_15");
+    }
+
+    @Test
+    void testLookupsOnlyReadTheirPartitions() {
+        assertThat(explain("SELECT * FROM transaction_entries WHERE id = 4"))
+                .contains("transactions_3")
+                .doesNotContain("transactions_0", "transactions_6");
+        assertThat(explain("SELECT * FROM transactions WHERE id > 2 AND id <= 5"))
+                .contains("transactions_0", "transactions_3")
+                .doesNotContain("transactions_6");
+    }
+
+    private List<String> getPartitions() {
+        return jdbcClient.sql("""
+                        SELECT c.relname
+                        FROM pg_inherits i
+                        JOIN pg_class c ON c.oid = i.inhrelid
+                        WHERE i.inhparent = 'transactions'::regclass
+                        ORDER BY substring(c.relname FROM '\\d+$')::bigint
+                        """)
+                .query(String.class)
+                .list();
+    }
+
+    private String explain(String query) {
+        return String.join("\n", jdbcClient.sql("EXPLAIN (COSTS OFF) " + query)
+                .query(String.class)
+                .list());
+    }
+}
@@ -0,0 +1,79 @@
+package com.inventory.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@Testcontainers
+public class MetricsIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcClient jdbcClient;
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcClient.sql("TRUNCATE transactions, stocks RESTART IDENTITY CASCADE").update();
+    }
+
+    @Test
+    void testPrometheusEndpointExposesApplicationMetrics() throws Exception {
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Pear", "quantity": 5, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "LIDL"}
+                                ]
+                                """))
+                .andExpect(status().isCreated());
+
+        String metrics = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(metrics)
+                .contains("inventory_transactions_total{type=\"created\"} 2.0")
+                .contains("inventory_transactions_batch_size_count{operation=\"create\"} 1")
+                .contains("inventory_repository_seconds_bucket{class=\"com.inventory.repository.TransactionRepository\","
+                        + "exception=\"none\",method=\"createTransactions\"")
+                .contains("hikaricp_connections_acquire_seconds_bucket")
+                .contains("http_server_requests_seconds_bucket")
+                .contains("cache_gets_total{cache=\"stocks\"");
+    }
+}
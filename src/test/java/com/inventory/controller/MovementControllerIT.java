@@ -0,0 +1,199 @@
+package com.inventory.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.dto.MovementSeries;
+import com.inventory.model.MovementBucket;
+import com.inventory.service.MovementRollupService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class MovementControllerIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private MovementRollupService movementRollupService;
+
+    @BeforeEach
+    public void init() throws Exception {
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Pear", "quantity": 5, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "LIDL"}
+                                ]
+                                """))
+                .andExpect(status().isCreated());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcClient.sql("TRUNCATE transactions, stocks, movement_rollups_hourly, movement_rollups_daily, rollup_watermarks RESTART IDENTITY CASCADE")
+                .update();
+    }
+
+    @Test
+    void testRollsUpTransactionsAndCorrections() throws Exception {
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": 1, "itemName": "Apple", "quantity": 8, "unit": "KG",
+                                  "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isAccepted());
+
+        await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> {
+            movementRollupService.rollUp();
+            assertThat(total(getMovements("day", null))).isEqualTo(new MovementBucket(null, 2300, 1000, 6000, 2500, 3));
+        });
+        // The corrected Apple entry moves out again in the hour of the correction
+        assertThat(total(getMovements("hour", "Apple"))).isEqualTo(new MovementBucket(null, 1800, 1000, 4500, 2500, 2));
+    }
+
+    @Test
+    void testWatermarkWaitsForOpenTransactions() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            Instant createdAt;
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("""
+                         INSERT INTO transactions (item_id, quantity, unit, price_per_unit, warehouse_id)
+                         SELECT i.id, 20, 'KG', 2.5, w.id
+                         FROM items i, warehouses w
+                         WHERE i.name = 'Apple' AND w.name = 'LIDL'
+                         RETURNING created_at
+                         """)) {
+                resultSet.next();
+                createdAt = resultSet.getObject(1, OffsetDateTime.class).toInstant();
+            }
+
+            Thread.sleep(1500);
+            movementRollupService.rollUp();
+            MovementSeries series = getMovements("day", null);
+            assertThat(series.rolledUpTo()).isBeforeOrEqualTo(createdAt);
+            assertThat(total(series).transactions()).isEqualTo(2);
+
+            connection.commit();
+        }
+
+        await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> {
+            movementRollupService.rollUp();
+            assertThat(total(getMovements("day", null)).quantityIn()).isEqualTo(3500);
+        });
+    }
+
+    @Test
+    void testWatermarkPassesOpenReadOnlyTransactions() throws Exception {
+        // A long export holds a read-only snapshot open, but cannot add entries to the ledger
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM stock_entries")) {
+                resultSet.next();
+            }
+
+            mockMvc.perform(post("/api/v1/transactions")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    [{"itemName": "Apple", "quantity": 20, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                    """))
+                    .andExpect(status().isCreated());
+
+            await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> {
+                movementRollupService.rollUp();
+                assertThat(total(getMovements("day", null)).quantityIn()).isEqualTo(3500);
+            });
+
+            connection.rollback();
+        }
+    }
+
+    @Test
+    void testUnsupportedGranularityIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/movements")
+                        .param("warehouseName", "LIDL")
+                        .param("granularity", "week")
+                        .param("from", "2026-01-01T00:00:00Z")
+                        .param("to", "2027-01-01T00:00:00Z"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private MovementSeries getMovements(String granularity, String itemName) throws Exception {
+        Instant now = Instant.now();
+        String json = mockMvc.perform(get("/api/v1/movements")
+                        .param("warehouseName", "LIDL")
+                        .param("itemName", itemName)
+                        .param("granularity", granularity)
+                        .param("from", now.minus(1, ChronoUnit.DAYS).toString())
+                        .param("to", now.plus(1, ChronoUnit.DAYS).toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, MovementSeries.class);
+    }
+
+    // Sums the buckets, which may be split by a full hour or midnight passing during the test
+    private static MovementBucket total(MovementSeries series) {
+        return series.buckets().stream()
+                .map(bucket -> new MovementBucket(null, bucket.quantityIn(), bucket.quantityOut(), bucket.valueIn(),
+                        bucket.valueOut(), bucket.transactions()))
+                .reduce(new MovementBucket(null, 0, 0, 0, 0, 0), (a, b) -> new MovementBucket(null,
+                        a.quantityIn() + b.quantityIn(), a.quantityOut() + b.quantityOut(),
+                        a.valueIn() + b.valueIn(), a.valueOut() + b.valueOut(),
+                        a.transactions() + b.transactions()));
+    }
+}
@@ -0,0 +1,179 @@
+package com.inventory.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.config.ReadReplicas;
+import com.inventory.dto.StockPage;
+import com.inventory.model.StockEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against a primary and a replica in streaming replication. Replay on the replica is paused to tell which of
+ * the two served a read.
+ */
+@SpringBootTest(properties = {
+        "inventory.datasource.replicas.enabled=true",
+        "inventory.datasource.replicas.max-lag=1s",
+        // Checked by the tests themselves after the first check at startup
+        "inventory.datasource.replicas.lag-check-interval=1h"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class ReadReplicaIT {
+
+    private static final Network network = Network.newNetwork();
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test")
+            .withNetwork(network)
+            .withNetworkAliases("primary")
+            .withCopyToContainer(
+                    Transferable.of("echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\""),
+                    "/docker-entrypoint-initdb.d/replication.sh");
+
+    @Container
+    static GenericContainer<?> replica = new GenericContainer<>("postgres:16")
+            .withNetwork(network)
+            .withEnv("PGPASSWORD", "test")
+            .withExposedPorts(5432)
+            .withCommand("bash", "-c", "gosu postgres bash -c '"
+                    + "until pg_basebackup -h primary -U test -D /tmp/replica -R -X stream; do sleep 1; done"
+                    + " && chmod 700 /tmp/replica && exec postgres -D /tmp/replica'")
+            .dependsOn(postgres)
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("inventory.datasource.replicas.urls", ReadReplicaIT::replicaJdbcUrl);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private ReadReplicas readReplicas;
+
+    private final JdbcClient replicaJdbcClient = JdbcClient.create(new DriverManagerDataSource(replicaJdbcUrl(), "test", "test"));
+
+    @AfterEach
+    public void cleanUp() {
+        replicaJdbcClient.sql("SELECT pg_wal_replay_resume()").query().listOfRows();
+        jdbcClient.sql("TRUNCATE transactions, stocks RESTART IDENTITY CASCADE").update();
+        awaitReplicaCaughtUp();
+    }
+
+    @Test
+    void testServesStockPagesFromReplicaUntilItFallsBehind() throws Exception {
+        postTransaction("Apple");
+        awaitReplicaCaughtUp();
+        readReplicas.checkLag();
+
+        pauseReplay();
+        postTransaction("Banana");
+
+        assertThat(stockItemNames()).containsExactly("Apple");
+
+        // The replica has not replayed anything since the Apple transaction, so it is now more than max-lag behind
+        Thread.sleep(1500);
+        readReplicas.checkLag();
+
+        assertThat(stockItemNames()).containsExactly("Apple", "Banana");
+        assertThat(readReplicas.getFallbackCount()).isPositive();
+    }
+
+    @Test
+    void testCorrectionReadsOriginalFromPrimary() throws Exception {
+        postTransaction("Apple");
+        awaitReplicaCaughtUp();
+        readReplicas.checkLag();
+
+        pauseReplay();
+        postTransaction("Banana");
+        long bananaId = jdbcClient.sql("SELECT id FROM transaction_entries WHERE item_name = 'Banana'")
+                .query(Long.class)
+                .single();
+
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": %d, "itemName": "Cherry", "quantity": 10, "unit": "KG",
+                                  "pricePerUnit": 4.0, "warehouseName": "LIDL"}]
+                                """.formatted(bananaId)))
+                .andExpect(status().isAccepted());
+
+        assertThat(jdbcClient.sql("SELECT item_name FROM stock_entries ORDER BY item_name").query(String.class).list())
+                .containsExactly("Apple", "Cherry");
+    }
+
+    private static String replicaJdbcUrl() {
+        return "jdbc:postgresql://%s:%d/inventory_test".formatted(replica.getHost(), replica.getMappedPort(5432));
+    }
+
+    private void postTransaction(String itemName) throws Exception {
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"itemName": "%s", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                """.formatted(itemName)))
+                .andExpect(status().isCreated());
+    }
+
+    private List<String> stockItemNames() throws Exception {
+        String json = mockMvc.perform(get("/api/v1/stocks"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, StockPage.class).items().stream()
+                .map(StockEntry::itemName)
+                .toList();
+    }
+
+    private void pauseReplay() {
+        replicaJdbcClient.sql("SELECT pg_wal_replay_pause()").query().listOfRows();
+    }
+
+    private void awaitReplicaCaughtUp() {
+        String primaryLsn = jdbcClient.sql("SELECT CAST(pg_current_wal_lsn() AS text)").query(String.class).single();
+        await().atMost(Duration.ofSeconds(30)).until(() -> replicaJdbcClient
+                .sql("SELECT pg_last_wal_replay_lsn() >= CAST(:lsn AS pg_lsn)")
+                .param("lsn", primaryLsn)
+                .query(Boolean.class)
+                .single());
+    }
+}
@@ -0,0 +1,200 @@
+package com.inventory.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.model.StockEntry;
+import com.inventory.model.StockSnapshot;
+import com.inventory.model.Unit;
+import com.inventory.repository.StockRepository;
+import com.inventory.service.StockSnapshotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Snapshots are only taken by the tests themselves
+@SpringBootTest(properties = {"inventory.snapshots.initial-delay=1h", "inventory.snapshots.keep=2"})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class StockAsOfIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private StockRepository stockRepository;
+    @Autowired
+    private StockSnapshotService stockSnapshotService;
+
+    @BeforeEach
+    public void init() throws Exception {
+        // Ids 1 to 3
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 5, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "LIDL"},
+                                  {"itemName": "Pear", "quantity": 7, "unit": "KG", "pricePerUnit": 1.0, "warehouseName": "LIDL"}
+                                ]
+                                """))
+                .andExpect(status().isCreated());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcClient.sql("TRUNCATE transactions, stocks, stock_snapshots RESTART IDENTITY CASCADE").update();
+    }
+
+    @Test
+    void testReplaysLedgerFromNearestSnapshot() throws Exception {
+        Optional<StockSnapshot> snapshot = stockSnapshotService.takeSnapshot();
+        assertThat(snapshot).map(StockSnapshot::ledgerPosition).contains(3L);
+        writeCorrectionsAfterSnapshot();
+
+        assertThat(getAppleInLidlAsOf(1)).containsExactly(apple(1000, 250));
+        assertThat(getAppleInLidlAsOf(3)).containsExactly(apple(1000, 250), apple(500, 300));
+        assertThat(getAppleInLidlAsOf(4)).containsExactly(apple(400, 250), apple(500, 300));
+        assertThat(getAppleInLidlAsOf(6)).containsExactly(apple(1000, 250));
+
+        // Only the entries after the snapshot are replayed on top of it
+        jdbcClient.sql("UPDATE stock_snapshot_entries SET quantity = quantity + 100").update();
+        assertThat(getAppleInLidlAsOf(4)).containsExactly(apple(10400, 250), apple(10500, 300));
+    }
+
+    @Test
+    void testSnapshotsBuildOnEachOther() throws Exception {
+        stockSnapshotService.takeSnapshot();
+        writeCorrectionsAfterSnapshot();
+
+        Optional<StockSnapshot> snapshot = stockSnapshotService.takeSnapshot();
+        assertThat(snapshot).map(StockSnapshot::ledgerPosition).contains(6L);
+        assertThat(stockSnapshotService.takeSnapshot()).isEmpty();
+
+        List<StockEntry> snapshotEntries = jdbcClient.sql("""
+                        SELECT NULL AS id, i.name AS item_name, e.quantity, e.unit, e.price_per_unit, w.name AS warehouse_name
+                        FROM stock_snapshot_entries e
+                        JOIN items i ON i.id = e.item_id
+                        JOIN warehouses w ON w.id = e.warehouse_id
+                        WHERE e.snapshot_id = :snapshot_id
+                        """)
+                .param("snapshot_id", snapshot.get().id())
+                .query(StockRepository.STOCK_ENTRY_ROW_MAPPER)
+                .list()
+                .stream()
+                .map(entry -> new StockEntry(null, entry.itemName(), entry.quantity(), entry.unit(), entry.pricePerUnit(), entry.warehouseName()))
+                .toList();
+        List<StockEntry> stocks = stockRepository.getAll().stream()
+                .map(entry -> new StockEntry(null, entry.itemName(), entry.quantity(), entry.unit(), entry.pricePerUnit(), entry.warehouseName()))
+                .toList();
+        assertThat(snapshotEntries).containsExactlyInAnyOrderElementsOf(stocks);
+    }
+
+    @Test
+    void testOnlyLatestSnapshotsAreKept() throws Exception {
+        stockSnapshotService.takeSnapshot();
+        writeCorrectionsAfterSnapshot();
+        stockSnapshotService.takeSnapshot();
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"itemName": "Apple", "quantity": 1, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isCreated());
+        stockSnapshotService.takeSnapshot();
+
+        List<Long> positions = jdbcClient.sql("SELECT ledger_position FROM stock_snapshots ORDER BY ledger_position")
+                .query(Long.class)
+                .list();
+        assertThat(positions).containsExactly(6L, 7L);
+        assertThat(jdbcClient.sql("SELECT count(DISTINCT snapshot_id) FROM stock_snapshot_entries").query(Long.class).single())
+                .isEqualTo(2L);
+        // Before the oldest kept snapshot the ledger is replayed from the start
+        assertThat(getAppleInLidlAsOf(3)).containsExactly(apple(1000, 250), apple(500, 300));
+        assertThat(getAppleInLidlAsOf(7)).containsExactly(apple(1100, 250));
+    }
+
+    @Test
+    void testUnknownTransactionIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/v1/stocks/as-of")
+                        .param("transactionId", "42")
+                        .param("itemName", "Apple")
+                        .param("warehouseName", "LIDL"))
+                .andExpect(status().isNotFound());
+    }
+
+    // Ids 4 to 6: Apple at 2.5 corrected down to 4, 6 more added, Apple at 3.0 moved to KAUFLAND
+    private void writeCorrectionsAfterSnapshot() throws Exception {
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": 1, "itemName": "Apple", "quantity": 4, "unit": "KG",
+                                  "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"itemName": "Apple", "quantity": 6, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isCreated());
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": 2, "itemName": "Apple", "quantity": 5, "unit": "KG",
+                                  "pricePerUnit": 3.0, "warehouseName": "KAUFLAND"}]
+                                """))
+                .andExpect(status().isAccepted());
+    }
+
+    private List<StockEntry> getAppleInLidlAsOf(long transactionId) throws Exception {
+        String json = mockMvc.perform(get("/api/v1/stocks/as-of")
+                        .param("transactionId", String.valueOf(transactionId))
+                        .param("itemName", "Apple")
+                        .param("warehouseName", "LIDL"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(json, new TypeReference<>() {});
+    }
+
+    private static StockEntry apple(long quantity, long pricePerUnit) {
+        return new StockEntry(null, "Apple", quantity, Unit.KG, pricePerUnit, "LIDL");
+    }
+}
@@ -0,0 +1,289 @@
+package com.inventory.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.cache.StockCache;
+import com.inventory.dto.StockPage;
+import com.inventory.exception.ErrorResponse;
+import com.inventory.model.StockEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(StockController.class)
+@AutoConfigureMockMvc
+@Testcontainers
+public class StockControllerIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private StockCache stockCache;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void init() {
+        jdbcClient.sql("""
+                INSERT INTO items (name) VALUES ('Watermelon'), ('Potato'), ('Pepper'), ('Tomato') ON CONFLICT DO NOTHING;
+                INSERT INTO warehouses (name) VALUES ('LIDL'), ('KAUFLAND') ON CONFLICT DO NOTHING;
+                
+                INSERT INTO stocks (item_id, quantity, unit, price_per_unit, warehouse_id)
+                SELECT i.id, v.quantity, v.unit, v.price_per_unit, w.id
+                FROM (VALUES
+                    (1, 'Watermelon', 50, 'KG', 1.20, 'LIDL'),
+                    (2, 'Potato', 200, 'KG', 0.60, 'LIDL'),
+                    (3, 'Potato', 20, 'KG', 0.75, 'LIDL'),
+                    (4, 'Pepper', 15, 'KG', 2.10, 'LIDL'),
+                    (5, 'Tomato', 100, 'KG', 0.90, 'KAUFLAND'),
+                    (6, 'Potato', 80, 'LB', 0.60, 'KAUFLAND')
+                ) AS v(n, item_name, quantity, unit, price_per_unit, warehouse_name)
+                JOIN items i ON i.name = v.item_name
+                JOIN warehouses w ON w.name = v.warehouse_name
+                ORDER BY v.n;
+                """)
+                .update();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcClient.sql("TRUNCATE transactions, stocks RESTART IDENTITY CASCADE").update();
+        stockCache.clear();
+    }
+
+    @Test
+    void testGetStocksWalksAllPages() throws Exception {
+        List<StockEntry> entries = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            StockPage page = getPage("/api/v1/stocks?size=4" + (cursor == null ? "" : "&cursor=" + cursor));
+            entries.addAll(page.items());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(2, pages);
+        assertEquals(6, entries.size());
+        assertEquals("KAUFLAND", entries.get(0).warehouseName());
+        assertEquals("Potato", entries.get(0).itemName());
+        assertEquals("Tomato", entries.get(1).itemName());
+        assertEquals("Pepper", entries.get(2).itemName());
+        assertEquals(60, entries.get(3).pricePerUnit());
+        assertEquals(75, entries.get(4).pricePerUnit());
+        assertEquals("Watermelon", entries.get(5).itemName());
+    }
+
+    @Test
+    void testGetStocksFiltersByWarehouseAndItemPrefix() throws Exception {
+        StockPage page = getPage("/api/v1/stocks?warehouseName=LIDL&itemPrefix=P");
+
+        assertNull(page.nextCursor());
+        assertEquals(3, page.items().size());
+        page.items().forEach(entry -> {
+            assertEquals("LIDL", entry.warehouseName());
+            assertNotNull(entry.id());
+        });
+        assertEquals("Pepper", page.items().get(0).itemName());
+        assertEquals("Potato", page.items().get(1).itemName());
+    }
+
+    @Test
+    void testGetStocksFollowsRenamedItem() throws Exception {
+        renameWatermelon();
+
+        StockPage page = getPage("/api/v1/stocks?warehouseName=LIDL&itemPrefix=W");
+
+        assertEquals(1, page.items().size());
+        assertEquals("Water, \"melon\"", page.items().get(0).itemName());
+    }
+
+    @Test
+    void testGetStocksReadsPagesFromTheIndex() {
+        String plan = transactionTemplate.execute(status -> {
+            // Six rows are cheaper to sort than to read by index, so the plan is taken as for a large table
+            jdbcClient.sql("SET LOCAL enable_seqscan = off").update();
+            return String.join("\n", jdbcClient.sql("""
+                            EXPLAIN (COSTS OFF)
+                            SELECT * FROM stocks
+                            WHERE warehouse_order_key = 'LIDL' AND item_order_key LIKE 'P%'
+                              AND (warehouse_order_key, item_order_key, price_per_unit) > ('LIDL', 'Pepper', 2.10)
+                            ORDER BY warehouse_order_key, item_order_key, price_per_unit
+                            LIMIT 20
+                            """)
+                    .query(String.class)
+                    .list());
+        });
+
+        assertTrue(plan.contains("idx_stocks_page"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    @Test
+    void testGetStocksRejectsInvalidCursor() throws Exception {
+        String response = mockMvc.perform(get("/api/v1/stocks?cursor=bm90LWEtY3Vyc29y"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        ErrorResponse error = objectMapper.readValue(response, ErrorResponse.class);
+        assertEquals("Invalid Cursor!", error.error());
+    }
+
+    @Test
+    void testGetStockReflectsNewTransactions() throws Exception {
+        String url = "/api/v1/stocks/entry?itemName=Potato&warehouseName=LIDL&pricePerUnit=0.60";
+        assertEquals(20000, getStock(url).quantity());
+
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"itemName":"Potato","quantity":10,"unit":"KG","pricePerUnit":0.60,"warehouseName":"LIDL"}]
+                                """))
+                .andExpect(status().isCreated());
+
+        assertEquals(21000, getStock(url).quantity());
+    }
+
+    @Test
+    void testGetStockNotFound() throws Exception {
+        mockMvc.perform(get("/api/v1/stocks/entry?itemName=Potato&warehouseName=LIDL&pricePerUnit=9.99"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testGetStockRejectsPriceWithMoreThanTwoDecimals() throws Exception {
+        String response = mockMvc.perform(get("/api/v1/stocks/entry?itemName=Potato&warehouseName=LIDL&pricePerUnit=1.005"))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        ErrorResponse error = objectMapper.readValue(response, ErrorResponse.class);
+        assertEquals("Invalid Price!", error.error());
+    }
+
+    @Test
+    void testExportStocksAsNdjson() throws Exception {
+        renameWatermelon();
+
+        String response = export("ndjson", "application/x-ndjson");
+
+        List<StockEntry> entries = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            entries.add(objectMapper.readValue(line, StockEntry.class));
+        }
+        assertEquals(6, entries.size());
+        assertEquals(1, entries.stream().filter(e -> e.itemName().equals("Water, \"melon\"")).count());
+    }
+
+    @Test
+    void testExportStocksAsCsv() throws Exception {
+        renameWatermelon();
+
+        String response = export("csv", "text/csv");
+
+        List<String> lines = List.of(response.split("\n"));
+        assertEquals(7, lines.size());
+        assertEquals("id,item_name,quantity,unit,price_per_unit,warehouse_name", lines.get(0));
+        assertTrue(lines.contains("1,\"Water, \"\"melon\"\"\",50.0,KG,1.2,LIDL"));
+    }
+
+    @Test
+    void testExportStocksRejectsUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/v1/stocks/export?format=xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private String export(String format, String contentType) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/stocks/export?format=" + format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(contentType))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+    }
+
+    private StockEntry getStock(String url) throws Exception {
+        String response = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+        return objectMapper.readValue(response, StockEntry.class);
+    }
+
+    private StockPage getPage(String url) throws Exception {
+        String response = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+        return objectMapper.readValue(response, StockPage.class);
+    }
+
+    private void renameWatermelon() {
+        jdbcClient.sql("""
+                INSERT INTO items (name) VALUES ('Water, "melon"') ON CONFLICT DO NOTHING;
+                
+                UPDATE stocks
+                SET item_id = (SELECT id FROM items WHERE name = 'Water, "melon"')
+                WHERE item_id = (SELECT id FROM items WHERE name = 'Watermelon');
+                """)
+                .update();
+    }
+}
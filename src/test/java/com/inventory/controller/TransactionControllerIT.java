@@ -1,10 +1,14 @@
 package com.inventory.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.dto.ImportResult;
+import com.inventory.dto.IngestionChunkResult;
 import com.inventory.exception.ErrorResponse;
+import com.inventory.model.FixedPoint;
 import com.inventory.model.StockEntry;
 import com.inventory.model.Transaction;
 import com.inventory.model.Unit;
+import com.inventory.repository.StockRepository;
 import com.inventory.repository.TransactionRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -27,16 +31,19 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -73,16 +80,22 @@ public class TransactionControllerIT {
     @BeforeEach
     public void init() {
         jdbcClient.sql("""
-                INSERT INTO transactions (item_name, quantity, unit, price_per_unit, warehouse_name) VALUES
-                ('Watermelon', 50, 'KG', 1.20, 'LIDL'),
-                ('Potato', 200, 'KG', 0.60, 'LIDL'),
-                ('Tomato_ERR', 100, 'KG', 0.90, 'KAUFLAND');
+                INSERT INTO items (name) VALUES ('Watermelon'), ('Potato'), ('Tomato_ERR') ON CONFLICT DO NOTHING;
+                INSERT INTO warehouses (name) VALUES ('LIDL'), ('KAUFLAND') ON CONFLICT DO NOTHING;
                 
+                INSERT INTO transactions (item_id, quantity, unit, price_per_unit, warehouse_id)
+                SELECT i.id, v.quantity, v.unit, v.price_per_unit, w.id
+                FROM (VALUES
+                    (1, 'Watermelon', 50, 'KG', 1.20, 'LIDL'),
+                    (2, 'Potato', 200, 'KG', 0.60, 'LIDL'),
+                    (3, 'Tomato_ERR', 100, 'KG', 0.90, 'KAUFLAND')
+                ) AS v(n, item_name, quantity, unit, price_per_unit, warehouse_name)
+                JOIN items i ON i.name = v.item_name
+                JOIN warehouses w ON w.name = v.warehouse_name
+                ORDER BY v.n;
                 
-                INSERT INTO stocks (item_name, quantity, unit, price_per_unit, warehouse_name) VALUES
-                ('Watermelon', 50, 'KG', 1.20, 'LIDL'),
-                ('Potato', 200, 'KG', 0.60, 'LIDL'),
-                ('Tomato_ERR', 100, 'KG', 0.90, 'KAUFLAND');
+                INSERT INTO stocks (item_id, quantity, unit, price_per_unit, warehouse_id)
+                SELECT item_id, quantity, unit, price_per_unit, warehouse_id FROM transactions ORDER BY id;
                 """)
                 .update();
     }
@@ -90,7 +103,7 @@ public class TransactionControllerIT {
     @AfterEach
     public void cleanUp() {
         log.info("\n\n      DELETE....\n\n");
-        jdbcClient.sql("TRUNCATE transactions, stocks RESTART IDENTITY CASCADE").update();
+        jdbcClient.sql("TRUNCATE transactions, stocks, idempotency_keys RESTART IDENTITY CASCADE").update();
     }
 
     @Test
@@ -106,13 +119,13 @@ public class TransactionControllerIT {
                 .andExpect(status().isCreated());
 
         // Check if the new transactions are created correctly
-        List<Transaction> updatedTransactions = jdbcClient.sql("SELECT * FROM transactions")
+        List<Transaction> updatedTransactions = jdbcClient.sql("SELECT * FROM transaction_entries")
                 .query((rs, rowNum) -> new Transaction(
                         rs.getLong("id"),
                         rs.getString("item_name"),
-                        rs.getDouble("quantity"),
+                        FixedPoint.of(rs.getBigDecimal("quantity")),
                         Unit.fromValue(rs.getString("unit")),
-                        rs.getDouble("price_per_unit"),
+                        FixedPoint.of(rs.getBigDecimal("price_per_unit")),
                         rs.getString("warehouse_name")
                 ))
                 .list();
@@ -124,17 +137,17 @@ public class TransactionControllerIT {
         Transaction t1 = tomatoes.get(0);
         assertNotNull(t1);
         assertEquals("Tomatoes", t1.itemName());
-        assertEquals(10, t1.quantity());
+        assertEquals(1000, t1.quantity());
         assertEquals(Unit.KG, t1.unit());
-        assertEquals(2.60, t1.pricePerUnit());
+        assertEquals(260, t1.pricePerUnit());
         assertEquals("LIDL", t1.warehouseName());
 
         Transaction t2 = tomatoes.get(1);
         assertNotNull(t2);
         assertEquals("Tomatoes", t2.itemName());
-        assertEquals(120, t2.quantity());
+        assertEquals(12000, t2.quantity());
         assertEquals(Unit.KG, t2.unit());
-        assertEquals(2.60, t2.pricePerUnit());
+        assertEquals(260, t2.pricePerUnit());
         assertEquals("LIDL", t2.warehouseName());
 
         List<Transaction> cheese = updatedTransactions.stream()
@@ -144,19 +157,19 @@ public class TransactionControllerIT {
         Transaction t3 = cheese.get(0);
         assertNotNull(t3);
         assertEquals("Cheese", t3.itemName());
-        assertEquals(100, t3.quantity());
+        assertEquals(10000, t3.quantity());
         assertEquals(Unit.KG, t3.unit());
-        assertEquals(22, t3.pricePerUnit());
+        assertEquals(2200, t3.pricePerUnit());
         assertEquals("KAUFLAND", t3.warehouseName());
 
         // Check if the stocks table is updated correctly
-        Map<String, StockEntry> stockMap = jdbcClient.sql("SELECT * FROM stocks")
+        Map<String, StockEntry> stockMap = jdbcClient.sql("SELECT * FROM stock_entries")
                 .query((rs, rowNum) -> new StockEntry(
                         rs.getLong("id"),
                         rs.getString("item_name"),
-                        rs.getDouble("quantity"),
+                        FixedPoint.of(rs.getBigDecimal("quantity")),
                         Unit.fromValue(rs.getString("unit")),
-                        rs.getDouble("price_per_unit"),
+                        FixedPoint.of(rs.getBigDecimal("price_per_unit")),
                         rs.getString("warehouse_name")
                 ))
                 .list()
@@ -168,20 +181,293 @@ public class TransactionControllerIT {
 
         StockEntry s1 = stockMap.get("Tomatoes");
         assertNotNull(s1);
-        assertEquals(130, s1.quantity());
+        assertEquals(13000, s1.quantity());
         assertEquals(Unit.KG, s1.unit());
-        assertEquals(2.60, s1.pricePerUnit());
+        assertEquals(260, s1.pricePerUnit());
         assertEquals("LIDL", s1.warehouseName());
 
         StockEntry s2 = stockMap.get("Cheese");
         assertNotNull(s2);
-        assertEquals(100, s2.quantity());
+        assertEquals(10000, s2.quantity());
         assertEquals(Unit.KG, s2.unit());
-        assertEquals(22, s2.pricePerUnit());
+        assertEquals(2200, s2.pricePerUnit());
         assertEquals("KAUFLAND", s2.warehouseName());
 
     }
 
+    @Test
+    void testAddTransactionsIsAtomic() throws Exception {
+        String payload = """
+        [
+            {
+                "itemName": "Tomatoes",
+                "quantity": 10,
+                "unit": "KG",
+                "pricePerUnit": 2.60,
+                "warehouseName": "LIDL"
+            },
+            {
+                "itemName": "%s",
+                "quantity": 5,
+                "unit": "KG",
+                "pricePerUnit": 1.00,
+                "warehouseName": "LIDL"
+            }
+        ]
+        """.formatted("X".repeat(300));
+
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(payload))
+                .andExpect(status().isInternalServerError());
+
+        Long transactionCount = jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single();
+        assertEquals(3, transactionCount);
+        Long tomatoStocks = jdbcClient.sql("SELECT count(*) FROM stock_entries WHERE item_name = 'Tomatoes'")
+                .query(Long.class)
+                .single();
+        assertEquals(0, tomatoStocks);
+    }
+
+    @Test
+    void testIngestNdjsonTransactions() throws Exception {
+        String payload = """
+                {"itemName":"Tomatoes","quantity":10,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                {"itemName":"Cheese","quantity":100,"unit":"KG","pricePerUnit":22,"warehouseName":"KAUFLAND"}
+                {"itemName":"Tomatoes","quantity":120,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                {"itemName":"Cheese","quantity":-1,"unit":"KG","pricePerUnit":22,"warehouseName":"KAUFLAND"}
+                {"itemName":"Tomatoes","quantity":5,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                """;
+
+        String response = mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(payload))
+                .andExpect(status().isMultiStatus())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        List<IngestionChunkResult> results = List.of(objectMapper.readValue(response, IngestionChunkResult[].class));
+        assertEquals(3, results.size());
+        assertEquals(IngestionChunkResult.Status.COMMITTED, results.get(0).status());
+        assertEquals(IngestionChunkResult.Status.REJECTED, results.get(1).status());
+        assertEquals(3, results.get(1).firstLine());
+        assertEquals(4, results.get(1).lastLine());
+        assertEquals(1, results.get(1).errors().size());
+        assertEquals(IngestionChunkResult.Status.COMMITTED, results.get(2).status());
+
+        Double tomatoes = jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Tomatoes'")
+                .query(Double.class)
+                .single();
+        assertEquals(15.0, tomatoes);
+        Long cheeseTransactions = jdbcClient.sql("SELECT count(*) FROM transaction_entries WHERE item_name = 'Cheese'")
+                .query(Long.class)
+                .single();
+        assertEquals(1, cheeseTransactions);
+    }
+
+    @Test
+    void testIngestNdjsonReportsPhysicalLines() throws Exception {
+        String payload = """
+                {"itemName":"Tomatoes","quantity":10,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+
+                {"itemName":"Cheese",
+                 "quantity":-1,"unit":"KG","pricePerUnit":22,"warehouseName":"KAUFLAND"}
+                {"itemName":"Tomatoes","quantity":5,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                """;
+
+        String response = mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(payload))
+                .andExpect(status().isMultiStatus())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        List<IngestionChunkResult> results = List.of(objectMapper.readValue(response, IngestionChunkResult[].class));
+        assertEquals(2, results.size());
+        assertEquals(IngestionChunkResult.Status.REJECTED, results.get(0).status());
+        assertEquals(1, results.get(0).firstLine());
+        assertEquals(4, results.get(0).lastLine());
+        assertTrue(results.get(0).errors().getFirst().startsWith("line 3: quantity"));
+        assertEquals(IngestionChunkResult.Status.COMMITTED, results.get(1).status());
+        assertEquals(5, results.get(1).firstLine());
+        assertEquals(5, results.get(1).lastLine());
+    }
+
+    @Test
+    void testIngestNdjsonStopsAtMalformedRecord() throws Exception {
+        String payload = """
+                {"itemName":"Tomatoes","quantity":10,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                {"itemName":"Cheese","quantity":
+                """;
+
+        String response = mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(payload))
+                .andExpect(status().isMultiStatus())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        List<IngestionChunkResult> results = List.of(objectMapper.readValue(response, IngestionChunkResult[].class));
+        assertEquals(2, results.size());
+        assertEquals(IngestionChunkResult.Status.COMMITTED, results.get(0).status());
+        assertEquals(IngestionChunkResult.Status.REJECTED, results.get(1).status());
+        assertEquals(2, results.get(1).firstLine());
+    }
+
+    @Test
+    void testIngestNdjsonStopsAtFailedChunk() throws Exception {
+        // The second chunk overflows the stock quantity before anything reaches the database
+        String payload = """
+                {"itemName":"Tomatoes","quantity":10,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                {"itemName":"Cheese","quantity":100,"unit":"KG","pricePerUnit":22,"warehouseName":"KAUFLAND"}
+                {"itemName":"Salt","quantity":90000000000000000,"unit":"KG","pricePerUnit":1,"warehouseName":"LIDL"}
+                {"itemName":"Salt","quantity":90000000000000000,"unit":"KG","pricePerUnit":1,"warehouseName":"LIDL"}
+                {"itemName":"Tomatoes","quantity":5,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                """;
+
+        String response = mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(payload))
+                .andExpect(status().isMultiStatus())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        List<IngestionChunkResult> results = List.of(objectMapper.readValue(response, IngestionChunkResult[].class));
+        assertEquals(2, results.size());
+        assertEquals(IngestionChunkResult.Status.COMMITTED, results.get(0).status());
+        assertEquals(IngestionChunkResult.Status.FAILED, results.get(1).status());
+        assertEquals(3, results.get(1).firstLine());
+        assertEquals(4, results.get(1).lastLine());
+
+        Double tomatoes = jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Tomatoes'")
+                .query(Double.class)
+                .single();
+        assertEquals(10.0, tomatoes);
+        Long saltTransactions = jdbcClient.sql("SELECT count(*) FROM transaction_entries WHERE item_name = 'Salt'")
+                .query(Long.class)
+                .single();
+        assertEquals(0, saltTransactions);
+    }
+
+    @Test
+    void testIngestNdjsonRejectsIdempotencyKey() throws Exception {
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .header("Idempotency-Key", "scan-42")
+                        .content("""
+                                {"itemName":"Tomatoes","quantity":10,"unit":"KG","pricePerUnit":2.60,"warehouseName":"LIDL"}
+                                """))
+                .andExpect(status().isBadRequest());
+
+        Long transactions = jdbcClient.sql("SELECT count(*) FROM transaction_entries WHERE item_name = 'Tomatoes'")
+                .query(Long.class)
+                .single();
+        assertEquals(0, transactions);
+    }
+
+    @Test
+    void testImportCsvTransactions() throws Exception {
+        String payload = """
+                item_name,quantity,unit,price_per_unit,warehouse_name
+                Tomatoes,10,KG,2.60,LIDL
+                "Cheese, aged",100,KG,22,KAUFLAND
+                Tomatoes,120.5,KG,2.6,LIDL
+                Potato,15,KG,0.60,LIDL
+                """;
+
+        String response = mockMvc.perform(post("/api/v1/transactions/import")
+                        .contentType("text/csv")
+                        .content(payload))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        ImportResult result = objectMapper.readValue(response, ImportResult.class);
+        assertEquals(4, result.transactions());
+        assertEquals(3, result.stocks());
+
+        Long transactionCount = jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single();
+        assertEquals(7, transactionCount);
+        Double tomatoes = jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Tomatoes'")
+                .query(Double.class)
+                .single();
+        assertEquals(130.5, tomatoes);
+        Double potatoes = jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Potato'")
+                .query(Double.class)
+                .single();
+        assertEquals(215.0, potatoes);
+        Double cheese = jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Cheese, aged'")
+                .query(Double.class)
+                .single();
+        assertEquals(100.0, cheese);
+    }
+
+    @Test
+    void testQuantityWithMoreThanTwoDecimalsIsRejected() throws Exception {
+        String response = mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"itemName": "Tomatoes", "quantity": 10.005, "unit": "KG", "pricePerUnit": 2.60, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        ErrorResponse error = objectMapper.readValue(response, ErrorResponse.class);
+        assertEquals("Malformed Request!", error.error());
+        assertEquals("quantity must have at most 2 decimals", error.message());
+
+        response = mockMvc.perform(post("/api/v1/transactions/import")
+                        .contentType("text/csv")
+                        .content("""
+                                item_name,quantity,unit,price_per_unit,warehouse_name
+                                Tomatoes,10.500,KG,2.60,LIDL
+                                Tomatoes,10.005,KG,2.60,LIDL
+                                """))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        assertEquals("Import rejected: line 3: quantity must have at most 2 decimals",
+                objectMapper.readValue(response, ErrorResponse.class).message());
+        assertEquals(0, jdbcClient.sql("SELECT count(*) FROM transaction_entries WHERE item_name = 'Tomatoes'")
+                .query(Long.class)
+                .single());
+    }
+
+    @Test
+    void testImportCsvRejectsInvalidLines() throws Exception {
+        String payload = """
+                item_name,quantity,unit,price_per_unit,warehouse_name
+                Tomatoes,10,KG,2.60,LIDL
+                Cheese,-100,KG,22,KAUFLAND
+                ,5,OZ,abc,LIDL
+                """;
+
+        String response = mockMvc.perform(post("/api/v1/transactions/import")
+                        .contentType("text/csv")
+                        .content(payload))
+                .andExpect(status().isBadRequest())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        ErrorResponse error = objectMapper.readValue(response, ErrorResponse.class);
+        assertEquals("Invalid Import!", error.error());
+        assertEquals("Import rejected: line 3: quantity must be greater than 0; "
+                + "line 4: itemName must not be empty, unit must be one of KG, LB, pricePerUnit must be a number",
+                error.message());
+        Long transactionCount = jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single();
+        assertEquals(3, transactionCount);
+    }
+
     @Test
     void testCreateCorrectionTransactions() throws Exception {
         String payload = Files.readString(
@@ -195,13 +481,13 @@ public class TransactionControllerIT {
                 .andExpect(status().isAccepted());
 
         // Check if the new transactions are created correctly
-        List<Transaction> updatedTransactions = jdbcClient.sql("SELECT * FROM transactions")
+        List<Transaction> updatedTransactions = jdbcClient.sql("SELECT * FROM transaction_entries")
                 .query((rs, rowNum) -> new Transaction(
                         rs.getLong("id"),
                         rs.getString("item_name"),
-                        rs.getDouble("quantity"),
+                        FixedPoint.of(rs.getBigDecimal("quantity")),
                         Unit.fromValue(rs.getString("unit")),
-                        rs.getDouble("price_per_unit"),
+                        FixedPoint.of(rs.getBigDecimal("price_per_unit")),
                         rs.getString("warehouse_name")
                 ))
                 .list();
@@ -212,35 +498,35 @@ public class TransactionControllerIT {
         Transaction t1 = transactionMap.get(4L);
         assertNotNull(t1);
         assertEquals("Watermelon", t1.itemName());
-        assertEquals(77, t1.quantity());
+        assertEquals(7700, t1.quantity());
         assertEquals(Unit.KG, t1.unit());
-        assertEquals(1.40, t1.pricePerUnit());
+        assertEquals(140, t1.pricePerUnit());
         assertEquals("LIDL", t1.warehouseName());
 
         Transaction t2 = transactionMap.get(5L);
         assertNotNull(t2);
         assertEquals("Potato", t2.itemName());
-        assertEquals(123, t2.quantity());
+        assertEquals(12300, t2.quantity());
         assertEquals(Unit.KG, t2.unit());
-        assertEquals(0.60, t2.pricePerUnit());
+        assertEquals(60, t2.pricePerUnit());
         assertEquals("KAUFLAND", t2.warehouseName());
 
         Transaction t3 = transactionMap.get(6L);
         assertNotNull(t3);
         assertEquals("Tomato", t3.itemName());
-        assertEquals(100, t3.quantity());
+        assertEquals(10000, t3.quantity());
         assertEquals(Unit.LB, t3.unit());
-        assertEquals(0.90, t3.pricePerUnit());
+        assertEquals(90, t3.pricePerUnit());
         assertEquals("KAUFLAND", t3.warehouseName());
 
         // Check if the stocks table is updated correctly
-        Map<Long, StockEntry> stockMap = jdbcClient.sql("SELECT * FROM stocks")
+        Map<Long, StockEntry> stockMap = jdbcClient.sql("SELECT * FROM stock_entries")
                 .query((rs, rowNum) -> new StockEntry(
                         rs.getLong("id"),
                         rs.getString("item_name"),
-                        rs.getDouble("quantity"),
+                        FixedPoint.of(rs.getBigDecimal("quantity")),
                         Unit.fromValue(rs.getString("unit")),
-                        rs.getDouble("price_per_unit"),
+                        FixedPoint.of(rs.getBigDecimal("price_per_unit")),
                         rs.getString("warehouse_name")
                 ))
                 .list()
@@ -253,39 +539,42 @@ public class TransactionControllerIT {
         StockEntry s1 = stockMap.get(1L);
         assertNotNull(s1);
         assertEquals("Watermelon", s1.itemName());
-        assertEquals(77.0, s1.quantity());
+        assertEquals(7700, s1.quantity());
         assertEquals(Unit.KG, s1.unit());
-        assertEquals(1.40, s1.pricePerUnit());
+        assertEquals(140, s1.pricePerUnit());
         assertEquals("LIDL", s1.warehouseName());
 
         StockEntry s2 = stockMap.get(2L);
         assertNotNull(s2);
         assertEquals("Potato", s2.itemName());
-        assertEquals(123.0, s2.quantity());
+        assertEquals(12300, s2.quantity());
         assertEquals(Unit.KG, s2.unit());
-        assertEquals(0.60, s2.pricePerUnit());
+        assertEquals(60, s2.pricePerUnit());
         assertEquals("KAUFLAND", s2.warehouseName());
 
         StockEntry s3 = stockMap.get(3L);
         assertNotNull(s3);
         assertEquals("Tomato", s3.itemName());
-        assertEquals(100.0, s3.quantity());
+        assertEquals(10000, s3.quantity());
         assertEquals(Unit.LB, s3.unit());
-        assertEquals(0.90, s3.pricePerUnit());
+        assertEquals(90, s3.pricePerUnit());
         assertEquals("KAUFLAND", s3.warehouseName());
     }
 
     @Test
     void testCorrectionTransactionCreatedNewStock() throws Exception {
         jdbcClient.sql("""
-                INSERT INTO transactions (item_name, quantity, unit, price_per_unit, warehouse_name) VALUES
-                ('Watermelon', 33, 'KG', 1.20, 'LIDL');
+                INSERT INTO transactions (item_id, quantity, unit, price_per_unit, warehouse_id)
+                SELECT i.id, 33, 'KG', 1.20, w.id
+                FROM items i, warehouses w
+                WHERE i.name = 'Watermelon' AND w.name = 'LIDL';
                 
                 UPDATE stocks
                 SET quantity = 83
-                WHERE item_name = 'Watermelon'
-                  AND price_per_unit = 1.20
-                  AND warehouse_name = 'LIDL';
+                FROM items i, warehouses w
+                WHERE stocks.item_id = i.id AND i.name = 'Watermelon'
+                  AND stocks.price_per_unit = 1.20
+                  AND stocks.warehouse_id = w.id AND w.name = 'LIDL';
                 """)
                 .update();
 
@@ -302,13 +591,13 @@ public class TransactionControllerIT {
 
 
         // Check if the stocks table is updated correctly
-        List<StockEntry> stockMap = jdbcClient.sql("SELECT * FROM stocks")
+        List<StockEntry> stockMap = jdbcClient.sql("SELECT * FROM stock_entries ORDER BY price_per_unit DESC")
                 .query((rs, rowNum) -> new StockEntry(
                         rs.getLong("id"),
                         rs.getString("item_name"),
-                        rs.getDouble("quantity"),
+                        FixedPoint.of(rs.getBigDecimal("quantity")),
                         Unit.fromValue(rs.getString("unit")),
-                        rs.getDouble("price_per_unit"),
+                        FixedPoint.of(rs.getBigDecimal("price_per_unit")),
                         rs.getString("warehouse_name")
                 ))
                 .list()
@@ -322,20 +611,82 @@ public class TransactionControllerIT {
         StockEntry stock1 = stockMap.get(0);
         assertNotNull(stock1);
         assertEquals("Watermelon", stock1.itemName());
-        assertEquals(20.40, stock1.quantity());
+        assertEquals(2040, stock1.quantity());
         assertEquals(Unit.KG, stock1.unit());
-        assertEquals(2.30, stock1.pricePerUnit());
+        assertEquals(230, stock1.pricePerUnit());
         assertEquals("LIDL", stock1.warehouseName());
 
         StockEntry stock2 = stockMap.get(1);
         assertNotNull(stock2);
         assertEquals("Watermelon", stock2.itemName());
-        assertEquals(50, stock2.quantity());
+        assertEquals(5000, stock2.quantity());
         assertEquals(Unit.KG, stock2.unit());
-        assertEquals(1.20, stock2.pricePerUnit());
+        assertEquals(120, stock2.pricePerUnit());
         assertEquals("LIDL", stock2.warehouseName());
     }
 
+    @Test
+    void testCorrectionIntoExistingStockMergesRows() throws Exception {
+        String payload = """
+        [
+            {
+                "originalTransactionId": 1,
+                "itemName": "Potato",
+                "quantity": 50,
+                "unit": "KG",
+                "pricePerUnit": 0.60,
+                "warehouseName": "LIDL"
+            }
+        ]
+        """;
+
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(payload))
+                .andExpect(status().isAccepted());
+
+        List<StockEntry> stocks = jdbcClient.sql("SELECT * FROM stock_entries ORDER BY id")
+                .query(StockRepository.STOCK_ENTRY_ROW_MAPPER)
+                .list();
+
+        assertEquals(2, stocks.size());
+        assertEquals("Potato", stocks.get(0).itemName());
+        assertEquals(25000, stocks.get(0).quantity());
+        assertEquals("Tomato_ERR", stocks.get(1).itemName());
+    }
+
+    @Test
+    void testCorrectionsSwappingStockKeys() throws Exception {
+        // Watermelon's row ends up with Potato's key and Potato's row with Watermelon's, by way of Tomato_ERR's key
+        String payload = """
+        [
+            {"originalTransactionId": 3, "itemName": "Plum", "quantity": 100, "unit": "KG", "pricePerUnit": 0.90, "warehouseName": "KAUFLAND"},
+            {"originalTransactionId": 2, "itemName": "Tomato_ERR", "quantity": 100, "unit": "KG", "pricePerUnit": 0.90, "warehouseName": "KAUFLAND"},
+            {"originalTransactionId": 1, "itemName": "Potato", "quantity": 200, "unit": "KG", "pricePerUnit": 0.60, "warehouseName": "LIDL"},
+            {"originalTransactionId": 3, "itemName": "Watermelon", "quantity": 50, "unit": "KG", "pricePerUnit": 1.20, "warehouseName": "LIDL"}
+        ]
+        """;
+
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(payload))
+                .andExpect(status().isAccepted());
+
+        Map<String, StockEntry> stocks = jdbcClient.sql("SELECT * FROM stock_entries")
+                .query(StockRepository.STOCK_ENTRY_ROW_MAPPER)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(StockEntry::itemName, Function.identity()));
+
+        assertEquals(Set.of("Watermelon", "Potato", "Plum"), stocks.keySet());
+        assertEquals(5000, stocks.get("Watermelon").quantity());
+        assertEquals(120, stocks.get("Watermelon").pricePerUnit());
+        assertEquals(20000, stocks.get("Potato").quantity());
+        assertEquals(60, stocks.get("Potato").pricePerUnit());
+        assertEquals(10000, stocks.get("Plum").quantity());
+        assertEquals("KAUFLAND", stocks.get("Plum").warehouseName());
+    }
+
     @Test
     void testTransactionNotFoundExceptionHandling() throws Exception {
         String payload = """
@@ -367,7 +718,7 @@ public class TransactionControllerIT {
 
     @Test
     void testStockNotFoundExceptionHandling() throws Exception {
-        jdbcClient.sql("DELETE FROM stocks WHERE item_name = 'Watermelon'").update();
+        jdbcClient.sql("DELETE FROM stocks USING items WHERE stocks.item_id = items.id AND items.name = 'Watermelon'").update();
 
         String payload = """
         [
@@ -395,4 +746,54 @@ public class TransactionControllerIT {
         assertEquals("Stock Not Found!", error.error());
         assertEquals("Stock [Watermelon, LIDL, 1.2] was not found!", error.message());
     }
+
+    @Test
+    void testRetryWithIdempotencyKeyIsReplayed() throws Exception {
+        String payload = """
+        [
+            {"itemName": "Watermelon", "quantity": 5, "unit": "KG", "pricePerUnit": 1.20, "warehouseName": "LIDL"}
+        ]
+        """;
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            mockMvc.perform(post("/api/v1/transactions")
+                            .header("Idempotency-Key", "scanner-7-0001")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(payload))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string("Idempotent-Replayed", attempt == 0 ? null : "true"));
+        }
+
+        assertEquals(4, jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single());
+        assertEquals(55.0, jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Watermelon'")
+                .query(Double.class)
+                .single());
+    }
+
+    @Test
+    void testIdempotencyKeyReusedForDifferentRequest() throws Exception {
+        mockMvc.perform(post("/api/v1/transactions")
+                        .header("Idempotency-Key", "scanner-7-0002")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"itemName": "Potato", "quantity": 5, "unit": "KG", "pricePerUnit": 0.60, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isCreated());
+
+        String response = mockMvc.perform(patch("/api/v1/transactions")
+                        .header("Idempotency-Key", "scanner-7-0002")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": 2, "itemName": "Potato", "quantity": 150, "unit": "KG", "pricePerUnit": 0.60, "warehouseName": "LIDL"}]
+                                """))
+                .andExpect(status().isUnprocessableEntity())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        assertEquals("Idempotency Key Reused!", objectMapper.readValue(response, ErrorResponse.class).error());
+        assertEquals(205.0, jdbcClient.sql("SELECT quantity FROM stock_entries WHERE item_name = 'Potato'")
+                .query(Double.class)
+                .single());
+    }
 }
@@ -0,0 +1,143 @@
+package com.inventory.controller;
+
+import com.inventory.service.ValuationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.json.JsonCompareMode;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class ValuationControllerIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private ValuationService valuationService;
+
+    @BeforeEach
+    public void init() throws Exception {
+        mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [
+                                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                                  {"itemName": "Pear", "quantity": 5, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "LIDL"},
+                                  {"itemName": "Apple", "quantity": 4, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "KAUFLAND"}
+                                ]
+                                """))
+                .andExpect(status().isCreated());
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcClient.sql("ALTER TABLE stocks ENABLE TRIGGER stocks_valuation_delta").update();
+        jdbcClient.sql("TRUNCATE transactions, stocks RESTART IDENTITY CASCADE").update();
+    }
+
+    @Test
+    void testValuesWarehousesAndItemsBeforeAndAfterFolding() throws Exception {
+        assertWarehouseValues();
+
+        valuationService.foldDeltas();
+        assertEquals(0, jdbcClient.sql("SELECT count(*) FROM stock_valuation_deltas").query(Integer.class).single());
+
+        assertWarehouseValues();
+        mockMvc.perform(get("/api/v1/valuations/item").param("itemName", "Apple"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {"name": "Apple", "value": 35.0}
+                        """, JsonCompareMode.STRICT));
+    }
+
+    @Test
+    void testCorrectionMovesValueBetweenWarehouses() throws Exception {
+        valuationService.foldDeltas();
+
+        mockMvc.perform(patch("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"originalTransactionId": 2, "itemName": "Pear", "quantity": 6, "unit": "KG",
+                                  "pricePerUnit": 3.0, "warehouseName": "KAUFLAND"}]
+                                """))
+                .andExpect(status().isAccepted());
+
+        mockMvc.perform(get("/api/v1/valuations/warehouses"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'KAUFLAND')].value").value(contains(28.0)))
+                .andExpect(jsonPath("$[?(@.name == 'LIDL')].value").value(contains(25.0)));
+        mockMvc.perform(get("/api/v1/valuations/item").param("itemName", "Pear"))
+                .andExpect(content().json("""
+                        {"name": "Pear", "value": 18.0}
+                        """, JsonCompareMode.STRICT));
+        assertEquals(0, valuationService.verify());
+    }
+
+    @Test
+    void testVerifierReportsDrift() throws Exception {
+        assertEquals(0, valuationService.verify());
+
+        jdbcClient.sql("ALTER TABLE stocks DISABLE TRIGGER stocks_valuation_delta").update();
+        jdbcClient.sql("UPDATE stocks SET quantity = quantity + 1").update();
+
+        // LIDL and KAUFLAND, Apple and Pear
+        assertEquals(4, valuationService.verify());
+    }
+
+    @Test
+    void testUnknownWarehouseIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/v1/valuations/warehouse").param("warehouseName", "METRO"))
+                .andExpect(status().isNotFound());
+    }
+
+    private void assertWarehouseValues() throws Exception {
+        mockMvc.perform(get("/api/v1/valuations/warehouse").param("warehouseName", "LIDL"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {"name": "LIDL", "value": 40.0}
+                        """, JsonCompareMode.STRICT));
+        mockMvc.perform(get("/api/v1/valuations/warehouse").param("warehouseName", "KAUFLAND"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {"name": "KAUFLAND", "value": 10.0}
+                        """, JsonCompareMode.STRICT));
+    }
+}
@@ -0,0 +1,166 @@
+package com.inventory.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inventory.dto.TransactionLineResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "inventory.ingestion.warehouse-parallelism=4")
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+@Testcontainers
+public class WarehouseParallelIngestionIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private JdbcClient jdbcClient;
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcClient.sql("TRUNCATE transactions, stocks, idempotency_keys RESTART IDENTITY CASCADE").update();
+    }
+
+    @Test
+    void testAddTransactionsCommitsEveryWarehouse() throws Exception {
+        List<TransactionLineResult> results = postTransactions("""
+                [
+                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                  {"itemName": "Apple", "quantity": 4, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "KAUFLAND"},
+                  {"itemName": "Apple", "quantity": 6, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                  {"itemName": "Pear", "quantity": 3, "unit": "KG", "pricePerUnit": 3.0, "warehouseName": "BILLA"}
+                ]
+                """, 201);
+
+        assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i + 1, results.get(i).line());
+            assertEquals(TransactionLineResult.Status.COMMITTED, results.get(i).status());
+        }
+        assertEquals("KAUFLAND", results.get(1).warehouseName());
+        assertEquals(4, jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single());
+        assertEquals(16.0, jdbcClient.sql("SELECT quantity FROM stock_entries WHERE warehouse_name = 'LIDL'")
+                .query(Double.class)
+                .single());
+    }
+
+    @Test
+    void testAddTransactionsFailsOnlyTheFailingWarehouse() throws Exception {
+        List<TransactionLineResult> results = postTransactions("""
+                [
+                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                  {"itemName": "Apple", "quantity": 4, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "KAUFLAND"},
+                  {"itemName": "%s", "quantity": 6, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}
+                ]
+                """.formatted("X".repeat(300)), 207);
+
+        assertEquals(TransactionLineResult.Status.FAILED, results.get(0).status());
+        assertNotNull(results.get(0).error());
+        assertEquals(TransactionLineResult.Status.COMMITTED, results.get(1).status());
+        assertNull(results.get(1).error());
+        assertEquals(TransactionLineResult.Status.FAILED, results.get(2).status());
+        assertEquals(List.of("KAUFLAND"), jdbcClient.sql("SELECT warehouse_name FROM transaction_entries")
+                .query(String.class)
+                .list());
+    }
+
+    @Test
+    void testAddTransactionsFailsOnlyTheWarehouseThatThrows() throws Exception {
+        // The two BILLA lines overflow the stock quantity before anything reaches the database
+        List<TransactionLineResult> results = postTransactions("""
+                [
+                  {"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"},
+                  {"itemName": "Salt", "quantity": 90000000000000000, "unit": "KG", "pricePerUnit": 1, "warehouseName": "BILLA"},
+                  {"itemName": "Apple", "quantity": 4, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "KAUFLAND"},
+                  {"itemName": "Salt", "quantity": 90000000000000000, "unit": "KG", "pricePerUnit": 1, "warehouseName": "BILLA"}
+                ]
+                """, 207);
+
+        assertEquals(TransactionLineResult.Status.COMMITTED, results.get(0).status());
+        assertEquals(TransactionLineResult.Status.FAILED, results.get(1).status());
+        assertNotNull(results.get(1).error());
+        assertEquals(TransactionLineResult.Status.COMMITTED, results.get(2).status());
+        assertEquals(TransactionLineResult.Status.FAILED, results.get(3).status());
+        assertEquals(List.of("KAUFLAND", "LIDL"), jdbcClient.sql("SELECT warehouse_name FROM transaction_entries ORDER BY warehouse_name")
+                .query(String.class)
+                .list());
+    }
+
+    @Test
+    void testRetryTakesOverAbandonedIdempotencyKey() throws Exception {
+        String payload = """
+                [{"itemName": "Apple", "quantity": 10, "unit": "KG", "pricePerUnit": 2.5, "warehouseName": "LIDL"}]
+                """;
+        postWithIdempotencyKey(payload).andExpect(status().isCreated());
+
+        // The claim of a request that is still running is respected
+        jdbcClient.sql("UPDATE idempotency_keys SET status_code = NULL, claimed_until = now() + interval '1 hour'").update();
+        postWithIdempotencyKey(payload).andExpect(status().isConflict());
+
+        // As if the instance running it crashed after claiming the key
+        jdbcClient.sql("UPDATE idempotency_keys SET status_code = NULL, claimed_until = now() - interval '1 second'").update();
+        postWithIdempotencyKey(payload)
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        postWithIdempotencyKey(payload)
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+
+        assertEquals(2, jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single());
+    }
+
+    private ResultActions postWithIdempotencyKey(String payload) throws Exception {
+        return mockMvc.perform(post("/api/v1/transactions")
+                .header("Idempotency-Key", "scanner-3-0001")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payload));
+    }
+
+    private List<TransactionLineResult> postTransactions(String payload, int expectedStatus) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(payload))
+                .andExpect(status().is(expectedStatus))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, new TypeReference<>() {
+        });
+    }
+}
@@ -0,0 +1,102 @@
+package com.inventory.journal;
+
+import com.inventory.model.Transaction;
+import com.inventory.model.Unit;
+import com.inventory.repository.JournalOffsetRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionJournalTest {
+
+    private static final Transaction APPLE = new Transaction(null, "Apple", 1000, Unit.KG, 250, "Sofia");
+    private static final Transaction PEAR = new Transaction(null, "Pear", 300, Unit.LB, 180, "Varna");
+
+    @TempDir
+    Path directory;
+
+    private final JournalOffsetRepository journalOffsetRepository = mock(JournalOffsetRepository.class);
+
+    @BeforeEach
+    void setup() {
+        when(journalOffsetRepository.getPosition("test")).thenReturn(0L);
+    }
+
+    @Test
+    void testReadsAppendedRecordsAfterReopening() throws IOException {
+        TransactionJournal journal = open(DataSize.ofKilobytes(64));
+        long first = journal.append(List.of(APPLE, PEAR));
+        long second = journal.append(List.of(PEAR));
+        journal.destroy();
+
+        TransactionJournal reopened = open(DataSize.ofKilobytes(64));
+        JournalBatch batch = reopened.read(0, 100);
+
+        assertThat(batch.records()).isEqualTo(2);
+        assertThat(batch.transactions()).containsExactly(APPLE, PEAR, PEAR);
+        assertThat(batch.endPosition()).isEqualTo(second);
+        assertThat(reopened.read(0, 1).endPosition()).isEqualTo(first);
+        assertThat(reopened.read(second, 100).isEmpty()).isTrue();
+    }
+
+    @Test
+    void testRollsOverToNewSegmentsAndDeletesAppliedOnes() throws IOException {
+        TransactionJournal journal = open(DataSize.ofBytes(256));
+        long end = 0;
+        for (int i = 0; i < 10; i++) {
+            end = journal.append(List.of(APPLE));
+        }
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+
+        JournalBatch batch = journal.read(0, 100);
+        assertThat(batch.transactions()).hasSize(10);
+        assertThat(batch.endPosition()).isEqualTo(end);
+
+        journal.deleteBefore(end);
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    @Test
+    void testDiscardsTornRecordOnRecovery() throws IOException {
+        TransactionJournal journal = open(DataSize.ofKilobytes(64));
+        long end = journal.append(List.of(APPLE));
+        journal.append(List.of(PEAR));
+        journal.destroy();
+
+        // Corrupt the payload of the second record, as if the crash happened before its pages reached the disk
+        try (FileChannel channel = FileChannel.open(segmentFiles().getFirst(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), end + 12);
+        }
+
+        TransactionJournal reopened = open(DataSize.ofKilobytes(64));
+        assertThat(reopened.getDurablePosition()).isEqualTo(end);
+        assertThat(reopened.read(0, 100).transactions()).containsExactly(APPLE);
+
+        long appended = reopened.append(List.of(APPLE));
+        assertThat(reopened.read(end, 100).endPosition()).isEqualTo(appended);
+    }
+
+    private TransactionJournal open(DataSize segmentSize) throws IOException {
+        return new TransactionJournal(journalOffsetRepository, directory, "test", segmentSize);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.inventory.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FixedPointTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testParsesColumnText() {
+        assertThat(FixedPoint.parse("50")).isEqualTo(5000);
+        assertThat(FixedPoint.parse("1.2")).isEqualTo(120);
+        assertThat(FixedPoint.parse("0.75")).isEqualTo(75);
+        assertThat(FixedPoint.parse("-3.50")).isEqualTo(-350);
+        assertThat(FixedPoint.parse("2.605")).isEqualTo(261);
+        assertThat(FixedPoint.parse("-2.605")).isEqualTo(-261);
+        assertThat(FixedPoint.parse("2.6049")).isEqualTo(260);
+
+        assertThatThrownBy(() -> FixedPoint.parse("1e3")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> FixedPoint.parse(".")).isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> FixedPoint.parse("99999999999999999999")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void testRefusesDecimalsBeyondScale() {
+        assertThat(FixedPoint.of(new BigDecimal("12.5"))).isEqualTo(1250);
+        assertThat(FixedPoint.of(new BigDecimal("12.500"))).isEqualTo(1250);
+        assertThat(FixedPoint.isExact(new BigDecimal("0.005"))).isFalse();
+        assertThatThrownBy(() -> FixedPoint.of(new BigDecimal("0.005"))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> FixedPoint.of(new BigDecimal("-0.005"))).isInstanceOf(ArithmeticException.class);
+        assertThat(FixedPoint.toBigDecimal(1250)).isEqualByComparingTo("12.5");
+    }
+
+    @Test
+    void testFormatsWithAtLeastOneDecimal() {
+        assertThat(FixedPoint.toString(5000)).isEqualTo("50.0");
+        assertThat(FixedPoint.toString(120)).isEqualTo("1.2");
+        assertThat(FixedPoint.toString(75)).isEqualTo("0.75");
+        assertThat(FixedPoint.toString(5)).isEqualTo("0.05");
+        assertThat(FixedPoint.toString(-350)).isEqualTo("-3.5");
+    }
+
+    @Test
+    void testMapsToJsonDecimals() throws Exception {
+        StockEntry entry = new StockEntry(1L, "Apple", 1250, Unit.KG, 260, "Sofia");
+
+        String json = objectMapper.writeValueAsString(entry);
+
+        assertThat(json).contains("\"quantity\":12.5", "\"pricePerUnit\":2.6");
+        assertThat(objectMapper.readValue(json, StockEntry.class)).isEqualTo(entry);
+        assertThat(objectMapper.readValue("""
+                {"id":1,"itemName":"Apple","quantity":"0.120","unit":"KG","warehouseName":"Sofia"}
+                """, StockEntry.class))
+                .isEqualTo(new StockEntry(1L, "Apple", 12, Unit.KG, 0, "Sofia"));
+        assertThatThrownBy(() -> objectMapper.readValue("""
+                {"id":1,"itemName":"Apple","quantity":0.125,"unit":"KG","warehouseName":"Sofia"}
+                """, StockEntry.class))
+                .isInstanceOf(InvalidFormatException.class)
+                .hasMessageContaining("quantity must have at most 2 decimals");
+    }
+}
@@ -0,0 +1,188 @@
+package com.inventory.projection;
+
+import com.inventory.dto.TransactionPatchRequest;
+import com.inventory.dto.TransactionPostRequest;
+import com.inventory.model.StockEntry;
+import com.inventory.model.Unit;
+import com.inventory.repository.StockProjectionCheckpointRepository;
+import com.inventory.repository.StockRepository;
+import com.inventory.repository.TransactionRepository;
+import com.inventory.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "inventory.projection.enabled=true",
+        "inventory.projection.poll-interval=1h",
+        "inventory.projection.checkpoint-interval=1h"
+})
+@ActiveProfiles("test")
+@Testcontainers
+class StockProjectionTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    JdbcClient jdbcClient;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    StockRepository stockRepository;
+
+    @Autowired
+    StockProjectionCheckpointRepository checkpointRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    StockProjection stockProjection;
+
+    @BeforeEach
+    void setup() {
+        // Re-seeds the projection from the emptied tables
+        stockProjection.start();
+    }
+
+    @AfterEach
+    void cleanUpDatabase() {
+        jdbcClient.sql("TRUNCATE TABLE stocks, transactions, stock_projection_checkpoints RESTART IDENTITY CASCADE").update();
+    }
+
+    @Test
+    void testProjectionFollowsLedgerWrites() throws InterruptedException {
+        transactionService.addTransactions(List.of(
+                new TransactionPostRequest("Apple", 1000, Unit.KG, 250, "Sofia"),
+                new TransactionPostRequest("Apple", 550, Unit.KG, 250, "Sofia"),
+                new TransactionPostRequest("Pear", 300, Unit.LB, 400, "Varna")));
+        transactionService.correctTransaction(new TransactionPatchRequest(3L, "Pear", 300, Unit.LB, 400, "Plovdiv"));
+        transactionService.correctTransactions(List.of(
+                new TransactionPatchRequest(1L, "Apple", 100, Unit.KG, 250, "Sofia")));
+        awaitCaughtUp();
+
+        assertThat(stockProjection.get("Apple", "Sofia", 250)).map(StockEntry::quantity).contains(650L);
+        assertThat(stockProjection.get("Pear", "Varna", 400)).isEmpty();
+        assertThat(stockProjection.get("Pear", "Plovdiv", 400)).map(StockEntry::unit).contains(Unit.LB);
+        assertProjectionMatchesStocks(stockProjection);
+    }
+
+    @Test
+    void testRestartRestoresCheckpointAndReplaysTail() throws InterruptedException {
+        transactionService.addTransactions(List.of(
+                new TransactionPostRequest("Apple", 1000, Unit.KG, 250, "Sofia"),
+                new TransactionPostRequest("Pear", 300, Unit.LB, 400, "Varna")));
+        awaitCaughtUp();
+        stockProjection.checkpoint();
+        transactionService.addTransactions(List.of(
+                new TransactionPostRequest("Apple", 200, Unit.KG, 250, "Sofia"),
+                new TransactionPostRequest("Plum", 700, Unit.KG, 120, "Sofia")));
+        transactionService.correctTransaction(new TransactionPatchRequest(2L, "Pear", 200, Unit.LB, 400, "Varna"));
+        List<StockEntry> stocks = stockRepository.getAll();
+        // The restarted projection must not look at the stocks table
+        jdbcClient.sql("TRUNCATE TABLE stocks").update();
+
+        StockProjection restarted = newProjection();
+        restarted.start();
+
+        assertThat(restarted.getPosition()).isEqualTo(5L);
+        assertThat(restarted.size()).isEqualTo(stocks.size());
+        for (StockEntry stockEntry : stocks) {
+            assertThat(restarted.get(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit()))
+                    .map(StockEntry::quantity)
+                    .contains(stockEntry.quantity());
+        }
+    }
+
+    @Test
+    void testEntryCommittedOutOfIdOrderIsApplied() throws InterruptedException {
+        Long skippedId = jdbcClient.sql("SELECT nextval('transactions_id_seq')").query(Long.class).single();
+        transactionService.addTransactions(List.of(new TransactionPostRequest("Apple", 1000, Unit.KG, 250, "Sofia")));
+        awaitCaughtUp();
+        assertThat(stockProjection.getPosition()).isEqualTo(skippedId + 1);
+
+        jdbcClient.sql("""
+                        INSERT INTO transactions (id, item_id, quantity, unit, price_per_unit, warehouse_id)
+                        SELECT :id, i.id, 4, 'KG', 2.5, w.id
+                        FROM items i, warehouses w
+                        WHERE i.name = 'Apple' AND w.name = 'Sofia'
+                        """)
+                .param("id", skippedId)
+                .update();
+        stockProjection.catchUp();
+
+        assertThat(stockProjection.get("Apple", "Sofia", 250)).map(StockEntry::quantity).contains(1400L);
+    }
+
+    @Test
+    void testCheckpointIsPersisted() throws InterruptedException {
+        transactionService.addTransactions(List.of(new TransactionPostRequest("Apple", 1000, Unit.KG, 250, "Sofia")));
+        awaitCaughtUp();
+
+        stockProjection.checkpoint();
+
+        assertThat(checkpointRepository.getLatest()).hasValueSatisfying(checkpoint -> {
+            assertThat(checkpoint.ledgerPosition()).isEqualTo(1L);
+            assertThat(checkpoint.pendingTransactionIds()).isEmpty();
+        });
+        assertThat(jdbcClient.sql("SELECT count(*) FROM stock_projection_checkpoints").query(Long.class).single())
+                .isEqualTo(1L);
+    }
+
+    // Writes are applied by the projection's background thread once they commit
+    private void awaitCaughtUp() throws InterruptedException {
+        long ledgerPosition = transactionRepository.getLedgerPosition();
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (stockProjection.getPosition() < ledgerPosition && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private StockProjection newProjection() {
+        return new StockProjection(transactionRepository, stockRepository, checkpointRepository, transactionManager,
+                1000, Duration.ofMinutes(1));
+    }
+
+    private void assertProjectionMatchesStocks(StockProjection projection) {
+        List<StockEntry> stocks = stockRepository.getAll();
+        assertThat(projection.size()).isEqualTo(stocks.size());
+        for (StockEntry stockEntry : stocks) {
+            Optional<StockEntry> projected = projection.get(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit());
+            assertThat(projected).isPresent();
+            assertThat(projected.get().quantity()).isEqualTo(stockEntry.quantity());
+            assertThat(projected.get().unit()).isEqualTo(stockEntry.unit());
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.inventory.repository;
 
+import com.inventory.cache.StockCache;
 import com.inventory.model.StockEntry;
+import com.inventory.model.StockKey;
+import com.inventory.model.Transaction;
 import com.inventory.model.Unit;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
@@ -16,6 +20,9 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -27,8 +34,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class StockRepositoryTest {
     private final String itemName = "Strawberry";
     private final String warehouseName = "LIDL";
-    private final double price = 5.25;
-    private final double quantity = 50.0;
+    private final long price = 525;
+    private final long quantity = 5000;
     private final Unit unit = Unit.KG;
 
     @Container
@@ -47,11 +54,20 @@ public class StockRepositoryTest {
     @Autowired
     JdbcClient jdbcClient;
 
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    DictionaryRepository dictionaryRepository;
+
+    StockCache stockCache;
+
     StockRepository stockRepository;
 
     @BeforeEach
     void setup() {
-        stockRepository = new StockRepository(jdbcClient);
+        stockCache = new StockCache(100, Duration.ofMinutes(5));
+        stockRepository = new StockRepository(jdbcClient, namedParameterJdbcTemplate, stockCache, dictionaryRepository);
     }
 
     @AfterEach
@@ -91,10 +107,10 @@ public class StockRepositoryTest {
         stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
 
         StockEntry entry = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
-        stockRepository.updateStockQuantity(entry.id(), 100.0);
+        stockRepository.updateStockQuantity(entry.id(), 10000);
 
         StockEntry updated = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
-        assertThat(updated.quantity()).isEqualTo(100.0);
+        assertThat(updated.quantity()).isEqualTo(10000);
     }
 
     @Test
@@ -113,11 +129,11 @@ public class StockRepositoryTest {
         stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
         StockEntry entry = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
 
-        stockRepository.updateStockPricePerUnit(entry.id(), 6.99);
+        stockRepository.updateStockPricePerUnit(entry.id(), 699);
 
-        Optional<StockEntry> updated = stockRepository.getByCompositeKey(itemName, warehouseName, 6.99);
+        Optional<StockEntry> updated = stockRepository.getByCompositeKey(itemName, warehouseName, 699);
         assertThat(updated).isPresent();
-        assertThat(updated.get().pricePerUnit()).isEqualTo(6.99);
+        assertThat(updated.get().pricePerUnit()).isEqualTo(699);
     }
 
     @Test
@@ -134,11 +150,204 @@ public class StockRepositoryTest {
 
     @Test
     void testUpsertStock() {
-        stockRepository.upsertStock(itemName, 30.0, unit, price, warehouseName);
-        stockRepository.upsertStock(itemName, 20.0, unit, price, warehouseName);
+        stockRepository.upsertStock(itemName, 3000, unit, price, warehouseName);
+        stockRepository.upsertStock(itemName, 2000, unit, price, warehouseName);
 
         StockEntry result = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
-        assertThat(result.quantity()).isEqualTo(50.0);
+        assertThat(result.quantity()).isEqualTo(5000);
+    }
+
+    @Test
+    void testUpsertStocks() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+
+        stockRepository.upsertStocks(List.of(
+                new StockEntry(null, itemName, 3000, unit, price, warehouseName),
+                new StockEntry(null, "Blueberry", 1000, unit, price, warehouseName),
+                new StockEntry(null, itemName, 2000, unit, price, warehouseName)));
+
+        StockEntry strawberry = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
+        assertThat(strawberry.quantity()).isEqualTo(10000);
+        StockEntry blueberry = stockRepository.getByCompositeKey("Blueberry", warehouseName, price).orElseThrow();
+        assertThat(blueberry.quantity()).isEqualTo(1000);
+    }
+
+    @Test
+    void testGetByCompositeKeys() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+        stockRepository.createStock(itemName, quantity, unit, price, "KAUFLAND");
+        stockRepository.createStock("Blueberry", quantity, unit, 310, warehouseName);
+
+        List<StockEntry> result = stockRepository.getByCompositeKeys(List.of(
+                new StockKey(itemName, "KAUFLAND", price),
+                new StockKey("Blueberry", warehouseName, 310),
+                new StockKey("Blueberry", warehouseName, price)));
+
+        assertThat(result).extracting(StockEntry::warehouseName).containsExactlyInAnyOrder("KAUFLAND", warehouseName);
+        assertThat(result).extracting(StockEntry::itemName).containsExactlyInAnyOrder(itemName, "Blueberry");
+    }
+
+    @Test
+    void testLockByCompositeKeysFollowsCanonicalOrder() {
+        stockRepository.createStock("apple", quantity, unit, price, warehouseName);
+        stockRepository.createStock("Zucchini", quantity, unit, price, warehouseName);
+        stockRepository.createStock(itemName, quantity, unit, price, "KAUFLAND");
+        List<StockKey> keys = List.of(
+                new StockKey("apple", warehouseName, price),
+                new StockKey(itemName, "KAUFLAND", price),
+                new StockKey("Zucchini", warehouseName, price));
+
+        List<StockEntry> result = stockRepository.lockByCompositeKeys(keys);
+
+        assertThat(result)
+                .extracting(stockEntry -> new StockKey(stockEntry.itemName(), stockEntry.warehouseName(), stockEntry.pricePerUnit()))
+                .containsExactlyElementsOf(keys.stream().sorted(StockKey.CANONICAL_ORDER).toList())
+                .containsExactly(keys.get(1), keys.get(2), keys.get(0));
+    }
+
+    @Test
+    void testCreateUpdateAndDeleteStocks() {
+        stockRepository.createStocks(List.of(
+                new StockEntry(null, itemName, quantity, unit, price, warehouseName),
+                new StockEntry(null, "Blueberry", quantity, unit, price, warehouseName)));
+        StockEntry strawberry = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
+        StockEntry blueberry = stockRepository.getByCompositeKey("Blueberry", warehouseName, price).orElseThrow();
+
+        stockRepository.updateStocks(List.of(
+                new StockEntry(strawberry.id(), "Raspberry", 1250, Unit.LB, 610, "KAUFLAND")));
+        stockRepository.deleteStocks(List.of(blueberry.id()));
+
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, price)).isNotPresent();
+        assertThat(stockRepository.getByCompositeKey("Blueberry", warehouseName, price)).isNotPresent();
+        StockEntry raspberry = stockRepository.getByCompositeKey("Raspberry", "KAUFLAND", 610).orElseThrow();
+        assertThat(raspberry.id()).isEqualTo(strawberry.id());
+        assertThat(raspberry.quantity()).isEqualTo(1250);
+        assertThat(raspberry.unit()).isEqualTo(Unit.LB);
+    }
+
+    @Test
+    void testApplyCorrectionMovesEmptiedRow() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+        StockEntry entry = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
+
+        boolean applied = stockRepository.applyCorrection(
+                new Transaction(1L, itemName, quantity, unit, price, warehouseName),
+                new Transaction(null, itemName, 4000, Unit.LB, 610, "KAUFLAND"));
+
+        assertThat(applied).isTrue();
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, price)).isNotPresent();
+        StockEntry moved = stockRepository.getByCompositeKey(itemName, "KAUFLAND", 610).orElseThrow();
+        assertThat(moved.id()).isEqualTo(entry.id());
+        assertThat(moved.quantity()).isEqualTo(4000);
+        assertThat(moved.unit()).isEqualTo(Unit.LB);
+    }
+
+    @Test
+    void testApplyCorrectionSplitsRow() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+
+        stockRepository.applyCorrection(
+                new Transaction(1L, itemName, 2000, unit, price, warehouseName),
+                new Transaction(null, itemName, 1550, unit, 610, warehouseName));
+
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow().quantity())
+                .isEqualTo(3000);
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, 610).orElseThrow().quantity())
+                .isEqualTo(1550);
+    }
+
+    @Test
+    void testApplyCorrectionIntoExistingRow() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+        stockRepository.createStock(itemName, 1000, unit, 610, warehouseName);
+
+        stockRepository.applyCorrection(
+                new Transaction(1L, itemName, quantity, unit, price, warehouseName),
+                new Transaction(null, itemName, 4500, unit, 610, warehouseName));
+
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, price)).isNotPresent();
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, 610).orElseThrow().quantity())
+                .isEqualTo(5500);
+    }
+
+    @Test
+    void testApplyCorrectionOnSameKey() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+
+        stockRepository.applyCorrection(
+                new Transaction(1L, itemName, 2000, unit, price, warehouseName),
+                new Transaction(null, itemName, 2500, unit, price, warehouseName));
+
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow().quantity())
+                .isEqualTo(5500);
+    }
+
+    @Test
+    void testApplyCorrectionWithoutStock() {
+        boolean applied = stockRepository.applyCorrection(
+                new Transaction(1L, itemName, quantity, unit, price, warehouseName),
+                new Transaction(null, itemName, 4500, unit, 610, warehouseName));
+
+        assertThat(applied).isFalse();
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, 610)).isNotPresent();
+    }
+
+    @Test
+    void testGetPage() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+        stockRepository.createStock(itemName, quantity, unit, 610, warehouseName);
+        stockRepository.createStock("Blueberry", quantity, unit, price, warehouseName);
+        stockRepository.createStock("Blue_berry", quantity, unit, price, warehouseName);
+        stockRepository.createStock(itemName, quantity, unit, price, "KAUFLAND");
+
+        List<StockEntry> firstPage = stockRepository.getPage(warehouseName, null, null, 2);
+        List<StockEntry> secondPage = stockRepository.getPage(warehouseName, null,
+                new StockKey(firstPage.get(1).itemName(), warehouseName, firstPage.get(1).pricePerUnit()), 10);
+        List<StockEntry> prefixed = stockRepository.getPage(null, "Blue_", null, 10);
+
+        assertThat(firstPage).extracting(StockEntry::itemName).containsExactly("Blue_berry", "Blueberry");
+        assertThat(secondPage).extracting(StockEntry::pricePerUnit).containsExactly(price, 610L);
+        assertThat(prefixed).extracting(StockEntry::itemName).containsExactly("Blue_berry");
+    }
+
+    @Test
+    void testStreamAll() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+        stockRepository.createStock("Blueberry", quantity, unit, price, warehouseName);
+        List<StockEntry> streamed = new ArrayList<>();
+
+        stockRepository.streamAll(streamed::add);
+
+        assertThat(streamed).extracting(StockEntry::itemName).containsExactlyInAnyOrder(itemName, "Blueberry");
+    }
+
+    @Test
+    void testGetByCompositeKeyIsCached() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+
+        stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
+        StockEntry cached = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
+
+        assertThat(cached.quantity()).isEqualTo(quantity);
+        assertThat(stockCache.stats().hitCount()).isEqualTo(1);
+        assertThat(stockCache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testCachedStockIsEvictedOnWrites() {
+        stockRepository.createStock(itemName, quantity, unit, price, warehouseName);
+        StockEntry entry = stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow();
+
+        stockRepository.upsertStocks(List.of(new StockEntry(null, itemName, 500, unit, price, warehouseName)));
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, price).orElseThrow().quantity())
+                .isEqualTo(5500);
+
+        stockRepository.updateStockWarehouseName(entry.id(), "KAUFLAND");
+        assertThat(stockRepository.getByCompositeKey(itemName, warehouseName, price)).isNotPresent();
+        assertThat(stockRepository.getByCompositeKey(itemName, "KAUFLAND", price)).isPresent();
+
+        stockRepository.deleteStocks(List.of(entry.id()));
+        assertThat(stockRepository.getByCompositeKey(itemName, "KAUFLAND", price)).isNotPresent();
     }
 
     @Test
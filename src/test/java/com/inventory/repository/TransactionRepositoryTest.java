@@ -1,5 +1,6 @@
 package com.inventory.repository;
 
+import com.inventory.model.LedgerEntry;
 import com.inventory.model.Transaction;
 import com.inventory.model.Unit;
 import org.junit.jupiter.api.AfterEach;
@@ -16,6 +17,7 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.util.List;
 import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,11 +43,14 @@ class TransactionRepositoryTest {
     @Autowired
     JdbcClient jdbcClient;
 
+    @Autowired
+    DictionaryRepository dictionaryRepository;
+
     TransactionRepository transactionRepository;
 
     @BeforeEach
     void setup() {
-        transactionRepository = new TransactionRepository(jdbcClient);
+        transactionRepository = new TransactionRepository(jdbcClient, dictionaryRepository);
     }
 
     @AfterEach
@@ -56,17 +61,17 @@ class TransactionRepositoryTest {
     @Test
     void testCreateTransaction() {
         String itemName = "Onion";
-        double quantity = 50.0;
+        long quantity = 5000;
         Unit unit = Unit.KG;
-        double price = 3.2;
+        long price = 320;
         String warehouse = "LIDL";
 
         transactionRepository.createTransaction(itemName, quantity, unit, price, warehouse);
 
         Optional<Transaction> result = jdbcClient
-                .sql("SELECT * FROM transactions WHERE item_name = :item_name")
+                .sql("SELECT * FROM transaction_entries WHERE item_name = :item_name")
                 .param("item_name", itemName)
-                .query(Transaction.class)
+                .query(TransactionRepository.TRANSACTION_ROW_MAPPER)
                 .optional();
 
         assertThat(result).isPresent();
@@ -76,4 +81,57 @@ class TransactionRepositoryTest {
         assertThat(result.get().pricePerUnit()).isEqualTo(price);
         assertThat(result.get().warehouseName()).isEqualTo(warehouse);
     }
+
+    @Test
+    void testCreateTransactions() {
+        List<Transaction> transactions = List.of(
+                new Transaction(null, "Onion", 5000, Unit.KG, 320, "LIDL"),
+                new Transaction(null, "Garlic", 250, Unit.LB, 700, "KAUFLAND"),
+                new Transaction(null, "Onion", 1000, Unit.KG, 320, "LIDL"));
+
+        transactionRepository.createTransactions(transactions);
+
+        List<Transaction> result = jdbcClient
+                .sql("SELECT * FROM transaction_entries ORDER BY id")
+                .query(TransactionRepository.TRANSACTION_ROW_MAPPER)
+                .list();
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0).itemName()).isEqualTo("Onion");
+        assertThat(result.get(0).quantity()).isEqualTo(5000);
+        assertThat(result.get(1).itemName()).isEqualTo("Garlic");
+        assertThat(result.get(1).unit()).isEqualTo(Unit.LB);
+        assertThat(result.get(1).pricePerUnit()).isEqualTo(700);
+        assertThat(result.get(1).warehouseName()).isEqualTo("KAUFLAND");
+        assertThat(result.get(2).quantity()).isEqualTo(1000);
+    }
+
+    @Test
+    void testGetByIds() {
+        transactionRepository.createTransactions(List.of(
+                new Transaction(null, "Onion", 5000, Unit.KG, 320, "LIDL"),
+                new Transaction(null, "Garlic", 250, Unit.LB, 700, "KAUFLAND"),
+                new Transaction(null, "Leek", 400, Unit.KG, 150, "LIDL")));
+
+        List<Transaction> result = transactionRepository.getByIds(List.of(1L, 3L, 42L));
+
+        assertThat(result).extracting(Transaction::itemName).containsExactlyInAnyOrder("Onion", "Leek");
+    }
+
+    @Test
+    void testGetLedgerTail() {
+        transactionRepository.createTransactions(List.of(
+                new Transaction(null, "Onion", 5000, Unit.KG, 320, "LIDL"),
+                new Transaction(null, "Garlic", 250, Unit.LB, 700, "KAUFLAND")));
+        transactionRepository.createCorrectionTransactions(
+                List.of(new Transaction(null, "Onion", 4000, Unit.KG, 320, "LIDL")), List.of(1L));
+
+        List<LedgerEntry> result = transactionRepository.getLedgerTail(2, List.of(1L), 10);
+
+        assertThat(result).extracting(LedgerEntry::id).containsExactly(1L, 3L);
+        assertThat(result.get(0).isCorrection()).isFalse();
+        assertThat(result.get(1).correctsTransactionId()).isEqualTo(1L);
+        assertThat(result.get(1).originalQuantity()).isEqualTo(5000);
+        assertThat(result.get(1).quantity()).isEqualTo(4000);
+    }
 }
@@ -0,0 +1,75 @@
+package com.inventory.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RetryingTransactionExecutorTest {
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private RetryingTransactionExecutor executor;
+
+    @BeforeEach
+    void setup() {
+        TransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        executor = new RetryingTransactionExecutor(transactionManager, meterRegistry, 3,
+                Duration.ofMillis(1), Duration.ofMillis(5));
+    }
+
+    @Test
+    void testRetriesDeadlockedTransactions() {
+        String result = executor.execute("test", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new CannotAcquireLockException("deadlock detected");
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager).commit(any());
+        assertThat(meterRegistry.counter("inventory.transaction.retries", "operation", "test").count()).isEqualTo(2);
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        assertThatThrownBy(() -> executor.execute("test", () -> {
+            attempts.incrementAndGet();
+            throw new CannotAcquireLockException("deadlock detected");
+        })).isInstanceOf(CannotAcquireLockException.class);
+
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.counter("inventory.transaction.retries.exhausted", "operation", "test").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testDoesNotRetryOtherFailures() {
+        assertThatThrownBy(() -> executor.execute("test", () -> {
+            attempts.incrementAndGet();
+            throw new DataIntegrityViolationException("value too long");
+        })).isInstanceOf(DataIntegrityViolationException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+}
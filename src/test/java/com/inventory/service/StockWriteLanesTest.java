@@ -0,0 +1,188 @@
+package com.inventory.service;
+
+import com.inventory.dto.TransactionPostRequest;
+import com.inventory.model.StockEntry;
+import com.inventory.model.Transaction;
+import com.inventory.model.Unit;
+import com.inventory.repository.StockRepository;
+import com.inventory.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = "inventory.stock-writer.lanes=2")
+@ActiveProfiles("test")
+@Testcontainers
+class StockWriteLanesTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16")
+            .withDatabaseName("inventory_test")
+            .withUsername("test")
+            .withPassword("test");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    JdbcClient jdbcClient;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    StockRepository stockRepository;
+
+    @Autowired
+    StockWriteLanes stockWriteLanes;
+
+    @Autowired
+    RetryingTransactionExecutor retryingTransactionExecutor;
+
+    @AfterEach
+    void cleanUpDatabase() {
+        jdbcClient.sql("TRUNCATE TABLE stocks, transactions RESTART IDENTITY CASCADE").update();
+    }
+
+    @Test
+    void testConcurrentWritesToHotKeyAreAllApplied() throws Exception {
+        int writers = 32;
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                writes.add(executor.submit(() -> transactionService.addTransactions(List.of(
+                        new TransactionPostRequest("Apple", 150, Unit.KG, 250, "Sofia"),
+                        new TransactionPostRequest("Apple", 50, Unit.KG, 250, "Sofia")))));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+        }
+
+        StockEntry stock = stockRepository.getByCompositeKey("Apple", "Sofia", 250).orElseThrow();
+        assertThat(stock.quantity()).isEqualTo(writers * 200);
+        assertThat(jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single()).isEqualTo(writers * 2L);
+    }
+
+    @Test
+    void testFailingSubmissionDoesNotFailItsGroup() {
+        List<CompletableFuture<Void>> completions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            completions.add(stockWriteLanes.submit(0, List.of(new Transaction(null, "Pear", 100, Unit.KG, 400, "Varna"))));
+        }
+        // Overflows numeric(10,2)
+        CompletableFuture<Void> failing = stockWriteLanes.submit(0,
+                List.of(new Transaction(null, "Pear", 100, Unit.KG, 100_000_000_000_000L, "Varna")));
+
+        completions.forEach(CompletableFuture::join);
+        assertThatThrownBy(failing::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(DataAccessException.class);
+        assertThat(stockRepository.getByCompositeKey("Pear", "Varna", 400).orElseThrow().quantity()).isEqualTo(2000);
+    }
+
+    @Test
+    void testBatchSpanningLanesIsWrittenAtomically() {
+        List<TransactionPostRequest> batch = List.of(
+                new TransactionPostRequest("Apple", 100, Unit.KG, 250, "Sofia"),
+                new TransactionPostRequest("Pear", 100, Unit.KG, 400, "Varna"),
+                new TransactionPostRequest("Plum", 100, Unit.KG, 300, "Ruse"),
+                new TransactionPostRequest("Fig", 100, Unit.KG, 100_000_000_000_000L, "Burgas"));
+
+        assertThatThrownBy(() -> transactionService.addTransactions(batch)).isInstanceOf(DataAccessException.class);
+        assertThat(jdbcClient.sql("SELECT count(*) FROM transactions").query(Long.class).single()).isZero();
+    }
+
+    @Test
+    void testErrorFailsItsGroupAndKeepsTheLaneRunning() throws Exception {
+        StockRepository failingStockRepository = mock(StockRepository.class);
+        doThrow(new StackOverflowError()).doNothing().when(failingStockRepository).upsertStocks(anyList());
+        StockWriteLanes lanes = new StockWriteLanes(mock(TransactionRepository.class), failingStockRepository,
+                retryingTransactionExecutor, event -> {
+        }, new SimpleMeterRegistry(), 1, 1000, Duration.ofSeconds(30));
+        List<Transaction> pears = List.of(new Transaction(null, "Pear", 100, Unit.KG, 400, "Varna"));
+
+        lanes.start();
+        try {
+            CompletableFuture<Void> failing = lanes.submit(0, pears);
+            assertThatThrownBy(() -> failing.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(StackOverflowError.class);
+            assertThat(lanes.submit(0, pears)).succeedsWithin(Duration.ofSeconds(10));
+        } finally {
+            lanes.stop();
+        }
+
+        assertThatThrownBy(lanes.submit(0, pears)::join).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testOnlyQueuedSubmissionsCanBeWithdrawn() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        StockRepository blockingStockRepository = mock(StockRepository.class);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(blockingStockRepository).upsertStocks(anyList());
+        StockWriteLanes lanes = new StockWriteLanes(transactionRepository, blockingStockRepository,
+                retryingTransactionExecutor, event -> {
+        }, new SimpleMeterRegistry(), 1, 1000, Duration.ofSeconds(30));
+        List<Transaction> pears = List.of(new Transaction(null, "Pear", 100, Unit.KG, 400, "Varna"));
+
+        lanes.start();
+        try {
+            CompletableFuture<Void> picked = lanes.submit(0, pears);
+            assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<Void> queued = lanes.submit(0, pears);
+
+            assertThat(lanes.withdraw(0, queued)).isTrue();
+            assertThat(queued).isCancelled();
+            assertThat(lanes.withdraw(0, picked)).isFalse();
+
+            release.countDown();
+            assertThat(picked).succeedsWithin(Duration.ofSeconds(10));
+        } finally {
+            release.countDown();
+            lanes.stop();
+        }
+        verify(transactionRepository, times(1)).createTransactions(anyList());
+    }
+}
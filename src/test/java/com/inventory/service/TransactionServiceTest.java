@@ -0,0 +1,66 @@
+package com.inventory.service;
+
+import com.inventory.model.StockEntry;
+import com.inventory.model.Transaction;
+import com.inventory.model.Unit;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class TransactionServiceTest {
+
+    @Test
+    void testCoalescesRepeatedKeys() {
+        List<StockEntry> deltas = TransactionService.coalesceStockDeltas(List.of(
+                transaction("Apple", 1000, 250, "LIDL"),
+                transaction("Pear", 300, 100, "LIDL"),
+                transaction("Apple", 550, 250, "LIDL"),
+                transaction("Apple", 25, 250, "LIDL")));
+
+        assertThat(deltas).containsExactly(
+                stock("Apple", 1575, 250, "LIDL"),
+                stock("Pear", 300, 100, "LIDL"));
+    }
+
+    @Test
+    void testKeepsDistinctPricesApart() {
+        List<StockEntry> deltas = TransactionService.coalesceStockDeltas(List.of(
+                transaction("Apple", 1000, 300, "LIDL"),
+                transaction("Apple", 500, 250, "LIDL"),
+                transaction("Apple", 200, 300, "LIDL")));
+
+        assertThat(deltas).containsExactly(
+                stock("Apple", 500, 250, "LIDL"),
+                stock("Apple", 1200, 300, "LIDL"));
+    }
+
+    @Test
+    void testReturnsDeltasInCanonicalOrder() {
+        // By warehouse, then item, then price, comparing names bytewise
+        List<StockEntry> deltas = TransactionService.coalesceStockDeltas(List.of(
+                transaction("apple", 100, 100, "LIDL"),
+                transaction("Pear", 100, 100, "LIDL"),
+                transaction("Apple", 100, 200, "LIDL"),
+                transaction("Apple", 100, 100, "LIDL"),
+                transaction("Zucchini", 100, 100, "KAUFLAND")));
+
+        assertThat(deltas).extracting(StockEntry::warehouseName, StockEntry::itemName, StockEntry::pricePerUnit)
+                .containsExactly(
+                        tuple("KAUFLAND", "Zucchini", 100L),
+                        tuple("LIDL", "Apple", 100L),
+                        tuple("LIDL", "Apple", 200L),
+                        tuple("LIDL", "Pear", 100L),
+                        tuple("LIDL", "apple", 100L));
+    }
+
+    private static Transaction transaction(String itemName, long quantity, long pricePerUnit, String warehouseName) {
+        return new Transaction(null, itemName, quantity, Unit.KG, pricePerUnit, warehouseName);
+    }
+
+    private static StockEntry stock(String itemName, long quantity, long pricePerUnit, String warehouseName) {
+        return new StockEntry(null, itemName, quantity, Unit.KG, pricePerUnit, warehouseName);
+    }
+}
@@ -1,18 +1,258 @@
+-- Item and warehouse names are stored once and referenced by integer id. Names compare bytewise (COLLATE "C"),
+-- so the name indexes serve ordering and prefix searches too
+CREATE TABLE IF NOT EXISTS items (
+    id serial PRIMARY KEY NOT NULL,
+    name varchar(255) COLLATE "C" NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS warehouses (
+    id serial PRIMARY KEY NOT NULL,
+    name varchar(255) COLLATE "C" NOT NULL UNIQUE
+);
+
+-- The ledger is partitioned by ranges of ids, created ahead of the ids by the application
 CREATE TABLE IF NOT EXISTS transactions (
     id serial PRIMARY KEY NOT NULL,
-    item_name varchar(255) NOT NULL,
+    item_id integer NOT NULL REFERENCES items (id),
     quantity numeric NOT NULL,
     unit varchar(255) NOT NULL,
-    price_per_unit numeric(10,2),
-    warehouse_name varchar(255) NOT NULL
-);
+    price_per_unit numeric(10,2) NOT NULL,
+    warehouse_id integer NOT NULL REFERENCES warehouses (id),
+    -- Corrections reference the ledger entry they reverse, so the ledger alone determines the stock levels
+    corrects_transaction_id integer,
+    -- Time the entry was inserted, which the movement rollups are bucketed by
+    created_at timestamp with time zone NOT NULL DEFAULT clock_timestamp()
+) PARTITION BY RANGE (id);
+
+-- Built by db/add-transaction-timestamps.sql on a database from before created_at
+CREATE INDEX IF NOT EXISTS idx_transactions_created_at
+    ON transactions (created_at);
 
 CREATE TABLE IF NOT EXISTS stocks (
     id serial PRIMARY KEY NOT NULL,
-    item_name varchar(255) NOT NULL,
+    item_id integer NOT NULL REFERENCES items (id),
+    quantity numeric NOT NULL,
+    unit varchar(255) NOT NULL,
+    price_per_unit numeric(10,2) NOT NULL,
+    warehouse_id integer NOT NULL REFERENCES warehouses (id),
+    -- Copies of the warehouse and item names, set by the trigger below, so stock pages are read in order from an index
+    warehouse_order_key varchar(255) COLLATE "C" NOT NULL,
+    item_order_key varchar(255) COLLATE "C" NOT NULL,
+    CONSTRAINT unique_item_warehouse_price UNIQUE (item_id, warehouse_id, price_per_unit)
+);
+
+-- Tables of a database from before prices were required keep their nullable columns, which the row mappers cannot read
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_attribute
+               WHERE attrelid IN (''transactions''::regclass, ''stocks''::regclass)
+                 AND attname = ''price_per_unit'' AND NOT attnotnull) THEN
+        RAISE EXCEPTION ''price_per_unit allows NULL, run db/require-prices.sql first'';
+    END IF;
+END';
+
+CREATE INDEX IF NOT EXISTS idx_stocks_warehouse_id
+    ON stocks (warehouse_id);
+
+-- Stock pages, in (warehouse name, item name, price) order
+CREATE INDEX IF NOT EXISTS idx_stocks_page
+    ON stocks (warehouse_order_key, item_order_key, price_per_unit);
+
+-- Function bodies are quoted with '' rather than $$, which the schema initializer cannot split
+CREATE OR REPLACE FUNCTION set_stock_order_keys() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP = ''INSERT'' OR NEW.warehouse_id <> OLD.warehouse_id THEN
+        NEW.warehouse_order_key := (SELECT name FROM warehouses WHERE id = NEW.warehouse_id);
+    END IF;
+    IF TG_OP = ''INSERT'' OR NEW.item_id <> OLD.item_id THEN
+        NEW.item_order_key := (SELECT name FROM items WHERE id = NEW.item_id);
+    END IF;
+    RETURN NEW;
+END';
+
+CREATE OR REPLACE TRIGGER stocks_order_keys
+    BEFORE INSERT OR UPDATE OF warehouse_id, item_id ON stocks
+    FOR EACH ROW EXECUTE FUNCTION set_stock_order_keys();
+
+-- Ledger and stock rows with their names, for reading
+CREATE OR REPLACE VIEW transaction_entries AS
+    SELECT t.id, i.name AS item_name, t.quantity, t.unit, t.price_per_unit, w.name AS warehouse_name,
+           t.corrects_transaction_id
+    FROM transactions t
+    JOIN items i ON i.id = t.item_id
+    JOIN warehouses w ON w.id = t.warehouse_id;
+
+CREATE OR REPLACE VIEW stock_entries AS
+    SELECT s.id, i.name AS item_name, s.quantity, s.unit, s.price_per_unit, w.name AS warehouse_name
+    FROM stocks s
+    JOIN items i ON i.id = s.item_id
+    JOIN warehouses w ON w.id = s.warehouse_id;
+
+-- Latest states of the in-memory stock projection, so it can restart from a checkpoint plus the ledger tail
+CREATE TABLE IF NOT EXISTS stock_projection_checkpoints (
+    id serial PRIMARY KEY NOT NULL,
+    ledger_position bigint NOT NULL,
+    pending_transaction_ids bigint[] NOT NULL,
+    state bytea NOT NULL,
+    created_at timestamp with time zone NOT NULL DEFAULT now()
+);
+
+-- How far each local transaction journal has been applied, advanced in the same transaction as the applied rows
+CREATE TABLE IF NOT EXISTS journal_offsets (
+    journal_name varchar(255) PRIMARY KEY NOT NULL,
+    position bigint NOT NULL
+);
+
+-- Journal records that could not be applied, set aside in the same transaction as the offset moves past them, until
+-- they are replayed once their cause is fixed
+CREATE TABLE IF NOT EXISTS journal_dead_letters (
+    id bigserial PRIMARY KEY NOT NULL,
+    journal_name varchar(255) NOT NULL,
+    position bigint NOT NULL,
+    transactions text NOT NULL,
+    reason text NOT NULL,
+    rejected_at timestamp with time zone NOT NULL DEFAULT now()
+);
+
+-- Responses of requests sent with an Idempotency-Key, replayed to retries until they expire
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key varchar(255) PRIMARY KEY NOT NULL,
+    request_hash bytea NOT NULL,
+    status_code integer,
+    response_body text,
+    expires_at timestamp with time zone NOT NULL,
+    claimed_until timestamp with time zone
+);
+
+DO '
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_attribute
+                   WHERE attrelid = ''idempotency_keys''::regclass
+                     AND attname = ''claimed_until'' AND NOT attisdropped) THEN
+        RAISE EXCEPTION ''idempotency_keys has no claimed_until, run db/add-idempotency-claim-leases.sql first'';
+    END IF;
+END';
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at
+    ON idempotency_keys (expires_at);
+
+-- Changes of stock value (quantity × price_per_unit), recorded by the trigger below in the same transaction as every
+-- stock write. Rows are only ever inserted, so concurrent stock writers never wait on each other here, and are
+-- folded into the totals in the background. No foreign keys, to keep the stock write path free of extra lookups
+CREATE TABLE IF NOT EXISTS stock_valuation_deltas (
+    id bigserial PRIMARY KEY NOT NULL,
+    warehouse_id integer NOT NULL,
+    item_id integer NOT NULL,
+    value numeric NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_stock_valuation_deltas_warehouse_id
+    ON stock_valuation_deltas (warehouse_id);
+
+CREATE INDEX IF NOT EXISTS idx_stock_valuation_deltas_item_id
+    ON stock_valuation_deltas (item_id);
+
+-- Folded stock value per warehouse and per item; a total is its row plus the deltas not folded yet
+CREATE TABLE IF NOT EXISTS warehouse_valuations (
+    warehouse_id integer PRIMARY KEY NOT NULL REFERENCES warehouses (id),
+    value numeric NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS item_valuations (
+    item_id integer PRIMARY KEY NOT NULL REFERENCES items (id),
+    value numeric NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION record_stock_valuation_delta() RETURNS trigger LANGUAGE plpgsql AS '
+DECLARE
+    old_value numeric := 0;
+    new_value numeric := 0;
+BEGIN
+    IF TG_OP <> ''INSERT'' THEN
+        old_value := coalesce(OLD.quantity * OLD.price_per_unit, 0);
+    END IF;
+    IF TG_OP <> ''DELETE'' THEN
+        new_value := coalesce(NEW.quantity * NEW.price_per_unit, 0);
+    END IF;
+    IF TG_OP = ''UPDATE'' AND OLD.warehouse_id = NEW.warehouse_id AND OLD.item_id = NEW.item_id THEN
+        IF new_value <> old_value THEN
+            INSERT INTO stock_valuation_deltas (warehouse_id, item_id, value)
+            VALUES (NEW.warehouse_id, NEW.item_id, new_value - old_value);
+        END IF;
+        RETURN NULL;
+    END IF;
+    IF old_value <> 0 THEN
+        INSERT INTO stock_valuation_deltas (warehouse_id, item_id, value)
+        VALUES (OLD.warehouse_id, OLD.item_id, -old_value);
+    END IF;
+    IF new_value <> 0 THEN
+        INSERT INTO stock_valuation_deltas (warehouse_id, item_id, value)
+        VALUES (NEW.warehouse_id, NEW.item_id, new_value);
+    END IF;
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE TRIGGER stocks_valuation_delta
+    AFTER INSERT OR UPDATE OR DELETE ON stocks
+    FOR EACH ROW EXECUTE FUNCTION record_stock_valuation_delta();
+
+CREATE OR REPLACE FUNCTION clear_stock_valuations() RETURNS trigger LANGUAGE plpgsql AS '
+BEGIN
+    TRUNCATE stock_valuation_deltas, warehouse_valuations, item_valuations;
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE TRIGGER stocks_valuation_truncate
+    AFTER TRUNCATE ON stocks
+    FOR EACH STATEMENT EXECUTE FUNCTION clear_stock_valuations();
+
+-- How far the ledger has been rolled up: every entry created before the watermark is counted in the rollups below
+CREATE TABLE IF NOT EXISTS rollup_watermarks (
+    rollup_name varchar(255) PRIMARY KEY NOT NULL,
+    watermark timestamp with time zone NOT NULL
+);
+
+-- Quantity and value moved in and out per item and warehouse, in hourly and daily buckets (UTC). Rows with item_id 0
+-- hold the totals of the whole warehouse, so its trend is read without summing over items. A correction moves the
+-- corrected entry out again and its own quantity in, both in the bucket of the correction
+CREATE TABLE IF NOT EXISTS movement_rollups_hourly (
+    warehouse_id integer NOT NULL REFERENCES warehouses (id),
+    item_id integer NOT NULL,
+    bucket timestamp with time zone NOT NULL,
+    quantity_in numeric NOT NULL,
+    quantity_out numeric NOT NULL,
+    value_in numeric NOT NULL,
+    value_out numeric NOT NULL,
+    transactions bigint NOT NULL,
+    PRIMARY KEY (warehouse_id, item_id, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS movement_rollups_daily (
+    warehouse_id integer NOT NULL REFERENCES warehouses (id),
+    item_id integer NOT NULL,
+    bucket timestamp with time zone NOT NULL,
+    quantity_in numeric NOT NULL,
+    quantity_out numeric NOT NULL,
+    value_in numeric NOT NULL,
+    value_out numeric NOT NULL,
+    transactions bigint NOT NULL,
+    PRIMARY KEY (warehouse_id, item_id, bucket)
+);
+
+-- Stock levels as of a ledger position, i.e. after applying every ledger entry with an id up to it. As-of queries
+-- replay the ledger from the nearest earlier snapshot instead of from the start
+CREATE TABLE IF NOT EXISTS stock_snapshots (
+    id serial PRIMARY KEY NOT NULL,
+    ledger_position bigint NOT NULL UNIQUE,
+    created_at timestamp with time zone NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS stock_snapshot_entries (
+    snapshot_id integer NOT NULL REFERENCES stock_snapshots (id) ON DELETE CASCADE,
+    warehouse_id integer NOT NULL REFERENCES warehouses (id),
+    item_id integer NOT NULL REFERENCES items (id),
+    price_per_unit numeric(10,2) NOT NULL,
     quantity numeric NOT NULL,
     unit varchar(255) NOT NULL,
-    price_per_unit numeric(10,2),
-    warehouse_name varchar(255) NOT NULL,
-    CONSTRAINT unique_item_warehouse_price UNIQUE (item_name, warehouse_name, price_per_unit)
-);
\ No newline at end of file
+    PRIMARY KEY (snapshot_id, warehouse_id, item_id, price_per_unit)
+);